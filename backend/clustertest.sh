@@ -0,0 +1,63 @@
+#!/bin/bash
+# Starts a local cluster of backend JVMs joined by the TCP cluster bus and checks
+# cross-node WebSocket delivery: devices stream to the first node, a dashboard on
+# the second node watches them, and the remaining nodes should receive nothing.
+# Requires a Java 21 JDK; MongoDB is optional (persistence failures are only logged).
+#
+#   ./clustertest.sh [nodes] [duration-seconds]
+#
+# RATE (logs/s across all devices, default 200) and FPS (screen frames/s per device,
+# default 30, 0 for none) shape the load.
+set -e
+
+NODES=${1:-3}
+DURATION=${2:-20}
+RATE=${RATE:-200}
+FPS=${FPS:-30}
+BASE_PORT=${BASE_PORT:-9090}
+CLUSTER_BASE_PORT=${CLUSTER_BASE_PORT:-9190}
+JAR=target/backend-0.0.1-SNAPSHOT.jar
+OUT=target/clustertest
+mkdir -p "$OUT"
+
+echo "Building server and test client..."
+mvn -B -q package -DskipTests
+mvn -B -q -Pbenchmarks test-compile
+
+PEERS=""
+URLS=""
+for i in $(seq 0 $((NODES - 1))); do
+    PEERS="$PEERS${PEERS:+,}localhost:$((CLUSTER_BASE_PORT + i))"
+    URLS="$URLS${URLS:+,}http://localhost:$((BASE_PORT + i))"
+done
+
+PIDS=""
+# Shutdown can take a while; wait so a rerun does not find the ports still taken.
+trap 'kill $PIDS 2>/dev/null; wait $PIDS 2>/dev/null' EXIT
+for i in $(seq 0 $((NODES - 1))); do
+    # Every node gets the same peer list; each one skips its own address.
+    java -jar "$JAR" \
+        --server.port=$((BASE_PORT + i)) \
+        --spectra.cluster.mode=TCP \
+        --spectra.cluster.node-id="node-$i" \
+        --spectra.cluster.port=$((CLUSTER_BASE_PORT + i)) \
+        --spectra.cluster.peers="$PEERS" \
+        --spectra.cluster.secret=clustertest \
+        --spectra.cluster.bind-address=127.0.0.1 \
+        --spectra.ratelimit.enabled=false \
+        --logging.level.com.spectramonitor=INFO > "$OUT/node-$i.log" 2>&1 &
+    PIDS="$PIDS $!"
+done
+
+for i in $(seq 0 $((NODES - 1))); do
+    for _ in $(seq 1 60); do
+        # Any HTTP answer means the node is up; health is DOWN while Mongo is unreachable.
+        [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$((BASE_PORT + i))/actuator/health")" != 000 ] && break
+        sleep 1
+    done
+done
+# Let the peer links connect and exchange interest.
+sleep 3
+
+java -cp target/jmh/test-classes com.spectramonitor.bench.ClusterFanoutDriver \
+    --urls="$URLS" --duration="$DURATION" --rate="$RATE" --fps="$FPS" | tee "$OUT/result.txt"
@@ -0,0 +1,75 @@
+#!/bin/bash
+# Runs the same load against the server in two configurations.
+# Requires MongoDB on localhost:27017 (see ../start.sh) and a Java 21 JDK.
+#
+#   ./loadtest.sh [concurrency] [duration-seconds]
+#
+# COMPARE=threads (default): platform vs virtual threads, HTTP log writes and reads,
+#                            throughput, p50/p99/p99.9 latency and pinned-thread traces.
+# COMPARE=ingest:            blocking vs reactive persistence, WebSocket telemetry streams,
+#                            sustained persisted throughput and heap usage.
+set -e
+
+CONCURRENCY=${1:-200}
+DURATION=${2:-30}
+PORT=${PORT:-9090}
+COMPARE=${COMPARE:-threads}
+JAR=target/backend-0.0.1-SNAPSHOT.jar
+OUT=target/loadtest
+mkdir -p "$OUT"
+
+if [ "$COMPARE" = ingest ]; then
+    MODES="blocking reactive"
+    TRANSPORT=ws
+else
+    MODES="platform virtual"
+    TRANSPORT=http
+fi
+
+server_args() {
+    case "$1" in
+        platform) echo "--spring.threads.virtual.enabled=false" ;;
+        virtual)  echo "--spring.threads.virtual.enabled=true" ;;
+        blocking) echo "--spectra.ingest.mode=BLOCKING" ;;
+        reactive) echo "--spectra.ingest.mode=REACTIVE" ;;
+    esac
+}
+
+echo "Building server and load generator..."
+mvn -B -q package -DskipTests
+mvn -B -q -Pbenchmarks test-compile
+
+for MODE in $MODES; do
+    LOG="$OUT/server-$MODE.log"
+    echo "Starting server ($MODE)..."
+    java -Djdk.tracePinnedThreads=short -jar "$JAR" \
+        --server.port="$PORT" \
+        --spectra.ratelimit.enabled=false \
+        --logging.level.com.spectramonitor=INFO \
+        $(server_args "$MODE") > "$LOG" 2>&1 &
+    SERVER_PID=$!
+    trap 'kill $SERVER_PID 2>/dev/null' EXIT
+
+    for _ in $(seq 1 60); do
+        # Any HTTP answer means the server is up; health is DOWN while Mongo is unreachable.
+        [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT/actuator/health")" != 000 ] && break
+        sleep 1
+    done
+
+    java -cp target/jmh/test-classes com.spectramonitor.bench.IngestLoadDriver \
+        --url="http://localhost:$PORT" --transport="$TRANSPORT" --concurrency="$CONCURRENCY" --duration="$DURATION" \
+        --label="$MODE" | tee "$OUT/result-$MODE.txt"
+
+    kill $SERVER_PID
+    wait $SERVER_PID 2>/dev/null || true
+    # -Djdk.tracePinnedThreads prints a stack trace each time a virtual thread blocks while pinned.
+    PINNED=$(grep -c "reason:\|<== monitors" "$LOG" || true)
+    echo "$MODE pinned-thread traces: $PINNED (see $LOG)"
+    echo "$PINNED" > "$OUT/pinned-$MODE.txt"
+done
+
+echo
+echo "Summary"
+for MODE in $MODES; do
+    printf "%-9s %s pinned=%s\n" "$MODE" "$(grep '^RESULT' "$OUT/result-$MODE.txt")" "$(cat "$OUT/pinned-$MODE.txt")"
+done
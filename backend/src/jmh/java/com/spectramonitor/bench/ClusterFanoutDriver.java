@@ -0,0 +1,205 @@
+package com.spectramonitor.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cross-node delivery check against a running cluster, used by
+ * {@code clustertest.sh}; it is not a JMH benchmark.
+ *
+ * <p>Devices connect to the first node and stream logs and screen frames.
+ * A dashboard on the second node watches every device, so everything it
+ * receives crossed the cluster bus. Further nodes have no dashboards and
+ * should receive nothing. Latency is measured from a send timestamp
+ * carried in each log message.
+ *
+ * <pre>
+ * java -cp target/jmh/test-classes com.spectramonitor.bench.ClusterFanoutDriver \
+ *     --urls=http://localhost:9090,http://localhost:9091,http://localhost:9092 --devices=20 --rate=200 --duration=20
+ * </pre>
+ *
+ * Prints each node's {@code /api/admin/cluster} stats, a summary and a
+ * final {@code RESULT {...}} JSON line.
+ */
+public class ClusterFanoutDriver {
+
+    private static final Pattern SENT_AT = Pattern.compile("cluster-check (\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        List<String> urls = Arrays.asList(options.getOrDefault("urls", "http://localhost:9090,http://localhost:9091").split(","));
+        int devices = Integer.parseInt(options.getOrDefault("devices", "20"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "20"));
+        int framesPerSecond = Integer.parseInt(options.getOrDefault("fps", "30"));
+        if (urls.size() < 2) {
+            throw new IllegalArgumentException("--urls needs at least two nodes");
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        Dashboard dashboard = new Dashboard();
+        WebSocket viewer = client.newWebSocketBuilder().buildAsync(socket(urls.get(1), "/ws"), dashboard).join();
+        for (int i = 0; i < devices; i++) {
+            viewer.sendText("{\"event\":\"join_device_session\",\"data\":{\"deviceId\":\"cluster-" + i
+                    + "\",\"binaryFrames\":true}}", true).join();
+        }
+        // Interest reaches the device node asynchronously.
+        Thread.sleep(1000);
+
+        LongAdder logsSent = new LongAdder();
+        LongAdder framesSent = new LongAdder();
+        long end = System.nanoTime() + durationSeconds * 1_000_000_000L;
+        long logIntervalNanos = 1_000_000_000L * devices / Math.max(1, rate);
+        long frameIntervalNanos = 1_000_000_000L / Math.max(1, framesPerSecond);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < devices; i++) {
+                String deviceId = "cluster-" + i;
+                workers.submit(() -> {
+                    WebSocket ws = client.newWebSocketBuilder().buildAsync(socket(urls.get(0), "/ws"),
+                            new WebSocket.Listener() { }).join();
+                    ws.sendText("{\"event\":\"device:connect\",\"data\":{\"id\":\"" + deviceId + "\"}}", true).join();
+                    long next = System.nanoTime();
+                    while (next < end) {
+                        sleepUntil(next);
+                        ws.sendText("{\"event\":\"device:log\",\"data\":{\"deviceId\":\"" + deviceId
+                                + "\",\"level\":\"info\",\"tag\":\"cluster\",\"message\":\"cluster-check " + System.nanoTime()
+                                + "\"}}", true).join();
+                        logsSent.increment();
+                        next += logIntervalNanos;
+                    }
+                    ws.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+                    return null;
+                });
+                if (framesPerSecond > 0) {
+                    workers.submit(() -> {
+                        WebSocket screen = client.newWebSocketBuilder().buildAsync(socket(urls.get(0), "/ws/screen"),
+                                new WebSocket.Listener() { }).join();
+                        byte[] image = new byte[16 * 1024];
+                        long next = System.nanoTime();
+                        for (long sequence = 0; next < end; sequence++) {
+                            sleepUntil(next);
+                            screen.sendBinary(frame(deviceId, sequence, image), true).join();
+                            framesSent.increment();
+                            next += frameIntervalNanos;
+                        }
+                        screen.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+                        return null;
+                    });
+                }
+            }
+        }
+        Thread.sleep(1000);
+        viewer.abort();
+
+        for (String url : urls) {
+            System.out.println(url + " " + get(client, url + "/api/admin/cluster"));
+        }
+        long[] latencies = dashboard.latencies();
+        Arrays.sort(latencies);
+        long logsReceived = latencies.length;
+        double p50 = percentileMs(latencies, 0.50);
+        double p99 = percentileMs(latencies, 0.99);
+        System.out.printf(Locale.ROOT, "logs sent=%d received=%d frames sent=%d received=%d p50=%.2fms p99=%.2fms%n",
+                logsSent.sum(), logsReceived, framesSent.sum(), dashboard.frames.sum(), p50, p99);
+        System.out.printf(Locale.ROOT,
+                "RESULT {\"nodes\":%d,\"devices\":%d,\"logsSent\":%d,\"logsReceived\":%d,\"framesSent\":%d,"
+                        + "\"framesReceived\":%d,\"p50Ms\":%.3f,\"p99Ms\":%.3f}%n",
+                urls.size(), devices, logsSent.sum(), logsReceived, framesSent.sum(), dashboard.frames.sum(), p50, p99);
+    }
+
+    private static URI socket(String url, String path) {
+        return URI.create(url.replaceFirst("^http", "ws") + path);
+    }
+
+    /** Same layout as {@code ScreenFrameCodec}: version, codec, sequence, deviceId, image. */
+    private static ByteBuffer frame(String deviceId, long sequence, byte[] image) {
+        byte[] id = deviceId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + id.length + image.length);
+        buffer.put((byte) 1).put((byte) 0).putLong(sequence).putShort((short) id.length).put(id).put(image);
+        return buffer.flip();
+    }
+
+    private static String get(HttpClient client, String url) {
+        try {
+            return client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+        } catch (Exception e) {
+            return "unavailable: " + e.getMessage();
+        }
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            Thread.sleep(Math.max(1, remaining / 1_000_000));
+        }
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class Dashboard implements WebSocket.Listener {
+        private final List<Long> latencies = new ArrayList<>();
+        private final LongAdder frames = new LongAdder();
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                Matcher sentAt = SENT_AT.matcher(text);
+                if (text.indexOf("\"log:new\"") >= 0 && sentAt.find()) {
+                    long latency = System.nanoTime() - Long.parseLong(sentAt.group(1));
+                    synchronized (latencies) {
+                        latencies.add(latency);
+                    }
+                }
+                text.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            if (last) {
+                frames.increment();
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        long[] latencies() {
+            synchronized (latencies) {
+                return latencies.stream().mapToLong(Long::longValue).toArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.spectramonitor.bench;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.spectramonitor.socket.SignalDecoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the {@code device:log} WebSocket envelope, as a generic map
+ * (what {@code SignalHandler} used to do), into typed records, and with
+ * {@link SignalDecoder}, which streams the envelope and binds only the payload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnvelopeDecodeBenchmark {
+
+    public record LogPayload(String deviceId, String level, String message, String tag, String timestamp) {
+    }
+
+    public record LogEnvelope(String event, LogPayload data) {
+    }
+
+    private static final String PAYLOAD = "{\"event\":\"device:log\",\"data\":{"
+            + "\"deviceId\":\"device_1764529653580\",\"level\":\"error\","
+            + "\"message\":\"Failed to load resource: net::ERR_CONNECTION_REFUSED while fetching /api/v2/users/8812/profile\","
+            + "\"tag\":\"network\",\"timestamp\":\"2025-12-01T05:49:17.000Z\"}}";
+
+    private ObjectMapper objectMapper;
+    private ObjectReader mapReader;
+    private ObjectReader typedReader;
+    private SignalDecoder signalDecoder;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapReader = objectMapper.readerFor(Map.class);
+        typedReader = objectMapper.readerFor(LogEnvelope.class);
+        signalDecoder = new SignalDecoder();
+    }
+
+    @Benchmark
+    public Object mapPerCall() throws Exception {
+        // The original SignalHandler path: readValue through the mapper on every message.
+        return objectMapper.readValue(PAYLOAD, Map.class);
+    }
+
+    @Benchmark
+    public Object mapReader() throws Exception {
+        return mapReader.readValue(PAYLOAD);
+    }
+
+    @Benchmark
+    public Object typedReader() throws Exception {
+        return typedReader.readValue(PAYLOAD);
+    }
+
+    @Benchmark
+    public Object signalDecoder() throws Exception {
+        return signalDecoder.decode(PAYLOAD);
+    }
+}
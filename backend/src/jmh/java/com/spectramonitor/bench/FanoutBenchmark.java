@@ -0,0 +1,67 @@
+package com.spectramonitor.bench;
+
+import com.spectramonitor.cluster.InProcessClusterBus;
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.socket.EventBroadcaster;
+import com.spectramonitor.socket.FanoutEngine;
+import com.spectramonitor.socket.RoomRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost on the ingest thread of pushing one {@code log:new} event to a room
+ * of N viewers: serialization plus one enqueue per session. Delivery runs
+ * on per-session virtual-thread senders against stub sessions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FanoutBenchmark {
+
+    private static final String ROOM = RoomRegistry.deviceRoom("device_bench");
+
+    @Param({"1", "10", "100", "1000"})
+    public int sessions;
+
+    private FanoutEngine fanoutEngine;
+    private EventBroadcaster eventBroadcaster;
+    private LogEntry log;
+    private final LongAdder delivered = new LongAdder();
+
+    @Setup
+    public void setup() {
+        fanoutEngine = new FanoutEngine(256, FanoutEngine.OverflowPolicy.DROP_OLDEST, 5000);
+        RoomRegistry roomRegistry = new RoomRegistry();
+        eventBroadcaster = new EventBroadcaster(roomRegistry, fanoutEngine, new InProcessClusterBus("bench", "bench"));
+        for (int i = 0; i < sessions; i++) {
+            StubSession session = new StubSession("s" + i, delivered);
+            fanoutEngine.register(session);
+            roomRegistry.register(session);
+            roomRegistry.join(session, ROOM);
+        }
+        log = new LogEntry();
+        log.setMongoId("65f0c0ffee00000000000001");
+        log.setDeviceId("device_bench");
+        log.setLevel("info");
+        log.setTag("app");
+        log.setMessage("User tapped checkout button");
+        log.setTimestamp("2025-12-01T05:49:17.000Z");
+        log.setCreatedAt(new Date());
+    }
+
+    @TearDown
+    public void tearDown() {
+        fanoutEngine.shutdown();
+    }
+
+    @Benchmark
+    public void toRoom() {
+        eventBroadcaster.toRoom(ROOM, "log:new", log);
+    }
+}
@@ -0,0 +1,270 @@
+package com.spectramonitor.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load against a running server, used by {@code loadtest.sh}; it is not a
+ * JMH benchmark.
+ *
+ * <p>{@code --transport=http} (default) is closed-loop: each worker posts a
+ * log for a random device, or reads a device's recent logs, as fast as the
+ * server answers, and latency is measured per request.
+ *
+ * <p>{@code --transport=ws} streams telemetry: each worker is one device
+ * connection sending {@code device:log}, {@code device:metric} and
+ * {@code device:network} events as fast as the socket accepts them. What
+ * counts is what the server persists, read from its
+ * {@code spectra.ingest.*} counters, together with heap usage sampled from
+ * {@code /actuator/metrics} during the run.
+ *
+ * <pre>
+ * java -cp target/jmh/test-classes com.spectramonitor.bench.IngestLoadDriver \
+ *     --url=http://localhost:9090 --concurrency=200 --duration=30 --devices=500 --read-ratio=0.2
+ * </pre>
+ *
+ * Prints a summary and a final {@code RESULT {...}} JSON line.
+ */
+public class IngestLoadDriver {
+
+    private static final Pattern METRIC_VALUE = Pattern.compile("\"value\"\\s*:\\s*([-0-9.Ee+]+)");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        String url = options.getOrDefault("url", "http://localhost:9090");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int devices = Integer.parseInt(options.getOrDefault("devices", "500"));
+        double readRatio = Double.parseDouble(options.getOrDefault("read-ratio", "0.2"));
+        String label = options.getOrDefault("label", "");
+        if ("ws".equals(options.get("transport"))) {
+            streamTelemetry(url, concurrency, warmupSeconds, durationSeconds, label);
+            return;
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        long warmupEnd = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long end = warmupEnd + durationSeconds * 1_000_000_000L;
+        List<Future<Worker>> futures = new ArrayList<>();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                Worker worker = new Worker(client, url, devices, readRatio, warmupEnd, end);
+                futures.add(workers.submit(worker::call));
+            }
+        }
+
+        long[] latencies = new long[0];
+        long requests = 0;
+        long errors = 0;
+        for (Future<Worker> future : futures) {
+            Worker worker = future.get();
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + worker.count);
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            requests += worker.count;
+            errors += worker.errors;
+        }
+        Arrays.sort(latencies);
+
+        double throughput = requests / (double) durationSeconds;
+        double p50 = percentileMs(latencies, 0.50);
+        double p99 = percentileMs(latencies, 0.99);
+        double p999 = percentileMs(latencies, 0.999);
+        System.out.printf(Locale.ROOT, "%s requests=%d errors=%d throughput=%.1f/s p50=%.2fms p99=%.2fms p99.9=%.2fms%n",
+                label, requests, errors, throughput, p50, p99, p999);
+        System.out.printf(Locale.ROOT,
+                "RESULT {\"label\":\"%s\",\"concurrency\":%d,\"durationSeconds\":%d,\"requests\":%d,\"errors\":%d,"
+                        + "\"throughput\":%.1f,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f}%n",
+                label, concurrency, durationSeconds, requests, errors, throughput, p50, p99, p999);
+    }
+
+    private static void streamTelemetry(String url, int devices, int warmupSeconds, int durationSeconds, String label)
+            throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        URI socket = URI.create(url.replaceFirst("^http", "ws") + "/ws");
+        long warmupEnd = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long end = warmupEnd + durationSeconds * 1_000_000_000L;
+        LongAdder sent = new LongAdder();
+        LongAdder errors = new LongAdder();
+        double[] written = new double[2];
+        double[] dropped = new double[2];
+        List<Double> heapSamples = new ArrayList<>();
+        List<WebSocket> sockets = new CopyOnWriteArrayList<>();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < devices; i++) {
+                String deviceId = "loadtest-ws-" + i;
+                workers.submit(() -> {
+                    try {
+                        WebSocket ws = client.newWebSocketBuilder().buildAsync(socket, new WebSocket.Listener() { }).join();
+                        sockets.add(ws);
+                        ws.sendText("{\"event\":\"device:connect\",\"data\":{\"id\":\"" + deviceId
+                                + "\",\"model\":\"loadtest\"}}", true).join();
+                        long now;
+                        for (long n = 0; (now = System.nanoTime()) < end; n++) {
+                            ws.sendText(telemetry(deviceId, n), true).join();
+                            if (now >= warmupEnd) {
+                                sent.increment();
+                            }
+                        }
+                        ws.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+                    } catch (Exception e) {
+                        if (System.nanoTime() < end) {
+                            errors.increment();
+                        }
+                    }
+                });
+            }
+            sleepUntil(warmupEnd);
+            written[0] = metric(client, url, "spectra.ingest.written");
+            dropped[0] = metric(client, url, "spectra.ingest.dropped");
+            while (System.nanoTime() < end) {
+                heapSamples.add(metric(client, url, "jvm.memory.used?tag=area:heap") / (1024 * 1024));
+                Thread.sleep(500);
+            }
+            written[1] = metric(client, url, "spectra.ingest.written");
+            dropped[1] = metric(client, url, "spectra.ingest.dropped");
+            // A send still waiting on a saturated server would hold its worker past the end.
+            sockets.forEach(WebSocket::abort);
+        }
+
+        double sentRate = sent.sum() / (double) durationSeconds;
+        double persistedRate = (written[1] - written[0]) / durationSeconds;
+        double droppedCount = dropped[1] - dropped[0];
+        double heapAvg = heapSamples.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        double heapMax = heapSamples.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        System.out.printf(Locale.ROOT, "%s sent=%.1f/s persisted=%.1f/s dropped=%.0f errors=%d heapAvg=%.0fMB heapMax=%.0fMB%n",
+                label, sentRate, persistedRate, droppedCount, errors.sum(), heapAvg, heapMax);
+        System.out.printf(Locale.ROOT,
+                "RESULT {\"label\":\"%s\",\"transport\":\"ws\",\"devices\":%d,\"durationSeconds\":%d,\"sentPerSecond\":%.1f,"
+                        + "\"persistedPerSecond\":%.1f,\"dropped\":%.0f,\"errors\":%d,\"heapAvgMb\":%.1f,\"heapMaxMb\":%.1f}%n",
+                label, devices, durationSeconds, sentRate, persistedRate, droppedCount, errors.sum(), heapAvg, heapMax);
+    }
+
+    private static String telemetry(String deviceId, long n) {
+        return switch ((int) (n % 5)) {
+            case 3 -> "{\"event\":\"device:metric\",\"data\":{\"deviceId\":\"" + deviceId
+                    + "\",\"cpuUsage\":" + (n % 100) + ",\"memoryUsage\":512,\"fps\":60}}";
+            case 4 -> "{\"event\":\"device:network\",\"data\":{\"deviceId\":\"" + deviceId
+                    + "\",\"method\":\"GET\",\"url\":\"https://api.example.com/items/" + n + "\",\"statusCode\":200,\"duration\":"
+                    + (n % 500) + "}}";
+            default -> "{\"event\":\"device:log\",\"data\":{\"deviceId\":\"" + deviceId
+                    + "\",\"level\":\"info\",\"tag\":\"loadtest\",\"message\":\"event " + n + " handled\"}}";
+        };
+    }
+
+    /** Sum over all tags of an actuator metric, or 0 if it cannot be read. */
+    private static double metric(HttpClient client, String url, String name) {
+        try {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create(url + "/actuator/metrics/" + name)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher value = METRIC_VALUE.matcher(response.body());
+            return value.find() ? Double.parseDouble(value.group(1)) : 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            Thread.sleep(Math.max(1, remaining / 1_000_000));
+        }
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class Worker {
+        private final HttpClient client;
+        private final String url;
+        private final int devices;
+        private final double readRatio;
+        private final long measureFrom;
+        private final long end;
+        private long[] latencies = new long[4096];
+        private int count;
+        private long errors;
+
+        Worker(HttpClient client, String url, int devices, double readRatio, long measureFrom, long end) {
+            this.client = client;
+            this.url = url;
+            this.devices = devices;
+            this.readRatio = readRatio;
+            this.measureFrom = measureFrom;
+            this.end = end;
+        }
+
+        Worker call() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                String deviceId = "loadtest-" + random.nextInt(devices);
+                HttpRequest request = random.nextDouble() < readRatio
+                        ? HttpRequest.newBuilder(URI.create(url + "/api/devices/" + deviceId + "/logs?limit=50"))
+                                .timeout(Duration.ofSeconds(10))
+                                .GET()
+                                .build()
+                        : HttpRequest.newBuilder(URI.create(url + "/api/devices/" + deviceId + "/logs"))
+                                .timeout(Duration.ofSeconds(10))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(
+                                        "{\"level\":\"info\",\"tag\":\"loadtest\",\"message\":\"request " + now + " completed\"}"))
+                                .build();
+                boolean failed;
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    failed = response.statusCode() >= 400;
+                } catch (Exception e) {
+                    failed = true;
+                }
+                long done = System.nanoTime();
+                if (now < measureFrom) {
+                    continue;
+                }
+                if (failed) {
+                    errors++;
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = done - now;
+            }
+            return this;
+        }
+    }
+}
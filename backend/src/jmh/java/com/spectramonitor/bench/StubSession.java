@@ -0,0 +1,82 @@
+package com.spectramonitor.bench;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Open session that discards what it is sent and counts the messages. */
+class StubSession implements WebSocketSession {
+
+    private final String id;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final LongAdder sent;
+    private volatile boolean open = true;
+
+    StubSession(String id, LongAdder sent) {
+        this.id = id;
+        this.sent = sent;
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public URI getUri() { return null; }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+
+    @Override
+    public Map<String, Object> getAttributes() { return attributes; }
+
+    @Override
+    public Principal getPrincipal() { return null; }
+
+    @Override
+    public InetSocketAddress getLocalAddress() { return null; }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() { return null; }
+
+    @Override
+    public String getAcceptedProtocol() { return null; }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) { }
+
+    @Override
+    public int getTextMessageSizeLimit() { return Integer.MAX_VALUE; }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) { }
+
+    @Override
+    public int getBinaryMessageSizeLimit() { return Integer.MAX_VALUE; }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() { return List.of(); }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        sent.increment();
+    }
+
+    @Override
+    public boolean isOpen() { return open; }
+
+    @Override
+    public void close() { open = false; }
+
+    @Override
+    public void close(CloseStatus status) { open = false; }
+}
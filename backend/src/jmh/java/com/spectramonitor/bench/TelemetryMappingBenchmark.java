@@ -0,0 +1,54 @@
+package com.spectramonitor.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spectramonitor.service.TelemetryMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of decoded REST bodies into models, as done by the
+ * {@code ApiController} ingest endpoints.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TelemetryMappingBenchmark {
+
+    private Map<String, Object> logBody;
+    private Map<String, Object> metricBody;
+    private Map<String, Object> networkBody;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        logBody = objectMapper.readValue("{\"level\":\"warn\",\"message\":\"Slow frame: 48ms\",\"tag\":\"ui\","
+                + "\"timestamp\":\"2025-12-01T05:49:17.000Z\",\"isAnomaly\":false}", Map.class);
+        metricBody = objectMapper.readValue("{\"cpuUsage\":42.5,\"memoryUsage\":61.2,\"batteryLevel\":87,"
+                + "\"temperature\":38,\"fps\":58,\"uploadSpeed\":1200,\"downloadSpeed\":5400,"
+                + "\"timestamp\":\"2025-12-01T05:49:17.000Z\"}", Map.class);
+        networkBody = objectMapper.readValue("{\"method\":\"GET\",\"url\":\"https://api.example.com/v2/users/8812/profile\","
+                + "\"statusCode\":200,\"duration\":184,\"requestSize\":512,\"responseSize\":20480,"
+                + "\"timestamp\":\"2025-12-01T05:49:17.000Z\"}", Map.class);
+    }
+
+    @Benchmark
+    public Object log() {
+        return TelemetryMapper.toLogEntry("device_1764529653580", logBody);
+    }
+
+    @Benchmark
+    public Object metric() {
+        return TelemetryMapper.toMetric("device_1764529653580", metricBody);
+    }
+
+    @Benchmark
+    public Object networkRequest() {
+        return TelemetryMapper.toNetworkRequest("device_1764529653580", networkBody);
+    }
+}
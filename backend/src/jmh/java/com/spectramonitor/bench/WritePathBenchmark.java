@@ -0,0 +1,98 @@
+package com.spectramonitor.bench;
+
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.model.NetworkRequest;
+import com.spectramonitor.service.BatchingWriter;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write path up to the driver: entity-to-document mapping, and the log
+ * write-behind queue with a sink that maps each batch the way
+ * {@code MongoTemplate.insert} would. Nothing is sent to a server, so the
+ * numbers are the in-process share of a write.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WritePathBenchmark {
+
+    private MappingMongoConverter converter;
+    private BatchingWriter<LogEntry> logWriter;
+    private LogEntry log;
+    private NetworkRequest request;
+    private final LongAdder documents = new LongAdder();
+
+    @Setup
+    public void setup() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setInitialEntitySet(Set.of(LogEntry.class, NetworkRequest.class));
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+
+        logWriter = new BatchingWriter<>("bench", 50_000, 500, 200, BatchingWriter.OverflowPolicy.BLOCK, this::insert);
+        logWriter.start();
+
+        log = new LogEntry();
+        log.setDeviceId("device_bench");
+        log.setLevel("info");
+        log.setTag("app");
+        log.setMessage("User tapped checkout button");
+        log.setTimestamp("2025-12-01T05:49:17.000Z");
+        log.setCreatedAt(new Date());
+
+        request = new NetworkRequest();
+        request.setDeviceId("device_bench");
+        request.setMethod("GET");
+        request.setUrl("https://api.example.com/v2/users/8812/profile");
+        request.setStatusCode(200);
+        request.setDuration(184L);
+        request.setTimestamp(new Date());
+    }
+
+    @TearDown
+    public void tearDown() {
+        logWriter.stop();
+    }
+
+    private void insert(List<LogEntry> batch) {
+        for (LogEntry entry : batch) {
+            Document document = new Document();
+            converter.write(entry, document);
+            documents.increment();
+        }
+    }
+
+    @Benchmark
+    public Document mapLogEntry() {
+        Document document = new Document();
+        converter.write(log, document);
+        return document;
+    }
+
+    @Benchmark
+    public Document mapNetworkRequest() {
+        Document document = new Document();
+        converter.write(request, document);
+        return document;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean submitLog() {
+        return logWriter.submit(log);
+    }
+}
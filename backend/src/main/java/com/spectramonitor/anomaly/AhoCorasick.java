@@ -0,0 +1,97 @@
+package com.spectramonitor.anomaly;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Case-insensitive multi-pattern matcher. Finds which of a fixed set of
+ * literals occur in a text in one pass, regardless of how many patterns
+ * there are. Immutable once built, so it is safe to share between threads.
+ */
+public final class AhoCorasick {
+
+    private final List<Map<Character, Integer>> next = new ArrayList<>();
+    private final List<Integer> fail = new ArrayList<>();
+    private final List<List<Integer>> output = new ArrayList<>();
+    private final List<String> patterns;
+
+    public AhoCorasick(List<String> patterns) {
+        this.patterns = List.copyOf(patterns);
+        addNode();
+        for (int p = 0; p < this.patterns.size(); p++) {
+            String pattern = this.patterns.get(p);
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = Character.toLowerCase(pattern.charAt(i));
+                Integer child = next.get(node).get(c);
+                if (child == null) {
+                    child = addNode();
+                    next.get(node).put(c, child);
+                }
+                node = child;
+            }
+            output.get(node).add(p);
+        }
+        buildFailureLinks();
+    }
+
+    private int addNode() {
+        next.add(new HashMap<>());
+        fail.add(0);
+        output.add(new ArrayList<>(1));
+        return next.size() - 1;
+    }
+
+    private void buildFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>(next.get(0).values());
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : next.get(node).entrySet()) {
+                int child = edge.getValue();
+                int state = fail.get(node);
+                while (state != 0 && !next.get(state).containsKey(edge.getKey())) {
+                    state = fail.get(state);
+                }
+                Integer target = next.get(state).get(edge.getKey());
+                int link = target == null || target == child ? 0 : target;
+                fail.set(child, link);
+                output.get(child).addAll(output.get(link));
+                queue.add(child);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return next.get(0).isEmpty();
+    }
+
+    /** Distinct patterns found in {@code text}, in the order they first end. */
+    public List<String> findAll(CharSequence text) {
+        List<String> found = null;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            Integer target;
+            while ((target = next.get(state).get(c)) == null && state != 0) {
+                state = fail.get(state);
+            }
+            state = target == null ? 0 : target;
+            for (int p : output.get(state)) {
+                if (found == null) {
+                    found = new ArrayList<>(1);
+                }
+                if (!found.contains(patterns.get(p))) {
+                    found.add(patterns.get(p));
+                }
+            }
+        }
+        return found == null ? List.of() : found;
+    }
+}
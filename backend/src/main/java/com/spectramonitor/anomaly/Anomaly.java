@@ -0,0 +1,21 @@
+package com.spectramonitor.anomaly;
+
+import java.util.Date;
+
+/**
+ * One detected anomaly, pushed to the device room as {@code anomaly:detected}.
+ *
+ * @param kind     detector that raised it: {@code deviation}, {@code log_rate} or {@code pattern}
+ * @param field    metric field, or the matched pattern for {@code pattern}
+ * @param value    observed value (sample value, logs per window, or 1)
+ * @param expected baseline the value was compared against
+ * @param score    how far off the baseline it was, in standard deviations
+ */
+public record Anomaly(String deviceId, String kind, String field, double value,
+                      double expected, double score, String detail, Date detectedAt) {
+
+    public static Anomaly of(String deviceId, String kind, String field, double value,
+                             double expected, double score, String detail) {
+        return new Anomaly(deviceId, kind, field, value, expected, score, detail, new Date());
+    }
+}
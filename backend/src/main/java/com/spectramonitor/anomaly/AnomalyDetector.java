@@ -0,0 +1,34 @@
+package com.spectramonitor.anomaly;
+
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.model.PerformanceMetric;
+
+import java.util.List;
+
+/**
+ * A detection stage run inline on ingest. Implementations keep a constant
+ * amount of state per device and never read from the database; every
+ * {@code AnomalyDetector} bean is picked up by {@link AnomalyEngine}.
+ */
+public interface AnomalyDetector {
+
+    /**
+     * @param live false for backfilled records (batch ingestion), whose
+     *             arrival time says nothing about the device's behaviour
+     */
+    default List<Anomaly> onLog(LogEntry log, boolean live) {
+        return List.of();
+    }
+
+    default List<Anomaly> onMetric(PerformanceMetric metric) {
+        return List.of();
+    }
+
+    /** Drops state for devices not seen since {@code cutoffMillis}. */
+    default void evictIdle(long cutoffMillis) {
+    }
+
+    default int trackedSeries() {
+        return 0;
+    }
+}
@@ -0,0 +1,106 @@
+package com.spectramonitor.anomaly;
+
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.model.PerformanceMetric;
+import com.spectramonitor.socket.EventBroadcaster;
+import com.spectramonitor.socket.RoomRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs every {@link AnomalyDetector} inline on ingest. Logs that trip a
+ * detector are flagged {@code isAnomaly}, and each anomaly from live
+ * traffic is pushed to the device's room as {@code anomaly:detected} as
+ * soon as it is found. Backfilled logs are flagged and counted but not
+ * pushed, and backfilled metrics are skipped, so a batch upload neither
+ * floods viewers nor skews the per-device baselines.
+ */
+@Service
+public class AnomalyEngine {
+
+    private final List<AnomalyDetector> detectors;
+    private final EventBroadcaster eventBroadcaster;
+    private final boolean enabled;
+    private final long idleMs;
+    private final Map<String, LongAdder> detected = new ConcurrentHashMap<>();
+
+    public AnomalyEngine(List<AnomalyDetector> detectors, EventBroadcaster eventBroadcaster,
+                         @Value("${spectra.anomaly.enabled:true}") boolean enabled,
+                         @Value("${spectra.anomaly.idle-ms:3600000}") long idleMs) {
+        this.detectors = detectors;
+        this.eventBroadcaster = eventBroadcaster;
+        this.enabled = enabled;
+        this.idleMs = idleMs;
+    }
+
+    /**
+     * Inspects a log and sets {@code isAnomaly} if a detector flagged it or
+     * the client already did.
+     *
+     * @param live false for backfilled logs, which skip rate detection
+     */
+    public LogEntry inspect(LogEntry log, boolean live) {
+        if (!enabled) {
+            return log;
+        }
+        boolean flagged = false;
+        for (AnomalyDetector detector : detectors) {
+            flagged |= publish(detector.onLog(log, live), live);
+        }
+        if (flagged) {
+            log.setIsAnomaly(true);
+        } else if (log.getIsAnomaly() == null) {
+            log.setIsAnomaly(false);
+        }
+        return log;
+    }
+
+    /**
+     * @param live false for backfilled samples, which carry their own
+     *             timestamps and are not fed to the baselines
+     */
+    public PerformanceMetric inspect(PerformanceMetric metric, boolean live) {
+        if (!enabled || !live) {
+            return metric;
+        }
+        for (AnomalyDetector detector : detectors) {
+            publish(detector.onMetric(metric), true);
+        }
+        return metric;
+    }
+
+    private boolean publish(List<Anomaly> anomalies, boolean live) {
+        for (Anomaly anomaly : anomalies) {
+            detected.computeIfAbsent(anomaly.kind(), k -> new LongAdder()).increment();
+            if (live && anomaly.deviceId() != null) {
+                eventBroadcaster.toRoom(RoomRegistry.deviceRoom(anomaly.deviceId()), "anomaly:detected", anomaly);
+            }
+        }
+        return !anomalies.isEmpty();
+    }
+
+    @Scheduled(fixedDelayString = "${spectra.anomaly.evict-interval-ms:300000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        detectors.forEach(detector -> detector.evictIdle(cutoff));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        detected.forEach((kind, count) -> counts.put(kind, count.sum()));
+        stats.put("detected", counts);
+        Map<String, Integer> series = new LinkedHashMap<>();
+        detectors.forEach(detector -> series.put(detector.getClass().getSimpleName(), detector.trackedSeries()));
+        stats.put("trackedSeries", series);
+        return stats;
+    }
+}
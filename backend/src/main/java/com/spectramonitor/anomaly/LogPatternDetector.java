@@ -0,0 +1,62 @@
+package com.spectramonitor.anomaly;
+
+import com.spectramonitor.model.LogEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Flags logs by level and message content. Literal patterns are matched
+ * together in one pass with {@link AhoCorasick}; regular expressions are
+ * for the cases literals cannot express and are tried one by one.
+ */
+@Component
+public class LogPatternDetector implements AnomalyDetector {
+
+    private final Set<String> levels;
+    private final AhoCorasick literals;
+    private final List<Pattern> regexes;
+
+    public LogPatternDetector(@Value("${spectra.anomaly.patterns.levels:error,fatal}") List<String> levels,
+                              @Value("${spectra.anomaly.patterns.literals:Exception}") List<String> literals,
+                              @Value("${spectra.anomaly.patterns.regex:}") List<String> regexes) {
+        this.levels = levels.stream().map(level -> level.trim().toLowerCase(Locale.ROOT))
+                .filter(level -> !level.isEmpty()).collect(Collectors.toUnmodifiableSet());
+        this.literals = new AhoCorasick(literals.stream().map(String::trim).filter(s -> !s.isEmpty()).toList());
+        this.regexes = regexes.stream().map(String::trim).filter(s -> !s.isEmpty()).map(Pattern::compile).toList();
+    }
+
+    @Override
+    public List<Anomaly> onLog(LogEntry log, boolean live) {
+        String message = log.getMessage();
+        List<Anomaly> anomalies = null;
+        if (log.getLevel() != null && levels.contains(log.getLevel().toLowerCase(Locale.ROOT))) {
+            anomalies = new ArrayList<>(1);
+            anomalies.add(Anomaly.of(log.getDeviceId(), "pattern", "level:" + log.getLevel(), 1, 0, 0, message));
+        }
+        if (message == null || message.isEmpty()) {
+            return anomalies == null ? List.of() : anomalies;
+        }
+        for (String literal : literals.findAll(message)) {
+            if (anomalies == null) {
+                anomalies = new ArrayList<>(1);
+            }
+            anomalies.add(Anomaly.of(log.getDeviceId(), "pattern", literal, 1, 0, 0, message));
+        }
+        for (Pattern regex : regexes) {
+            if (regex.matcher(message).find()) {
+                if (anomalies == null) {
+                    anomalies = new ArrayList<>(1);
+                }
+                anomalies.add(Anomaly.of(log.getDeviceId(), "pattern", regex.pattern(), 1, 0, 0, message));
+            }
+        }
+        return anomalies == null ? List.of() : anomalies;
+    }
+}
@@ -0,0 +1,123 @@
+package com.spectramonitor.anomaly;
+
+import com.spectramonitor.model.LogEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Detects log floods per device. Logs are counted in fixed windows; closed
+ * windows feed an EWMA of the per-window rate, and the open window is
+ * flagged as soon as its count exceeds the baseline by {@code threshold}
+ * standard deviations (and at least {@code min-count}), at most once per
+ * window.
+ */
+@Component
+public class LogRateDetector implements AnomalyDetector {
+
+    private final long windowMs;
+    private final double alpha;
+    private final double threshold;
+    private final int minCount;
+    private final int warmupWindows;
+    private final Map<String, RateState> devices = new ConcurrentHashMap<>();
+
+    public LogRateDetector(@Value("${spectra.anomaly.log-rate.window-ms:10000}") long windowMs,
+                           @Value("${spectra.anomaly.log-rate.alpha:0.1}") double alpha,
+                           @Value("${spectra.anomaly.log-rate.threshold:4.0}") double threshold,
+                           @Value("${spectra.anomaly.log-rate.min-count:50}") int minCount,
+                           @Value("${spectra.anomaly.log-rate.warmup-windows:6}") int warmupWindows) {
+        this.windowMs = windowMs;
+        this.alpha = alpha;
+        this.threshold = threshold;
+        this.minCount = minCount;
+        this.warmupWindows = warmupWindows;
+    }
+
+    @Override
+    public List<Anomaly> onLog(LogEntry log, boolean live) {
+        if (!live || log.getDeviceId() == null) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        long window = now / windowMs;
+        RateState state = devices.computeIfAbsent(log.getDeviceId(), k -> new RateState(window));
+        state.lock.lock();
+        try {
+            state.lastSeen = now;
+            if (window != state.window) {
+                close(state, window);
+            }
+            state.count++;
+            if (state.alerted || state.closedWindows < warmupWindows || state.count < minCount) {
+                return List.of();
+            }
+            double stdDev = Math.max(Math.sqrt(state.variance), 1.0);
+            double score = (state.count - state.mean) / stdDev;
+            if (score <= threshold) {
+                return List.of();
+            }
+            state.alerted = true;
+            return List.of(Anomaly.of(log.getDeviceId(), "log_rate", "logs", state.count, state.mean, score,
+                    state.count + " logs in " + windowMs / 1000 + "s (baseline " + Math.round(state.mean) + ")"));
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Folds the finished window into the baseline. Windows with no logs in
+     * between are folded in as zeros, capped so a device returning after a
+     * long silence costs a bounded amount of work.
+     */
+    private void close(RateState state, long window) {
+        update(state, state.count);
+        long empty = Math.min(window - state.window - 1, 100);
+        for (long i = 0; i < empty; i++) {
+            update(state, 0);
+        }
+        state.window = window;
+        state.count = 0;
+        state.alerted = false;
+    }
+
+    private void update(RateState state, double count) {
+        if (state.closedWindows == 0) {
+            state.mean = count;
+        } else {
+            double diff = count - state.mean;
+            state.mean += alpha * diff;
+            state.variance = (1 - alpha) * (state.variance + alpha * diff * diff);
+        }
+        state.closedWindows++;
+    }
+
+    @Override
+    public void evictIdle(long cutoffMillis) {
+        devices.values().removeIf(state -> state.lastSeen < cutoffMillis);
+    }
+
+    @Override
+    public int trackedSeries() {
+        return devices.size();
+    }
+
+    private static class RateState {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long window;
+        private int count;
+        private boolean alerted;
+        private double mean;
+        private double variance;
+        private long closedWindows;
+        private volatile long lastSeen;
+
+        RateState(long window) {
+            this.window = window;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.spectramonitor.anomaly;
+
+import com.spectramonitor.model.PerformanceMetric;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Flags metric samples that deviate from an exponentially weighted moving
+ * mean and variance by more than {@code threshold} standard deviations.
+ * Each series is four numbers, updated in place per sample.
+ */
+@Component
+public class MetricDeviationDetector implements AnomalyDetector {
+
+    private static final List<String> FIELDS = List.of("cpuUsage", "memoryUsage", "fps", "temperature");
+    private static final List<Function<PerformanceMetric, ? extends Number>> GETTERS = List.of(
+            PerformanceMetric::getCpuUsage, PerformanceMetric::getMemoryUsage,
+            PerformanceMetric::getFps, PerformanceMetric::getTemperature);
+
+    private final double alpha;
+    private final double threshold;
+    private final int warmup;
+    private final double minStdDev;
+    private final long cooldownMs;
+    private final Map<String, DeviceSeries> devices = new ConcurrentHashMap<>();
+
+    public MetricDeviationDetector(@Value("${spectra.anomaly.metrics.alpha:0.05}") double alpha,
+                                   @Value("${spectra.anomaly.metrics.threshold:4.0}") double threshold,
+                                   @Value("${spectra.anomaly.metrics.warmup:30}") int warmup,
+                                   @Value("${spectra.anomaly.metrics.min-stddev:1.0}") double minStdDev,
+                                   @Value("${spectra.anomaly.metrics.cooldown-ms:60000}") long cooldownMs) {
+        this.alpha = alpha;
+        this.threshold = threshold;
+        this.warmup = warmup;
+        this.minStdDev = minStdDev;
+        this.cooldownMs = cooldownMs;
+    }
+
+    @Override
+    public List<Anomaly> onMetric(PerformanceMetric metric) {
+        if (metric.getDeviceId() == null) {
+            return List.of();
+        }
+        DeviceSeries series = devices.computeIfAbsent(metric.getDeviceId(), k -> new DeviceSeries(FIELDS.size()));
+        long now = System.currentTimeMillis();
+        List<Anomaly> anomalies = null;
+        series.lock.lock();
+        try {
+            series.lastSeen = now;
+            for (int i = 0; i < FIELDS.size(); i++) {
+                Number sample = GETTERS.get(i).apply(metric);
+                if (sample == null) {
+                    continue;
+                }
+                double value = sample.doubleValue();
+                double mean = series.mean[i];
+                double stdDev = Math.max(Math.sqrt(series.variance[i]), minStdDev);
+                double diff = value - mean;
+                if (series.count[i] >= warmup && Math.abs(diff) > threshold * stdDev
+                        && now - series.lastAlert[i] >= cooldownMs) {
+                    series.lastAlert[i] = now;
+                    if (anomalies == null) {
+                        anomalies = new ArrayList<>(1);
+                    }
+                    anomalies.add(Anomaly.of(metric.getDeviceId(), "deviation", FIELDS.get(i), value, mean,
+                            diff / stdDev, FIELDS.get(i) + (diff > 0 ? " spiked to " : " dropped to ") + value));
+                }
+                if (series.count[i] == 0) {
+                    series.mean[i] = value;
+                } else {
+                    series.mean[i] = mean + alpha * diff;
+                    series.variance[i] = (1 - alpha) * (series.variance[i] + alpha * diff * diff);
+                }
+                series.count[i]++;
+            }
+        } finally {
+            series.lock.unlock();
+        }
+        return anomalies == null ? List.of() : anomalies;
+    }
+
+    @Override
+    public void evictIdle(long cutoffMillis) {
+        devices.values().removeIf(series -> series.lastSeen < cutoffMillis);
+    }
+
+    @Override
+    public int trackedSeries() {
+        return devices.size() * FIELDS.size();
+    }
+
+    private static class DeviceSeries {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final double[] mean;
+        private final double[] variance;
+        private final long[] count;
+        private final long[] lastAlert;
+        private volatile long lastSeen;
+
+        DeviceSeries(int fields) {
+            this.mean = new double[fields];
+            this.variance = new double[fields];
+            this.count = new long[fields];
+            this.lastAlert = new long[fields];
+        }
+    }
+}
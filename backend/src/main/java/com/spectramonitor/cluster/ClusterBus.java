@@ -0,0 +1,64 @@
+package com.spectramonitor.cluster;
+
+import java.util.Map;
+
+/**
+ * Carries WebSocket events between backend nodes, so a dashboard sees a
+ * device's events whichever node each of them is connected to. Every node
+ * advertises the rooms it has local members in, and an event for a room
+ * is only sent to nodes that advertised it.
+ */
+public interface ClusterBus {
+
+    enum Mode {
+        /** Nodes in the same JVM; a single instance has no peers. */
+        IN_PROCESS,
+        /** Nodes connected over TCP, see {@link TcpClusterBus}. */
+        TCP
+    }
+
+    /**
+     * Receives events published on other nodes. They are for local sessions
+     * only and must not be published again.
+     */
+    interface Listener {
+
+        /**
+         * @param room     target room, or null for every session
+         * @param envelope serialized event envelope, UTF-8 JSON
+         */
+        void onEvent(String room, byte[] envelope);
+
+        /** @param frame binary screen frame, see {@code ScreenFrameCodec} */
+        void onScreenFrame(byte[] frame);
+    }
+
+    String getNodeId();
+
+    void start(Listener listener);
+
+    void shutdown();
+
+    /**
+     * Records whether this node has local members in {@code room}. Calls for
+     * the same room must not race with each other.
+     */
+    void setInterest(String room, boolean local);
+
+    /** Whether any other node has advertised {@code room}. */
+    boolean hasRemoteInterest(String room);
+
+    /**
+     * Sends an event to the nodes that advertised {@code room}, or to every
+     * node when {@code room} is null.
+     */
+    void publishEvent(String room, byte[] envelope);
+
+    /**
+     * Sends a screen frame to the nodes that advertised {@code room}. A frame
+     * still waiting to be sent is replaced by a newer one for the same device.
+     */
+    void publishScreenFrame(String room, String deviceId, byte[] frame);
+
+    Map<String, Object> stats();
+}
@@ -0,0 +1,108 @@
+package com.spectramonitor.cluster;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connects the nodes started in one JVM under the same cluster name,
+ * delivering events by direct call on the publishing thread. With a single
+ * node, which is the default deployment, there is nobody to deliver to and
+ * publishing costs one interest lookup.
+ */
+public class InProcessClusterBus implements ClusterBus {
+
+    private static final Map<String, List<InProcessClusterBus>> CLUSTERS = new ConcurrentHashMap<>();
+
+    private final String nodeId;
+    private final List<InProcessClusterBus> nodes;
+    private final Set<String> rooms = ConcurrentHashMap.newKeySet();
+    private final LongAdder eventsSent = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder eventsReceived = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private volatile Listener listener;
+
+    public InProcessClusterBus(String cluster, String nodeId) {
+        this.nodeId = nodeId;
+        this.nodes = CLUSTERS.computeIfAbsent(cluster, key -> new CopyOnWriteArrayList<>());
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        nodes.add(this);
+    }
+
+    @Override
+    public void shutdown() {
+        nodes.remove(this);
+        listener = null;
+    }
+
+    @Override
+    public void setInterest(String room, boolean local) {
+        if (local) {
+            rooms.add(room);
+        } else {
+            rooms.remove(room);
+        }
+    }
+
+    @Override
+    public boolean hasRemoteInterest(String room) {
+        for (InProcessClusterBus node : nodes) {
+            if (node != this && node.rooms.contains(room)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void publishEvent(String room, byte[] envelope) {
+        for (InProcessClusterBus node : nodes) {
+            Listener target = node.listener;
+            if (node != this && target != null && (room == null || node.rooms.contains(room))) {
+                eventsSent.increment();
+                node.eventsReceived.increment();
+                target.onEvent(room, envelope);
+            }
+        }
+    }
+
+    @Override
+    public void publishScreenFrame(String room, String deviceId, byte[] frame) {
+        for (InProcessClusterBus node : nodes) {
+            Listener target = node.listener;
+            if (node != this && target != null && node.rooms.contains(room)) {
+                framesSent.increment();
+                node.framesReceived.increment();
+                target.onScreenFrame(frame);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", Mode.IN_PROCESS);
+        stats.put("nodeId", nodeId);
+        stats.put("peers", nodes.stream().filter(node -> node != this).map(InProcessClusterBus::getNodeId).toList());
+        stats.put("localRooms", rooms.size());
+        stats.put("eventsSent", eventsSent.sum());
+        stats.put("framesSent", framesSent.sum());
+        stats.put("eventsReceived", eventsReceived.sum());
+        stats.put("framesReceived", framesReceived.sum());
+        return stats;
+    }
+}
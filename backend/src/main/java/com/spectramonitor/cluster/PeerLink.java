@@ -0,0 +1,288 @@
+package com.spectramonitor.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connection this node dials to one peer. Events go out on it; the peer's
+ * room interest comes back. Events queued while a batch is being written
+ * go out together in the next one, with a single flush. Screen frames are
+ * kept per device, so a peer that falls behind only gets the newest frame.
+ * Nothing is queued while the peer is unreachable. An idle link sends
+ * pings, and a link whose peer stops answering with interest or pings is
+ * closed and redialed.
+ */
+final class PeerLink {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerLink.class);
+
+    private record Outgoing(byte type, String room, byte[] payload) {
+    }
+
+    private final TcpClusterBus bus;
+    private final String host;
+    private final int port;
+    private final int queueCapacity;
+    private final int batchMaxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final ArrayDeque<Outgoing> events = new ArrayDeque<>();
+    private final Map<String, Outgoing> frames = new LinkedHashMap<>();
+    private final Set<String> remoteRooms = ConcurrentHashMap.newKeySet();
+    private final LongAdder eventsSent = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private volatile boolean connected;
+    private volatile boolean self;
+    private volatile String remoteNodeId;
+    private volatile Socket socket;
+
+    PeerLink(TcpClusterBus bus, String address, int queueCapacity, int batchMaxBytes) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Cluster peer must be host:port, got " + address);
+        }
+        this.bus = bus;
+        this.host = address.substring(0, colon);
+        this.port = Integer.parseInt(address.substring(colon + 1));
+        this.queueCapacity = queueCapacity;
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    String getAddress() {
+        return host + ":" + port;
+    }
+
+    /** Whether the peer has members in {@code room}; null asks whether it is reachable at all. */
+    boolean wants(String room) {
+        return connected && (room == null || remoteRooms.contains(room));
+    }
+
+    void offerEvent(String room, byte[] envelope) {
+        lock.lock();
+        try {
+            if (!connected) {
+                return;
+            }
+            if (events.size() >= queueCapacity) {
+                dropped.increment();
+                return;
+            }
+            events.add(new Outgoing(TcpClusterBus.EVENT, room, envelope));
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void offerFrame(String room, String deviceId, byte[] frame) {
+        lock.lock();
+        try {
+            if (!connected) {
+                return;
+            }
+            if (frames.put(deviceId, new Outgoing(TcpClusterBus.FRAME, room, frame)) != null) {
+                coalesced.increment();
+            }
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps the link up until the bus stops, redialing {@code reconnectMs}
+     * after each failure. Returns at once if the address turns out to be
+     * this node.
+     */
+    void run(long reconnectMs) {
+        while (bus.isRunning() && !self) {
+            boolean established = false;
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.connect(new InetSocketAddress(host, port), TcpClusterBus.HANDSHAKE_TIMEOUT_MS);
+                s.setTcpNoDelay(true);
+                s.setSoTimeout(TcpClusterBus.HANDSHAKE_TIMEOUT_MS);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                bus.writeHello(out);
+                String remote = bus.readHello(in);
+                bus.configureEstablished(s);
+                if (remote.equals(bus.getNodeId())) {
+                    self = true;
+                    logger.info("Cluster peer {} is this node; not connecting to it", getAddress());
+                    return;
+                }
+                remoteNodeId = remote;
+                setConnected(true);
+                established = true;
+                logger.info("Connected to cluster peer {} at {}", remote, getAddress());
+                bus.startThread("cluster-interest-" + remote, () -> readInterest(in));
+                writeLoop(out);
+            } catch (ProtocolException e) {
+                logger.warn("Cluster peer {} rejected: {}", getAddress(), e.getMessage());
+            } catch (IOException e) {
+                logger.debug("Cluster peer {} unavailable: {}", getAddress(), e.getMessage());
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                setConnected(false);
+                socket = null;
+                if (established && bus.isRunning()) {
+                    logger.info("Disconnected from cluster peer {} at {}", remoteNodeId, getAddress());
+                }
+            }
+            try {
+                Thread.sleep(reconnectMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void writeLoop(DataOutputStream out) throws IOException, InterruptedException {
+        List<Outgoing> batch = new ArrayList<>();
+        long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(bus.getHeartbeatMs());
+        while (true) {
+            lock.lock();
+            try {
+                long remaining = heartbeatNanos;
+                while (connected && events.isEmpty() && frames.isEmpty() && remaining > 0) {
+                    remaining = pending.awaitNanos(remaining);
+                }
+                if (!connected) {
+                    return;
+                }
+                int bytes = 0;
+                while (!events.isEmpty() && bytes < batchMaxBytes) {
+                    Outgoing event = events.poll();
+                    bytes += event.payload().length;
+                    batch.add(event);
+                }
+                batch.addAll(frames.values());
+                frames.clear();
+            } finally {
+                lock.unlock();
+            }
+            if (batch.isEmpty()) {
+                out.writeByte(TcpClusterBus.PING);
+                out.flush();
+                continue;
+            }
+            for (Outgoing message : batch) {
+                out.writeByte(message.type());
+                TcpClusterBus.writeRoom(out, message.room() == null ? "" : message.room());
+                out.writeInt(message.payload().length);
+                out.write(message.payload());
+                (message.type() == TcpClusterBus.EVENT ? eventsSent : framesSent).increment();
+            }
+            out.flush();
+            batches.increment();
+            batch.clear();
+        }
+    }
+
+    private void readInterest(DataInputStream in) {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case TcpClusterBus.SNAPSHOT -> {
+                        int count = in.readInt();
+                        Set<String> rooms = new HashSet<>();
+                        for (int i = 0; i < count; i++) {
+                            rooms.add(TcpClusterBus.readRoom(in));
+                        }
+                        remoteRooms.retainAll(rooms);
+                        remoteRooms.addAll(rooms);
+                    }
+                    case TcpClusterBus.SUBSCRIBE -> remoteRooms.add(TcpClusterBus.readRoom(in));
+                    case TcpClusterBus.UNSUBSCRIBE -> remoteRooms.remove(TcpClusterBus.readRoom(in));
+                    case TcpClusterBus.PING -> {
+                    }
+                    default -> throw new ProtocolException("unexpected message type " + type);
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            logger.warn("Cluster peer {} at {} sent no heartbeat; reconnecting", remoteNodeId, getAddress());
+        } catch (IOException e) {
+            logger.debug("Interest stream from {} closed: {}", getAddress(), e.getMessage());
+        } finally {
+            close();
+        }
+    }
+
+    private void setConnected(boolean value) {
+        lock.lock();
+        try {
+            connected = value;
+            if (!value) {
+                events.clear();
+                frames.clear();
+                remoteRooms.clear();
+                pending.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops the connection; {@link #run} redials unless the bus is stopping. */
+    void close() {
+        setConnected(false);
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                logger.debug("Error closing link to {}: {}", getAddress(), e.getMessage());
+            }
+        }
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("address", getAddress());
+        stats.put("nodeId", self ? bus.getNodeId() : remoteNodeId);
+        stats.put("self", self);
+        stats.put("connected", connected);
+        stats.put("remoteRooms", remoteRooms.size());
+        lock.lock();
+        try {
+            stats.put("queuedEvents", events.size());
+            stats.put("queuedFrames", frames.size());
+        } finally {
+            lock.unlock();
+        }
+        stats.put("eventsSent", eventsSent.sum());
+        stats.put("framesSent", framesSent.sum());
+        stats.put("batches", batches.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("framesCoalesced", coalesced.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,445 @@
+package com.spectramonitor.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Peer-to-peer cluster bus over TCP. Every node listens on one port and
+ * dials each configured peer address; the list may include the node
+ * itself, so all nodes can share one configuration. A connection carries
+ * events from the dialing node to the accepting one, and in the other
+ * direction the rooms the accepting node has members in: a snapshot on
+ * connect, then each change.
+ *
+ * <p>Wire format, big endian, starting with a {@code HELLO} each way:
+ * <pre>
+ *   HELLO       u8 1, utf nodeId, utf secret
+ *   SNAPSHOT    u8 2, i32 count, count x room
+ *   SUBSCRIBE   u8 3, room
+ *   UNSUBSCRIBE u8 4, room
+ *   EVENT       u8 5, room ("" for all sessions), i32 length, envelope
+ *   FRAME       u8 6, room, i32 length, screen frame
+ *   PING        u8 7
+ * </pre>
+ * A room is a u16 length and that many UTF-8 bytes, at most
+ * {@link #MAX_ROOM_BYTES}. Longer rooms are never advertised, so a client
+ * cannot break a link by joining one.
+ * Each side sends a {@code PING} when it has had nothing to write for
+ * {@code heartbeatMs}, and drops a connection that has been silent for
+ * {@link #MISSED_HEARTBEATS} heartbeats, so a half-open connection is
+ * noticed and redialed instead of swallowing events. The port belongs on a
+ * private network (see {@code bindAddress}); the shared secret, which is
+ * required, only keeps out stray connections.
+ */
+public class TcpClusterBus implements ClusterBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(TcpClusterBus.class);
+
+    static final byte HELLO = 1;
+    static final byte SNAPSHOT = 2;
+    static final byte SUBSCRIBE = 3;
+    static final byte UNSUBSCRIBE = 4;
+    static final byte EVENT = 5;
+    static final byte FRAME = 6;
+    static final byte PING = 7;
+
+    static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    static final int MISSED_HEARTBEATS = 3;
+    static final int MAX_ROOM_BYTES = 1024;
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+    /** Interest changes a peer may fall behind by before it is disconnected and resynced. */
+    private static final int INTEREST_BACKLOG = 10_000;
+
+    private record InterestChange(byte type, List<String> rooms) {
+    }
+
+    private final String nodeId;
+    private final byte[] secret;
+    private final String bindAddress;
+    private final int port;
+    private final long heartbeatMs;
+    private final long reconnectMs;
+    private final boolean virtualThreads;
+    private final List<String> peers;
+    private final int queueCapacity;
+    private final int batchMaxBytes;
+    private final List<PeerLink> links = new CopyOnWriteArrayList<>();
+    private final List<Thread> linkThreads = new CopyOnWriteArrayList<>();
+    private final List<InboundPeer> inbound = new CopyOnWriteArrayList<>();
+    private final Set<String> localRooms = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock interestLock = new ReentrantLock();
+    private final LongAdder eventsReceived = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private volatile boolean running;
+    private volatile Listener listener;
+    private volatile ServerSocket server;
+
+    /**
+     * @param bindAddress interface to listen on; blank for all interfaces
+     * @throws IllegalArgumentException if {@code secret} is blank
+     */
+    public TcpClusterBus(String nodeId, String secret, String bindAddress, int port, List<String> peers,
+                         int queueCapacity, int batchMaxBytes, long reconnectMs, long heartbeatMs,
+                         boolean virtualThreads) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("The TCP cluster bus needs a shared secret (spectra.cluster.secret)");
+        }
+        this.nodeId = nodeId;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.bindAddress = bindAddress == null ? "" : bindAddress.trim();
+        this.port = port;
+        this.heartbeatMs = Math.max(100, heartbeatMs);
+        this.reconnectMs = reconnectMs;
+        this.virtualThreads = virtualThreads;
+        this.peers = peers.stream().filter(peer -> !peer.isBlank()).map(String::trim).toList();
+        this.queueCapacity = queueCapacity;
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    long getHeartbeatMs() {
+        return heartbeatMs;
+    }
+
+    /** Keepalive plus a read timeout of a few heartbeats, once the handshake is done. */
+    void configureEstablished(Socket socket) throws IOException {
+        socket.setKeepAlive(true);
+        socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, heartbeatMs * MISSED_HEARTBEATS));
+    }
+
+    Thread startThread(String name, Runnable task) {
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        return builder.name(name).start(task);
+    }
+
+    /** Opens the listening socket and starts dialing the peers; nothing runs before this. */
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        List<PeerLink> dialed = new ArrayList<>();
+        for (String peer : peers) {
+            dialed.add(new PeerLink(this, peer, queueCapacity, batchMaxBytes));
+        }
+        try {
+            ServerSocket socket = new ServerSocket();
+            socket.setReuseAddress(true);
+            socket.bind(bindAddress.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(bindAddress, port));
+            server = socket;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot listen for cluster peers on " + listenAddress(), e);
+        }
+        running = true;
+        links.addAll(dialed);
+        startThread("cluster-accept", this::acceptLoop);
+        for (PeerLink link : links) {
+            linkThreads.add(startThread("cluster-link-" + link.getAddress(), () -> link.run(reconnectMs)));
+        }
+        logger.info("Cluster node {} listening on {}, peers {}", nodeId, listenAddress(),
+                links.stream().map(PeerLink::getAddress).toList());
+    }
+
+    private String listenAddress() {
+        return (bindAddress.isEmpty() ? "*" : bindAddress) + ":" + port;
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        ServerSocket socket = server;
+        if (socket != null) {
+            closeQuietly(socket);
+        }
+        links.forEach(PeerLink::close);
+        linkThreads.forEach(Thread::interrupt);
+        inbound.forEach(InboundPeer::close);
+    }
+
+    @Override
+    public void setInterest(String room, boolean local) {
+        if (!fitsWire(room)) {
+            logger.warn("Not advertising a room of {} characters to the cluster", room.length());
+            return;
+        }
+        interestLock.lock();
+        try {
+            if (local ? localRooms.add(room) : localRooms.remove(room)) {
+                InterestChange change = new InterestChange(local ? SUBSCRIBE : UNSUBSCRIBE, List.of(room));
+                inbound.forEach(peer -> peer.enqueue(change));
+            }
+        } finally {
+            interestLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean hasRemoteInterest(String room) {
+        for (PeerLink link : links) {
+            if (link.wants(room)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void publishEvent(String room, byte[] envelope) {
+        for (PeerLink link : links) {
+            if (link.wants(room)) {
+                link.offerEvent(room, envelope);
+            }
+        }
+    }
+
+    @Override
+    public void publishScreenFrame(String room, String deviceId, byte[] frame) {
+        for (PeerLink link : links) {
+            if (link.wants(room)) {
+                link.offerFrame(room, deviceId, frame);
+            }
+        }
+    }
+
+    static boolean fitsWire(String room) {
+        return room.length() <= MAX_ROOM_BYTES / 3 || room.getBytes(StandardCharsets.UTF_8).length <= MAX_ROOM_BYTES;
+    }
+
+    static void writeRoom(DataOutputStream out, String room) throws IOException {
+        byte[] bytes = room.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_ROOM_BYTES) {
+            throw new ProtocolException("room of " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readRoom(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length > MAX_ROOM_BYTES) {
+            throw new ProtocolException("room of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void writeHello(DataOutputStream out) throws IOException {
+        out.writeByte(HELLO);
+        out.writeUTF(nodeId);
+        out.writeUTF(new String(secret, StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /** Reads the other side's hello and returns its node id. */
+    String readHello(DataInputStream in) throws IOException {
+        if (in.readByte() != HELLO) {
+            throw new ProtocolException("expected hello");
+        }
+        String remote = in.readUTF();
+        byte[] remoteSecret = in.readUTF().getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(secret, remoteSecret)) {
+            throw new ProtocolException("cluster secret mismatch from node " + remote);
+        }
+        return remote;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                startThread("cluster-inbound", () -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Cluster accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves a connection dialed by a peer: answers its hello, sends this
+     * node's interest, then delivers the peer's events until it goes away.
+     */
+    private void serve(Socket socket) {
+        InboundPeer peer = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            String remote = readHello(in);
+            writeHello(out);
+            configureEstablished(socket);
+            if (remote.equals(nodeId)) {
+                return;
+            }
+            peer = new InboundPeer(socket, out);
+            // The snapshot and later changes share one queue, so the peer sees them in order.
+            interestLock.lock();
+            try {
+                peer.enqueue(new InterestChange(SNAPSHOT, List.copyOf(localRooms)));
+                inbound.add(peer);
+            } finally {
+                interestLock.unlock();
+            }
+            peer.writer = startThread("cluster-interest-out-" + remote, peer::writeLoop);
+            readEvents(in);
+        } catch (ProtocolException e) {
+            logger.warn("Rejected cluster connection from {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+        } catch (SocketTimeoutException e) {
+            logger.warn("Cluster peer {} sent no heartbeat; closing", socket.getRemoteSocketAddress());
+        } catch (IOException e) {
+            logger.debug("Cluster connection from {} closed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+        } finally {
+            if (peer != null) {
+                inbound.remove(peer);
+                peer.close();
+            }
+        }
+    }
+
+    private void readEvents(DataInputStream in) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            if (type == PING) {
+                continue;
+            }
+            String room = readRoom(in);
+            int length = in.readInt();
+            if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+                throw new ProtocolException("payload of " + length + " bytes");
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            Listener target = listener;
+            try {
+                if (type == EVENT) {
+                    eventsReceived.increment();
+                    if (target != null) {
+                        target.onEvent(room.isEmpty() ? null : room, payload);
+                    }
+                } else if (type == FRAME) {
+                    framesReceived.increment();
+                    if (target != null) {
+                        target.onScreenFrame(payload);
+                    }
+                } else {
+                    throw new ProtocolException("unexpected message type " + type);
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Error delivering cluster event for {}: {}", room, e.getMessage());
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            logger.debug("Error closing cluster socket: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", Mode.TCP);
+        stats.put("nodeId", nodeId);
+        stats.put("listen", listenAddress());
+        stats.put("heartbeatMs", heartbeatMs);
+        stats.put("localRooms", localRooms.size());
+        stats.put("inboundPeers", inbound.size());
+        stats.put("eventsReceived", eventsReceived.sum());
+        stats.put("framesReceived", framesReceived.sum());
+        stats.put("links", links.stream().map(PeerLink::stats).toList());
+        return stats;
+    }
+
+    /** Connection accepted from a peer: its events come in, this node's interest goes out. */
+    private final class InboundPeer {
+
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final BlockingQueue<InterestChange> changes = new ArrayBlockingQueue<>(INTEREST_BACKLOG);
+        private volatile Thread writer;
+
+        InboundPeer(Socket socket, DataOutputStream out) {
+            this.socket = socket;
+            this.out = out;
+        }
+
+        /** Never blocks the caller; a peer too far behind is dropped and resyncs on reconnect. */
+        void enqueue(InterestChange change) {
+            if (!changes.offer(change)) {
+                logger.warn("Cluster peer {} is not reading interest updates; disconnecting",
+                        socket.getRemoteSocketAddress());
+                close();
+            }
+        }
+
+        void writeLoop() {
+            try {
+                while (true) {
+                    InterestChange change = changes.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                    if (change == null) {
+                        out.writeByte(PING);
+                        out.flush();
+                        continue;
+                    }
+                    do {
+                        out.writeByte(change.type());
+                        if (change.type() == SNAPSHOT) {
+                            out.writeInt(change.rooms().size());
+                        }
+                        for (String room : change.rooms()) {
+                            writeRoom(out, room);
+                        }
+                    } while ((change = changes.poll()) != null);
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                close();
+            }
+        }
+
+        void close() {
+            closeQuietly(socket);
+            Thread current = writer;
+            if (current != null && current != Thread.currentThread()) {
+                current.interrupt();
+            }
+        }
+    }
+}
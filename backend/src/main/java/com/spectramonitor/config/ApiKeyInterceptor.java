@@ -0,0 +1,62 @@
+package com.spectramonitor.config;
+
+import com.spectramonitor.service.ApiKeyCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Authenticates {@link SdkEndpoint} requests by API key. The key must belong
+ * to the app named in the path, or to the app the device in the path is
+ * registered to. The resolved app id is left in the {@link #APP_ID_ATTR}
+ * request attribute.
+ */
+@Component
+public class ApiKeyInterceptor implements HandlerInterceptor {
+
+    public static final String API_KEY_HEADER = "X-Api-Key";
+    public static final String APP_ID_ATTR = "spectra.appId";
+
+    private final ApiKeyCache apiKeyCache;
+
+    public ApiKeyInterceptor(ApiKeyCache apiKeyCache) {
+        this.apiKeyCache = apiKeyCache;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!apiKeyCache.isEnabled() || !(handler instanceof HandlerMethod method)
+                || !method.hasMethodAnnotation(SdkEndpoint.class)) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String deviceId = pathVariables == null ? null : pathVariables.get("deviceId");
+        String pathAppId = pathVariables == null ? null : pathVariables.get("appId");
+
+        ApiKeyCache.Result result = apiKeyCache.check(request.getHeader(API_KEY_HEADER), deviceId, pathAppId);
+        switch (result.outcome()) {
+            case OK -> {
+                request.setAttribute(APP_ID_ATTR, result.appId());
+                return true;
+            }
+            case MISSING -> reject(response, HttpServletResponse.SC_UNAUTHORIZED, "missing API key");
+            case INVALID -> reject(response, HttpServletResponse.SC_UNAUTHORIZED, "invalid API key");
+            case WRONG_APP -> reject(response, HttpServletResponse.SC_FORBIDDEN, "API key does not belong to this app");
+        }
+        return false;
+    }
+
+    private static void reject(HttpServletResponse response, int status, String reason) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"" + reason + "\"}");
+    }
+}
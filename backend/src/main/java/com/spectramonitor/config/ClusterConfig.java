@@ -0,0 +1,41 @@
+package com.spectramonitor.config;
+
+import com.spectramonitor.cluster.ClusterBus;
+import com.spectramonitor.cluster.InProcessClusterBus;
+import com.spectramonitor.cluster.TcpClusterBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Picks the bus that carries WebSocket events between backend nodes. The
+ * bus is started once the WebSocket layer is wired, see
+ * {@code ClusterRelay}; {@code shutdown} is called on context close.
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    public ClusterBus clusterBus(@Value("${spectra.cluster.mode:IN_PROCESS}") ClusterBus.Mode mode,
+                                 @Value("${spectra.cluster.name:spectra}") String name,
+                                 @Value("${spectra.cluster.node-id:}") String nodeId,
+                                 @Value("${spectra.cluster.bind-address:}") String bindAddress,
+                                 @Value("${spectra.cluster.port:9190}") int port,
+                                 @Value("${spectra.cluster.peers:}") List<String> peers,
+                                 @Value("${spectra.cluster.secret:}") String secret,
+                                 @Value("${spectra.cluster.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${spectra.cluster.batch-max-bytes:65536}") int batchMaxBytes,
+                                 @Value("${spectra.cluster.reconnect-ms:2000}") long reconnectMs,
+                                 @Value("${spectra.cluster.heartbeat-ms:2000}") long heartbeatMs,
+                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        String id = nodeId.isBlank() ? "node-" + UUID.randomUUID().toString().substring(0, 8) : nodeId;
+        if (mode == ClusterBus.Mode.TCP) {
+            return new TcpClusterBus(id, secret, bindAddress, port, peers, queueCapacity, batchMaxBytes, reconnectMs,
+                    heartbeatMs, virtualThreads);
+        }
+        return new InProcessClusterBus(name, id);
+    }
+}
@@ -0,0 +1,64 @@
+package com.spectramonitor.config;
+
+import com.spectramonitor.service.IngestPipeline;
+import com.spectramonitor.service.IngestWriter;
+import com.spectramonitor.service.NetworkAnalyticsService;
+import com.spectramonitor.socket.FanoutEngine;
+import com.spectramonitor.socket.RoomRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gauges over the in-memory queues. They read the existing counters when
+ * scraped, so nothing is added to the paths that fill the queues.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder ingestQueueMetrics(IngestPipeline ingestPipeline) {
+        String mode = ingestPipeline.getMode().name().toLowerCase();
+        return registry -> {
+            for (IngestWriter<?> writer : ingestPipeline.writers()) {
+                Gauge.builder("spectra.ingest.queue.depth", writer, IngestWriter::getQueueDepth)
+                        .tags("writer", writer.getName(), "mode", mode)
+                        .register(registry);
+                Gauge.builder("spectra.ingest.queue.capacity", writer, IngestWriter::getQueueCapacity)
+                        .tags("writer", writer.getName(), "mode", mode)
+                        .register(registry);
+                FunctionCounter.builder("spectra.ingest.written", writer, IngestWriter::getWritten)
+                        .tags("writer", writer.getName(), "mode", mode)
+                        .register(registry);
+                FunctionCounter.builder("spectra.ingest.dropped", writer, IngestWriter::getDropped)
+                        .tags("writer", writer.getName(), "mode", mode)
+                        .register(registry);
+                FunctionCounter.builder("spectra.ingest.evicted", writer, IngestWriter::getEvicted)
+                        .tags("writer", writer.getName(), "mode", mode)
+                        .register(registry);
+                FunctionCounter.builder("spectra.ingest.failed", writer, IngestWriter::getFailed)
+                        .tags("writer", writer.getName(), "mode", mode)
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder webSocketMetrics(FanoutEngine fanoutEngine, RoomRegistry roomRegistry) {
+        return registry -> {
+            Gauge.builder("spectra.ws.outbound.depth", fanoutEngine, FanoutEngine::queuedMessages)
+                    .description("Messages waiting in per-session outbound queues")
+                    .register(registry);
+            Gauge.builder("spectra.ws.sessions", fanoutEngine, FanoutEngine::sessionCount).register(registry);
+            Gauge.builder("spectra.ws.rooms", roomRegistry, RoomRegistry::roomCount).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder networkAnalyticsMetrics(NetworkAnalyticsService networkAnalyticsService) {
+        return registry -> Gauge.builder("spectra.network.analytics.pending", networkAnalyticsService,
+                NetworkAnalyticsService::pendingKeys).register(registry);
+    }
+}
@@ -0,0 +1,72 @@
+package com.spectramonitor.config;
+
+import com.spectramonitor.service.DeviceDirectory;
+import com.spectramonitor.service.IngestRateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Applies {@link IngestRateLimiter} to {@link SdkEndpoint} writes. Runs after
+ * {@link ApiKeyInterceptor}, so an authenticated app id is used when there is
+ * one. Single-record calls cost one event; {@code :batch} calls are charged
+ * by body size, since the record count is only known once the body is read.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final IngestRateLimiter rateLimiter;
+    private final DeviceDirectory deviceDirectory;
+    private final int batchBytesPerRecord;
+
+    public RateLimitInterceptor(IngestRateLimiter rateLimiter, DeviceDirectory deviceDirectory,
+                                @Value("${spectra.ratelimit.batch-bytes-per-record:256}") int batchBytesPerRecord) {
+        this.rateLimiter = rateLimiter;
+        this.deviceDirectory = deviceDirectory;
+        this.batchBytesPerRecord = Math.max(1, batchBytesPerRecord);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!rateLimiter.isEnabled() || "GET".equals(request.getMethod()) || !(handler instanceof HandlerMethod method)
+                || !method.hasMethodAnnotation(SdkEndpoint.class)) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String deviceId = pathVariables == null ? null : pathVariables.get("deviceId");
+        String appId = (String) request.getAttribute(ApiKeyInterceptor.APP_ID_ATTR);
+        if (appId == null) {
+            appId = deviceDirectory.appIdOf(deviceId);
+        }
+
+        IngestRateLimiter.Decision decision = rateLimiter.acquire(appId, deviceId, cost(request));
+        if (decision.allowed()) {
+            return true;
+        }
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((decision.retryAfterMs() + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"rate limit exceeded\",\"scope\":\"" + decision.scope().name().toLowerCase()
+                + "\",\"retryAfterMs\":" + decision.retryAfterMs() + "}");
+        return false;
+    }
+
+    private int cost(HttpServletRequest request) {
+        if (!request.getRequestURI().endsWith(":batch")) {
+            return 1;
+        }
+        long length = request.getContentLengthLong();
+        // Chunked uploads give no size up front; they are charged a full burst.
+        return length < 0 ? Integer.MAX_VALUE : (int) Math.max(1, Math.min(Integer.MAX_VALUE, length / batchBytesPerRecord));
+    }
+}
@@ -0,0 +1,40 @@
+package com.spectramonitor.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Leaves the reactive Mongo client, {@code ReactiveMongoTemplate} and the
+ * reactive repository scan out of
+ * auto-configuration unless {@code spectra.ingest.mode=REACTIVE}, so the
+ * default blocking mode does not open a second connection pool. Exclusions
+ * already set in {@code spring.autoconfigure.exclude} are kept. Registered
+ * in {@code META-INF/spring.factories}.
+ */
+public class ReactiveMongoExclusion implements EnvironmentPostProcessor {
+
+    private static final String EXCLUDE = "spring.autoconfigure.exclude";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if ("REACTIVE".equalsIgnoreCase(environment.getProperty("spectra.ingest.mode", "BLOCKING").trim())) {
+            return;
+        }
+        String exclusions = MongoReactiveAutoConfiguration.class.getName() + ","
+                + MongoReactiveDataAutoConfiguration.class.getName() + ","
+                + MongoReactiveRepositoriesAutoConfiguration.class.getName();
+        String existing = environment.getProperty(EXCLUDE, "");
+        if (!existing.isBlank()) {
+            exclusions = existing + "," + exclusions;
+        }
+        environment.getPropertySources().addFirst(new MapPropertySource("spectraReactiveMongoExclusion",
+                Map.of(EXCLUDE, exclusions)));
+    }
+}
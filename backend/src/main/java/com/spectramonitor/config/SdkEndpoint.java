@@ -0,0 +1,16 @@
+package com.spectramonitor.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks controller methods called by device SDKs rather than the dashboard.
+ * When {@code spectra.auth.enabled} is set they require an {@code X-Api-Key}
+ * header; see {@link ApiKeyInterceptor}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SdkEndpoint {
+}
@@ -1,11 +1,14 @@
 package com.spectramonitor.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+import com.spectramonitor.socket.ApiKeyHandshakeInterceptor;
+import com.spectramonitor.socket.ScreenFrameHandler;
 import com.spectramonitor.socket.SignalHandler;
 
 @Configuration
@@ -13,22 +16,37 @@ import com.spectramonitor.socket.SignalHandler;
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final SignalHandler signalHandler;
+    private final ScreenFrameHandler screenFrameHandler;
+    private final ApiKeyHandshakeInterceptor apiKeyHandshakeInterceptor;
 
-    public WebSocketConfig(SignalHandler signalHandler) {
+    @Value("${spectra.ws.max-text-message-bytes:1048576}")
+    private int maxTextMessageBytes;
+
+    @Value("${spectra.ws.max-binary-message-bytes:4194304}")
+    private int maxBinaryMessageBytes;
+
+    public WebSocketConfig(SignalHandler signalHandler, ScreenFrameHandler screenFrameHandler,
+                           ApiKeyHandshakeInterceptor apiKeyHandshakeInterceptor) {
         this.signalHandler = signalHandler;
+        this.screenFrameHandler = screenFrameHandler;
+        this.apiKeyHandshakeInterceptor = apiKeyHandshakeInterceptor;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(signalHandler, "/ws")
+                .addInterceptors(apiKeyHandshakeInterceptor)
+                .setAllowedOrigins("*");
+        registry.addHandler(screenFrameHandler, "/ws/screen")
+                .addInterceptors(apiKeyHandshakeInterceptor)
                 .setAllowedOrigins("*");
     }
 
     @Bean
     public ServletServerContainerFactoryBean createWebSocketContainer() {
         ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
-        container.setMaxTextMessageBufferSize(1048576);
-        container.setMaxBinaryMessageBufferSize(1048576);
+        container.setMaxTextMessageBufferSize(maxTextMessageBytes);
+        container.setMaxBinaryMessageBufferSize(maxBinaryMessageBytes);
         return container;
     }
 }
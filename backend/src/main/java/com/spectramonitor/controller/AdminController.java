@@ -0,0 +1,140 @@
+package com.spectramonitor.controller;
+
+import com.spectramonitor.anomaly.AnomalyEngine;
+import com.spectramonitor.cluster.ClusterBus;
+import com.spectramonitor.service.ApiKeyCache;
+import com.spectramonitor.service.DeviceHealthEngine;
+import com.spectramonitor.service.IndexManager;
+import com.spectramonitor.service.IngestRateLimiter;
+import com.spectramonitor.service.LogSearchService;
+import com.spectramonitor.service.NetworkAnalyticsService;
+import com.spectramonitor.service.PresenceTracker;
+import com.spectramonitor.service.PurgeJobService;
+import com.spectramonitor.service.RecentTelemetryCache;
+import com.spectramonitor.socket.FanoutEngine;
+import com.spectramonitor.socket.RoomRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+public class AdminController {
+
+    @Autowired
+    private IndexManager indexManager;
+
+    @Autowired
+    private RecentTelemetryCache recentTelemetryCache;
+
+    @Autowired
+    private FanoutEngine fanoutEngine;
+
+    @Autowired
+    private RoomRegistry roomRegistry;
+
+    @Autowired
+    private PresenceTracker presenceTracker;
+
+    @Autowired
+    private AnomalyEngine anomalyEngine;
+
+    @Autowired
+    private NetworkAnalyticsService networkAnalyticsService;
+
+    @Autowired
+    private ApiKeyCache apiKeyCache;
+
+    @Autowired
+    private IngestRateLimiter ingestRateLimiter;
+
+    @Autowired
+    private LogSearchService logSearchService;
+
+    @Autowired
+    private DeviceHealthEngine deviceHealthEngine;
+
+    @Autowired
+    private PurgeJobService purgeJobService;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    @GetMapping("/indexes")
+    public List<Map<String, Object>> getIndexes() {
+        return indexManager.describe();
+    }
+
+    @PostMapping("/indexes/verify")
+    public ResponseEntity<List<Map<String, Object>>> verifyIndexes() {
+        indexManager.ensureAll();
+        return ResponseEntity.ok(indexManager.describe());
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Object> getCacheStats() {
+        return recentTelemetryCache.stats();
+    }
+
+    @GetMapping("/ws/sessions")
+    public List<Map<String, Object>> getWebSocketSessions() {
+        return fanoutEngine.stats();
+    }
+
+    @GetMapping("/ws/rooms")
+    public Map<String, Object> getWebSocketRooms() {
+        return roomRegistry.stats();
+    }
+
+    @GetMapping("/presence")
+    public Map<String, Object> getPresence() {
+        return presenceTracker.stats();
+    }
+
+    @GetMapping("/anomalies")
+    public Map<String, Object> getAnomalyStats() {
+        return anomalyEngine.stats();
+    }
+
+    @GetMapping("/network-analytics")
+    public Map<String, Object> getNetworkAnalyticsStats() {
+        return networkAnalyticsService.stats();
+    }
+
+    @GetMapping("/auth")
+    public Map<String, Object> getAuthStats() {
+        return apiKeyCache.stats();
+    }
+
+    @GetMapping("/rate-limits")
+    public Map<String, Object> getRateLimitStats() {
+        return ingestRateLimiter.stats();
+    }
+
+    @GetMapping("/search")
+    public Map<String, Object> getSearchStats() {
+        return logSearchService.stats();
+    }
+
+    @GetMapping("/device-health")
+    public Map<String, Object> getDeviceHealthStats() {
+        return deviceHealthEngine.stats();
+    }
+
+    @GetMapping("/purge-jobs")
+    public Map<String, Object> getPurgeJobs() {
+        Map<String, Object> result = new LinkedHashMap<>(purgeJobService.stats());
+        result.put("recent", purgeJobService.recent(20));
+        return result;
+    }
+
+    @GetMapping("/cluster")
+    public Map<String, Object> getClusterStats() {
+        return clusterBus.stats();
+    }
+}
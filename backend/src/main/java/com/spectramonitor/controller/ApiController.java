@@ -1,14 +1,46 @@
 package com.spectramonitor.controller;
 
+import com.spectramonitor.anomaly.AnomalyEngine;
+import com.spectramonitor.config.ApiKeyInterceptor;
+import com.spectramonitor.config.SdkEndpoint;
 import com.spectramonitor.model.*;
 import com.spectramonitor.repository.*;
+import com.spectramonitor.service.ApiKeyCache;
+import com.spectramonitor.service.BatchIngestService;
+import com.spectramonitor.service.CrashGroupingService;
+import com.spectramonitor.service.DeviceDirectory;
+import com.spectramonitor.service.DeviceHealthEngine;
+import com.spectramonitor.service.FlagEvaluationService;
+import com.spectramonitor.service.KeysetPager;
+import com.spectramonitor.service.LogExportService;
+import com.spectramonitor.service.LogSearchService;
+import com.spectramonitor.service.MetricRollupService;
+import com.spectramonitor.service.NetworkAnalyticsService;
+import com.spectramonitor.service.PurgeJobService;
+import com.spectramonitor.service.RecentTelemetryCache;
+import com.spectramonitor.service.TelemetryMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/api")
@@ -36,6 +68,51 @@ public class ApiController {
     @Autowired
     private NetworkRequestRepository networkRequestRepository;
 
+    @Autowired
+    private BatchIngestService batchIngestService;
+
+    @Autowired
+    private MetricRollupService metricRollupService;
+
+    @Autowired
+    private RecentTelemetryCache recentTelemetryCache;
+
+    @Autowired
+    private KeysetPager keysetPager;
+
+    @Autowired
+    private CrashGroupingService crashGroupingService;
+
+    @Autowired
+    private AnomalyEngine anomalyEngine;
+
+    @Autowired
+    private DeviceDirectory deviceDirectory;
+
+    @Autowired
+    private NetworkAnalyticsService networkAnalyticsService;
+
+    @Autowired
+    private FlagEvaluationService flagEvaluationService;
+
+    @Autowired
+    private ApiKeyCache apiKeyCache;
+
+    @Autowired
+    private LogExportService logExportService;
+
+    @Autowired
+    private LogSearchService logSearchService;
+
+    @Autowired
+    private DeviceHealthEngine deviceHealthEngine;
+
+    @Autowired
+    private PurgeJobService purgeJobService;
+
+    @Value("${spectra.logs.export.timeout-ms:3600000}")
+    private long exportTimeoutMs;
+
     @GetMapping("/apps")
     public List<App> getApps() {
         return appRepository.findAll();
@@ -56,18 +133,31 @@ public class ApiController {
         return ResponseEntity.status(201).body(savedApp);
     }
 
+    /**
+     * Removes the app right away; its devices and telemetry are purged by a
+     * background job whose progress is at {@code /api/purge-jobs/{jobId}}.
+     */
     @DeleteMapping("/apps/{appId}")
-    public ResponseEntity<Void> deleteApp(@PathVariable String appId) {
-        appRepository.deleteById(appId);
-        deviceRepository.deleteByAppId(appId);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<PurgeJob> deleteApp(@PathVariable String appId) {
+        appRepository.findByIdEquals(appId).ifPresent(appRepository::delete);
+        apiKeyCache.invalidateApp(appId);
+        flagEvaluationService.forget(appId);
+        PurgeJob job = purgeJobService.schedule(appId);
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, "/api/purge-jobs/" + job.getId())
+                .body(job);
+    }
+
+    @GetMapping("/purge-jobs/{jobId}")
+    public ResponseEntity<PurgeJob> getPurgeJob(@PathVariable String jobId) {
+        return purgeJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/apps/{appId}/devices")
     public List<Device> getDevices(@PathVariable String appId) {
-        List<Device> devices = deviceRepository.findByAppId(appId);
-        devices.stream().forEach(device -> System.out.println(device.getDeviceId()));
-        return devices;
+        return deviceRepository.findByAppId(appId);
     }
 
     @PostMapping("/apps/{appId}/devices")
@@ -82,6 +172,7 @@ public class ApiController {
         device.setLastSeen(new Date());
         
         Device savedDevice = deviceRepository.save(device);
+        deviceDirectory.remember(savedDevice.getDeviceId(), appId);
         return ResponseEntity.status(201).body(savedDevice);
     }
 
@@ -93,24 +184,93 @@ public class ApiController {
     }
 
     @GetMapping("/devices/{deviceId}/logs")
-    public List<LogEntry> getLogs(@PathVariable String deviceId,
-                                   @RequestParam(defaultValue = "100") int limit) {
-        List<LogEntry> logs = logRepository.findByDeviceIdOrderByCreatedAtDesc(
-                deviceId, 
-                PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "createdAt"))
-        );
+    public ResponseEntity<List<LogEntry>> getLogs(@PathVariable String deviceId,
+                                                  @RequestParam(defaultValue = "100") int limit,
+                                                  @RequestParam(required = false) String cursor) {
+        if (cursor == null) {
+            List<LogEntry> cached = recentTelemetryCache.recentLogs(deviceId, limit);
+            if (cached != null) {
+                String next = cached.size() < limit ? null
+                        : KeysetPager.cursorOf(cached.get(0), LogEntry::getCreatedAt, LogEntry::getMongoId);
+                return withNextCursor(next).body(cached);
+            }
+        }
+        KeysetPager.Page<LogEntry> page;
+        try {
+            page = keysetPager.page(LogEntry.class, deviceId, "createdAt", cursor, limit,
+                    LogEntry::getCreatedAt, LogEntry::getMongoId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<LogEntry> logs = new ArrayList<>(page.items());
         Collections.reverse(logs);
-        return logs;
+        if (cursor == null) {
+            recentTelemetryCache.seedLogs(deviceId, logs, logs.size() < limit);
+        }
+        return withNextCursor(page.nextCursor()).body(logs);
+    }
+
+    @GetMapping("/devices/{deviceId}/logs/export")
+    public ResponseEntity<StreamingResponseBody> exportDeviceLogs(@PathVariable String deviceId,
+                                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                                                  @RequestParam(defaultValue = "false") boolean gzip,
+                                                                  HttpServletRequest request) {
+        return exportResponse(request, "logs-" + deviceId, gzip,
+                out -> logExportService.exportDevice(deviceId, from, to, gzip, out));
+    }
+
+    @GetMapping("/apps/{appId}/logs/export")
+    public ResponseEntity<StreamingResponseBody> exportAppLogs(@PathVariable String appId,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                                               @RequestParam(defaultValue = "false") boolean gzip,
+                                                               HttpServletRequest request) {
+        return exportResponse(request, "logs-" + appId, gzip,
+                out -> logExportService.exportApp(appId, from, to, gzip, out));
+    }
+
+    @GetMapping("/apps/{appId}/logs/search")
+    public ResponseEntity<List<LogEntry>> searchLogs(@PathVariable String appId,
+                                                     @RequestParam String q,
+                                                     @RequestParam(required = false) String level,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        if (!logSearchService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(logSearchService.search(appId, q, level, from, to, Math.min(Math.max(limit, 1), 1000)));
     }
 
     @GetMapping("/flags")
-    public List<FeatureFlag> getFlags() {
+    public List<FeatureFlag> getFlags(@RequestParam(required = false) String appId) {
+        if (appId != null) {
+            return flagEvaluationService.snapshot(appId).flags();
+        }
         return featureFlagRepository.findAll();
     }
 
+    @SdkEndpoint
+    @GetMapping("/apps/{appId}/flags/evaluate")
+    public ResponseEntity<FlagEvaluationService.Evaluation> evaluateFlags(@PathVariable String appId,
+                                                                          @RequestParam String deviceId,
+                                                                          WebRequest webRequest) {
+        FlagEvaluationService.Evaluation evaluation = flagEvaluationService.evaluate(appId, deviceId);
+        // Results are a pure function of the snapshot and the deviceId in the URL.
+        if (webRequest.checkNotModified(evaluation.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(evaluation);
+    }
+
     @PostMapping("/flags")
     public FeatureFlag createFlag(@RequestBody FeatureFlag flag) {
         FeatureFlag savedFlag = featureFlagRepository.save(flag);
+        flagEvaluationService.flagsChanged(savedFlag.getAppId());
         return savedFlag;
     }
 
@@ -131,92 +291,221 @@ public class ApiController {
                         flag.setDescription((String) body.get("description"));
                     }
                     FeatureFlag updated = featureFlagRepository.save(flag);
+                    flagEvaluationService.flagsChanged(updated.getAppId());
                     return ResponseEntity.ok(updated);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @SdkEndpoint
     @PostMapping("/devices/{deviceId}/logs")
     public ResponseEntity<LogEntry> addLog(@PathVariable String deviceId, @RequestBody Map<String, Object> body) {
-        LogEntry log = new LogEntry();
-        log.setDeviceId(deviceId);
-        log.setLevel((String) body.getOrDefault("level", "info"));
-        log.setMessage((String) body.get("message"));
-        log.setTag((String) body.getOrDefault("tag", "app"));
-        log.setTimestamp((String) body.getOrDefault("timestamp", new Date().toString()));
-        log.setIsAnomaly((Boolean) body.getOrDefault("isAnomaly", false));
+        LogEntry log = anomalyEngine.inspect(TelemetryMapper.toLogEntry(deviceId, body), true);
         LogEntry saved = logRepository.save(log);
+        recentTelemetryCache.appendLog(saved);
+        logSearchService.index(List.of(saved));
         return ResponseEntity.status(201).body(saved);
     }
 
+    @SdkEndpoint
+    @PostMapping("/devices/{deviceId}/logs:batch")
+    public ResponseEntity<BatchIngestService.BatchResult> addLogBatch(@PathVariable String deviceId, HttpServletRequest request) throws IOException {
+        return batchResponse(batchIngestService.ingestLogs(deviceId, request.getInputStream()));
+    }
+
+    @SdkEndpoint
     @PostMapping("/devices/{deviceId}/crashes")
-    public ResponseEntity<CrashReport> addCrash(@PathVariable String deviceId, @RequestBody Map<String, Object> body) {
-        CrashReport crash = new CrashReport();
-        crash.setId("crash_" + System.currentTimeMillis());
-        crash.setAppId((String) body.getOrDefault("appId", ""));
-        crash.setType((String) body.getOrDefault("type", "Exception"));
-        crash.setTitle((String) body.get("title"));
-        crash.setSubtitle((String) body.getOrDefault("subtitle", ""));
-        crash.setError((String) body.get("error"));
-        crash.setStackTrace((String) body.getOrDefault("stackTrace", ""));
-        crash.setAffectedFile((String) body.getOrDefault("affectedFile", ""));
-        crash.setEventsCount((Integer) body.getOrDefault("eventsCount", 1));
-        crash.setUsersCount((Integer) body.getOrDefault("usersCount", 1));
-        crash.setTimestamp(new Date().toString());
-        CrashReport saved = crashReportRepository.save(crash);
-        return ResponseEntity.status(201).body(saved);
+    public ResponseEntity<CrashReport> addCrash(@PathVariable String deviceId, @RequestBody Map<String, Object> body,
+                                                @RequestAttribute(value = ApiKeyInterceptor.APP_ID_ATTR, required = false) String authenticatedAppId) {
+        if (authenticatedAppId != null) {
+            body.put("appId", authenticatedAppId);
+        }
+        CrashReport issue = crashGroupingService.record(deviceId, body);
+        return ResponseEntity.status(201).body(issue);
     }
 
     @GetMapping("/devices/{deviceId}/crashes")
-    public List<CrashReport> getCrashes(@PathVariable String deviceId) {
-        return crashReportRepository.findAll();
+    public List<CrashReport> getCrashes(@PathVariable String deviceId,
+                                        @RequestParam(defaultValue = "lastSeen") String sort,
+                                        @RequestParam(defaultValue = "100") int limit) {
+        return crashGroupingService.forDevice(deviceId, sort, limit);
     }
 
+    @GetMapping("/apps/{appId}/crashes")
+    public List<CrashReport> getAppCrashes(@PathVariable String appId,
+                                           @RequestParam(defaultValue = "lastSeen") String sort,
+                                           @RequestParam(defaultValue = "100") int limit) {
+        return crashGroupingService.forApp(appId, sort, limit);
+    }
+
+    @SdkEndpoint
     @PostMapping("/devices/{deviceId}/metrics")
     public ResponseEntity<PerformanceMetric> addMetric(@PathVariable String deviceId, @RequestBody Map<String, Object> body) {
-        PerformanceMetric metric = new PerformanceMetric();
-        metric.setDeviceId(deviceId);
-        metric.setCpuUsage(((Number) body.getOrDefault("cpuUsage", 0)).doubleValue());
-        metric.setMemoryUsage(((Number) body.getOrDefault("memoryUsage", 0)).doubleValue());
-        metric.setBatteryLevel(((Number) body.getOrDefault("batteryLevel", 100)).doubleValue());
-        metric.setTemperature(((Number) body.getOrDefault("temperature", 35)).intValue());
-        metric.setFps(((Number) body.getOrDefault("fps", 60L)).longValue());
-        metric.setUploadSpeed(((Number) body.getOrDefault("uploadSpeed", 0L)).longValue());
-        metric.setDownloadSpeed(((Number) body.getOrDefault("downloadSpeed", 0L)).longValue());
+        PerformanceMetric metric = anomalyEngine.inspect(TelemetryMapper.toMetric(deviceId, body), true);
         PerformanceMetric saved = performanceMetricRepository.save(metric);
+        recentTelemetryCache.appendMetric(saved);
+        deviceHealthEngine.onMetric(saved);
+        metricRollupService.onStored(List.of(saved));
         return ResponseEntity.status(201).body(saved);
     }
 
+    @SdkEndpoint
+    @PostMapping("/devices/{deviceId}/metrics:batch")
+    public ResponseEntity<BatchIngestService.BatchResult> addMetricBatch(@PathVariable String deviceId, HttpServletRequest request) throws IOException {
+        return batchResponse(batchIngestService.ingestMetrics(deviceId, request.getInputStream()));
+    }
+
     @GetMapping("/devices/{deviceId}/metrics")
-    public List<PerformanceMetric> getMetrics(@PathVariable String deviceId,
-                                              @RequestParam(defaultValue = "50") int limit) {
-        return performanceMetricRepository.findByDeviceIdOrderByTimestampDesc(
-                deviceId,
-                PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "timestamp"))
-        );
+    public ResponseEntity<List<?>> getMetrics(@PathVariable String deviceId,
+                                              @RequestParam(defaultValue = "50") int limit,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                              @RequestParam(defaultValue = "auto") String resolution,
+                                              @RequestParam(required = false) String cursor) {
+        if (from == null) {
+            List<PerformanceMetric> metrics = cursor == null ? recentTelemetryCache.recentMetrics(deviceId, limit) : null;
+            String next;
+            if (metrics != null) {
+                next = metrics.size() < limit ? null
+                        : KeysetPager.cursorOf(metrics.get(metrics.size() - 1), PerformanceMetric::getTimestamp, PerformanceMetric::getMongoId);
+            } else {
+                KeysetPager.Page<PerformanceMetric> page;
+                try {
+                    page = keysetPager.page(PerformanceMetric.class, deviceId, "timestamp", cursor, limit,
+                            PerformanceMetric::getTimestamp, PerformanceMetric::getMongoId);
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().build();
+                }
+                metrics = page.items();
+                next = page.nextCursor();
+                if (cursor == null) {
+                    List<PerformanceMetric> oldestFirst = new ArrayList<>(metrics);
+                    Collections.reverse(oldestFirst);
+                    recentTelemetryCache.seedMetrics(deviceId, oldestFirst, metrics.size() < limit);
+                }
+            }
+            return withNextCursor(next).header("X-Metric-Resolution", "raw").body(metrics);
+        }
+        Date until = to != null ? to : new Date();
+        MetricRollupService.Resolution chosen;
+        KeysetPager.Page<?> page;
+        try {
+            chosen = "auto".equalsIgnoreCase(resolution)
+                    ? metricRollupService.chooseResolution(from, until)
+                    : MetricRollupService.Resolution.fromLabel(resolution);
+            page = metricRollupService.query(deviceId, from, until, chosen, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return withNextCursor(page.nextCursor())
+                .header("X-Metric-Resolution", chosen.getLabel())
+                .body(page.items());
     }
 
+    @SdkEndpoint
     @PostMapping("/devices/{deviceId}/network")
     public ResponseEntity<NetworkRequest> addNetworkRequest(@PathVariable String deviceId, @RequestBody Map<String, Object> body) {
-        NetworkRequest request = new NetworkRequest();
-        request.setDeviceId(deviceId);
-        request.setMethod((String) body.getOrDefault("method", "GET"));
-        request.setUrl((String) body.get("url"));
-        request.setStatusCode(((Number) body.getOrDefault("statusCode", 200)).intValue());
-        request.setDuration(((Number) body.getOrDefault("duration", 0L)).longValue());
-        request.setRequestSize(((Number) body.getOrDefault("requestSize", 0L)).longValue());
-        request.setResponseSize(((Number) body.getOrDefault("responseSize", 0L)).longValue());
-        request.setError((String) body.getOrDefault("error", ""));
+        NetworkRequest request = TelemetryMapper.toNetworkRequest(deviceId, body);
         NetworkRequest saved = networkRequestRepository.save(request);
+        networkAnalyticsService.record(saved);
+        deviceHealthEngine.onNetworkRequest(saved);
         return ResponseEntity.status(201).body(saved);
     }
 
+    @SdkEndpoint
+    @PostMapping("/devices/{deviceId}/network:batch")
+    public ResponseEntity<BatchIngestService.BatchResult> addNetworkRequestBatch(@PathVariable String deviceId, HttpServletRequest request) throws IOException {
+        return batchResponse(batchIngestService.ingestNetworkRequests(deviceId, request.getInputStream()));
+    }
+
     @GetMapping("/devices/{deviceId}/network")
-    public List<NetworkRequest> getNetworkRequests(@PathVariable String deviceId,
-                                                   @RequestParam(defaultValue = "100") int limit) {
-        return networkRequestRepository.findByDeviceIdOrderByTimestampDesc(
-                deviceId,
-                PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "timestamp"))
-        );
+    public ResponseEntity<List<NetworkRequest>> getNetworkRequests(@PathVariable String deviceId,
+                                                                   @RequestParam(defaultValue = "100") int limit,
+                                                                   @RequestParam(required = false) String cursor) {
+        KeysetPager.Page<NetworkRequest> page;
+        try {
+            page = keysetPager.page(NetworkRequest.class, deviceId, "timestamp", cursor, limit,
+                    NetworkRequest::getTimestamp, NetworkRequest::getMongoId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return withNextCursor(page.nextCursor()).body(page.items());
+    }
+
+    @GetMapping("/apps/{appId}/network/endpoints")
+    public List<Map<String, Object>> getNetworkEndpoints(@PathVariable String appId,
+                                                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                                         @RequestParam(defaultValue = "50") int limit) {
+        Date end = to != null ? to : new Date();
+        Date start = from != null ? from : new Date(end.getTime() - 3_600_000L);
+        return networkAnalyticsService.endpoints(appId, start, end, limit);
+    }
+
+    @GetMapping("/apps/{appId}/network/timeseries")
+    public List<Map<String, Object>> getNetworkTimeseries(@PathVariable String appId,
+                                                          @RequestParam(defaultValue = "GET") String method,
+                                                          @RequestParam String urlTemplate,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                                          @RequestParam(defaultValue = "1") int bucketMinutes) {
+        Date end = to != null ? to : new Date();
+        Date start = from != null ? from : new Date(end.getTime() - 3_600_000L);
+        return networkAnalyticsService.timeseries(appId, method, urlTemplate, start, end, bucketMinutes);
+    }
+
+    private static ResponseEntity.BodyBuilder withNextCursor(String nextCursor) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (nextCursor != null) {
+            builder.header("X-Next-Cursor", nextCursor);
+        }
+        return builder;
+    }
+
+    /**
+     * Exports outlive the default async request timeout, so this request's
+     * timeout is raised just before its streaming body is started.
+     */
+    private ResponseEntity<StreamingResponseBody> exportResponse(HttpServletRequest request, String name, boolean gzip,
+                                                                 StreamingResponseBody body) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(ApiController.class.getName() + ".export",
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        if (webRequest instanceof AsyncWebRequest asyncRequest) {
+                            asyncRequest.setTimeout(exportTimeoutMs);
+                        }
+                    }
+                });
+        String filename = name + (gzip ? ".ndjson.gz" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    /**
+     * 200 when the whole body was handled, 207 when part of it was stored
+     * before a failure, otherwise 400 for a bad body or 503 when nothing
+     * could be stored.
+     */
+    private ResponseEntity<BatchIngestService.BatchResult> batchResponse(BatchIngestService.BatchResult result) {
+        int status;
+        if (!result.isFailed()) {
+            status = 200;
+        } else if (result.getAccepted() > 0) {
+            status = 207;
+        } else {
+            status = result.isStorageFailed() ? 503 : 400;
+        }
+        return ResponseEntity.status(status).body(result);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> invalidTelemetry(IllegalArgumentException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", e.getMessage());
+        body.put("timestamp", Instant.now().toString());
+        return ResponseEntity.badRequest().body(body);
     }
 }
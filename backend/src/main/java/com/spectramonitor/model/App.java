@@ -1,6 +1,7 @@
 package com.spectramonitor.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Date;
 
@@ -8,10 +9,12 @@ import java.util.Date;
 public class App {
     @Id
     private String mongoId;
+    @Indexed(name = "id")
     private String id;
     private String name;
     private String icon;
     private String platform;
+    @Indexed(name = "apiKey", sparse = true)
     private String apiKey;
     private String description;
     private Date createdAt;
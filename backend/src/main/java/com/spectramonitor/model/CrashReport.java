@@ -1,14 +1,35 @@
 package com.spectramonitor.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * A grouped crash issue. Reports with the same {@code fingerprint} within an
+ * app are folded into one document: {@code eventsCount} and the per-day
+ * {@code trendDays} counters are incremented, and {@code userSketch} holds a
+ * HyperLogLog of affected users. {@code usersCount} and {@code trend} are
+ * derived from those on read.
+ */
 @Document(collection = "crashreports")
+@CompoundIndexes({
+        @CompoundIndex(name = "appId_fingerprint", def = "{'appId': 1, 'fingerprint': 1}", unique = true,
+                partialFilter = "{'fingerprint': {$exists: true}}"),
+        @CompoundIndex(name = "appId_lastSeen", def = "{'appId': 1, 'lastSeen': -1}"),
+        @CompoundIndex(name = "appId_eventsCount", def = "{'appId': 1, 'eventsCount': -1}")
+})
 public class CrashReport {
     @Id
     private String mongoId;
+    @Indexed(name = "id")
     private String id;
+    @Indexed(name = "appId")
     private String appId;
     private String timestamp;
     private String type;
@@ -20,6 +41,13 @@ public class CrashReport {
     private Integer eventsCount;
     private Integer usersCount;
     private List<Integer> trend;
+    private String fingerprint;
+    private Date firstSeen;
+    private Date lastSeen;
+    @JsonIgnore
+    private Map<String, Integer> userSketch;
+    @JsonIgnore
+    private Map<String, Integer> trendDays;
 
     public String getMongoId() { return mongoId; }
     public void setMongoId(String mongoId) { this.mongoId = mongoId; }
@@ -59,4 +87,19 @@ public class CrashReport {
 
     public List<Integer> getTrend() { return trend; }
     public void setTrend(List<Integer> trend) { this.trend = trend; }
+
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+
+    public Date getFirstSeen() { return firstSeen; }
+    public void setFirstSeen(Date firstSeen) { this.firstSeen = firstSeen; }
+
+    public Date getLastSeen() { return lastSeen; }
+    public void setLastSeen(Date lastSeen) { this.lastSeen = lastSeen; }
+
+    public Map<String, Integer> getUserSketch() { return userSketch; }
+    public void setUserSketch(Map<String, Integer> userSketch) { this.userSketch = userSketch; }
+
+    public Map<String, Integer> getTrendDays() { return trendDays; }
+    public void setTrendDays(Map<String, Integer> trendDays) { this.trendDays = trendDays; }
 }
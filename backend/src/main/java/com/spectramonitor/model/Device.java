@@ -3,6 +3,7 @@ package com.spectramonitor.model;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Date;
 
@@ -12,7 +13,9 @@ import java.util.Date;
 public class Device {
     @Id
     private String mongoId;
+    @Indexed(name = "deviceId")
     private String deviceId;
+    @Indexed(name = "appId")
     private String appId;
     private String model;
     private String osVersion;
@@ -1,13 +1,16 @@
 package com.spectramonitor.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "featureflags")
 public class FeatureFlag {
     @Id
     private String mongoId;
+    @Indexed(name = "id")
     private String id;
+    @Indexed(name = "appId")
     private String appId;
     private String key;
     private String name;
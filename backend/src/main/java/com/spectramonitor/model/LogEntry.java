@@ -2,15 +2,14 @@ package com.spectramonitor.model;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import java.util.Date;
 
 @Document(collection = "logs")
+@CompoundIndex(name = "deviceId_createdAt_id", def = "{'deviceId': 1, 'createdAt': -1, '_id': -1}")
 public class LogEntry {
     @Id
     private String mongoId;
-    
-    @Indexed
     private String deviceId;
     private String level;
     private String message;
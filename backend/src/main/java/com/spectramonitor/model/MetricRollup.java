@@ -0,0 +1,89 @@
+package com.spectramonitor.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+@Document(collection = "performance_metric_rollups")
+@CompoundIndexes({
+    @CompoundIndex(name = "deviceId_resolution_bucketStart", def = "{'deviceId': 1, 'resolution': 1, 'bucketStart': -1}", unique = true),
+    @CompoundIndex(name = "resolution_bucketStart", def = "{'resolution': 1, 'bucketStart': -1}")
+})
+public class MetricRollup {
+    @Id
+    private String mongoId;
+    private String deviceId;
+    private String resolution;
+    private Date bucketStart;
+    private Integer sampleCount;
+    private Stats cpuUsage;
+    private Stats memoryUsage;
+    private Stats batteryLevel;
+    private Stats temperature;
+    private Stats fps;
+    private Stats uploadSpeed;
+    private Stats downloadSpeed;
+    @Indexed(name = "expireAt_ttl", expireAfterSeconds = 0)
+    private Date expireAt;
+
+    public String getMongoId() { return mongoId; }
+    public void setMongoId(String mongoId) { this.mongoId = mongoId; }
+
+    public String getDeviceId() { return deviceId; }
+    public void setDeviceId(String deviceId) { this.deviceId = deviceId; }
+
+    public String getResolution() { return resolution; }
+    public void setResolution(String resolution) { this.resolution = resolution; }
+
+    public Date getBucketStart() { return bucketStart; }
+    public void setBucketStart(Date bucketStart) { this.bucketStart = bucketStart; }
+
+    public Integer getSampleCount() { return sampleCount; }
+    public void setSampleCount(Integer sampleCount) { this.sampleCount = sampleCount; }
+
+    public Stats getCpuUsage() { return cpuUsage; }
+    public void setCpuUsage(Stats cpuUsage) { this.cpuUsage = cpuUsage; }
+
+    public Stats getMemoryUsage() { return memoryUsage; }
+    public void setMemoryUsage(Stats memoryUsage) { this.memoryUsage = memoryUsage; }
+
+    public Stats getBatteryLevel() { return batteryLevel; }
+    public void setBatteryLevel(Stats batteryLevel) { this.batteryLevel = batteryLevel; }
+
+    public Stats getTemperature() { return temperature; }
+    public void setTemperature(Stats temperature) { this.temperature = temperature; }
+
+    public Stats getFps() { return fps; }
+    public void setFps(Stats fps) { this.fps = fps; }
+
+    public Stats getUploadSpeed() { return uploadSpeed; }
+    public void setUploadSpeed(Stats uploadSpeed) { this.uploadSpeed = uploadSpeed; }
+
+    public Stats getDownloadSpeed() { return downloadSpeed; }
+    public void setDownloadSpeed(Stats downloadSpeed) { this.downloadSpeed = downloadSpeed; }
+
+    public Date getExpireAt() { return expireAt; }
+    public void setExpireAt(Date expireAt) { this.expireAt = expireAt; }
+
+    public static class Stats {
+        private Double min;
+        private Double max;
+        private Double avg;
+        private Double p95;
+
+        public Double getMin() { return min; }
+        public void setMin(Double min) { this.min = min; }
+
+        public Double getMax() { return max; }
+        public void setMax(Double max) { this.max = max; }
+
+        public Double getAvg() { return avg; }
+        public void setAvg(Double avg) { this.avg = avg; }
+
+        public Double getP95() { return p95; }
+        public void setP95(Double p95) { this.p95 = p95; }
+    }
+}
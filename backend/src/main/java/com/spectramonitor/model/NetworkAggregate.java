@@ -0,0 +1,82 @@
+package com.spectramonitor.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Per-minute network counters for one (app, method, URL template, status
+ * class). {@code histogram} maps {@link com.spectramonitor.service.LatencyHistogram}
+ * bucket indexes to request counts; all fields are accumulated with
+ * {@code $inc}, so concurrent flushes merge instead of overwriting.
+ */
+@Document(collection = "network_aggregates")
+@CompoundIndexes({
+    @CompoundIndex(name = "appId_method_urlTemplate_statusClass_minute",
+            def = "{'appId': 1, 'method': 1, 'urlTemplate': 1, 'statusClass': 1, 'minute': -1}", unique = true),
+    @CompoundIndex(name = "appId_minute", def = "{'appId': 1, 'minute': -1}")
+})
+public class NetworkAggregate {
+    @Id
+    private String mongoId;
+    private String appId;
+    private String method;
+    private String urlTemplate;
+    private String statusClass;
+    private Date minute;
+    private Long count;
+    private Long errorCount;
+    private Long durationSum;
+    private Long durationMax;
+    private Long requestBytes;
+    private Long responseBytes;
+    private Map<String, Long> histogram;
+    @Indexed(name = "expireAt_ttl", expireAfterSeconds = 0)
+    private Date expireAt;
+
+    public String getMongoId() { return mongoId; }
+    public void setMongoId(String mongoId) { this.mongoId = mongoId; }
+
+    public String getAppId() { return appId; }
+    public void setAppId(String appId) { this.appId = appId; }
+
+    public String getMethod() { return method; }
+    public void setMethod(String method) { this.method = method; }
+
+    public String getUrlTemplate() { return urlTemplate; }
+    public void setUrlTemplate(String urlTemplate) { this.urlTemplate = urlTemplate; }
+
+    public String getStatusClass() { return statusClass; }
+    public void setStatusClass(String statusClass) { this.statusClass = statusClass; }
+
+    public Date getMinute() { return minute; }
+    public void setMinute(Date minute) { this.minute = minute; }
+
+    public Long getCount() { return count; }
+    public void setCount(Long count) { this.count = count; }
+
+    public Long getErrorCount() { return errorCount; }
+    public void setErrorCount(Long errorCount) { this.errorCount = errorCount; }
+
+    public Long getDurationSum() { return durationSum; }
+    public void setDurationSum(Long durationSum) { this.durationSum = durationSum; }
+
+    public Long getDurationMax() { return durationMax; }
+    public void setDurationMax(Long durationMax) { this.durationMax = durationMax; }
+
+    public Long getRequestBytes() { return requestBytes; }
+    public void setRequestBytes(Long requestBytes) { this.requestBytes = requestBytes; }
+
+    public Long getResponseBytes() { return responseBytes; }
+    public void setResponseBytes(Long responseBytes) { this.responseBytes = responseBytes; }
+
+    public Map<String, Long> getHistogram() { return histogram; }
+    public void setHistogram(Map<String, Long> histogram) { this.histogram = histogram; }
+
+    public Date getExpireAt() { return expireAt; }
+    public void setExpireAt(Date expireAt) { this.expireAt = expireAt; }
+}
@@ -1,10 +1,12 @@
 package com.spectramonitor.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Date;
 
 @Document(collection = "performance_metrics")
+@CompoundIndex(name = "deviceId_timestamp_id", def = "{'deviceId': 1, 'timestamp': -1, '_id': -1}")
 public class PerformanceMetric {
     @Id
     private String mongoId;
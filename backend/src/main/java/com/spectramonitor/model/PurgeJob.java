@@ -0,0 +1,92 @@
+package com.spectramonitor.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Document(collection = "purge_jobs")
+public class PurgeJob {
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    /** {@code DEVICE_SWEEP} deletes what devices sent after their page was purged, then the devices. */
+    public enum Phase { DEVICE_TELEMETRY, APP_DATA, DEVICE_SWEEP }
+
+    @Id
+    private String mongoId;
+    @Indexed(name = "id")
+    private String id;
+    private String appId;
+    @Indexed(name = "status")
+    private Status status;
+    private Phase phase;
+    /** {@code _id} of the last device whose telemetry has been purged in the current phase. */
+    private String deviceCursor;
+    private Long devicesPurged;
+    /** Documents deleted so far, per collection. */
+    private Map<String, Long> deleted;
+    private String owner;
+    private Date leaseUntil;
+    private String error;
+    private Date createdAt;
+    private Date startedAt;
+    private Date updatedAt;
+    private Date finishedAt;
+
+    public PurgeJob() {
+        this.status = Status.PENDING;
+        this.phase = Phase.DEVICE_TELEMETRY;
+        this.devicesPurged = 0L;
+        this.deleted = new LinkedHashMap<>();
+        this.createdAt = new Date();
+    }
+
+    public String getMongoId() { return mongoId; }
+    public void setMongoId(String mongoId) { this.mongoId = mongoId; }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getAppId() { return appId; }
+    public void setAppId(String appId) { this.appId = appId; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public Phase getPhase() { return phase; }
+    public void setPhase(Phase phase) { this.phase = phase; }
+
+    public String getDeviceCursor() { return deviceCursor; }
+    public void setDeviceCursor(String deviceCursor) { this.deviceCursor = deviceCursor; }
+
+    public Long getDevicesPurged() { return devicesPurged; }
+    public void setDevicesPurged(Long devicesPurged) { this.devicesPurged = devicesPurged; }
+
+    public Map<String, Long> getDeleted() { return deleted; }
+    public void setDeleted(Map<String, Long> deleted) { this.deleted = deleted; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public Date getLeaseUntil() { return leaseUntil; }
+    public void setLeaseUntil(Date leaseUntil) { this.leaseUntil = leaseUntil; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getStartedAt() { return startedAt; }
+    public void setStartedAt(Date startedAt) { this.startedAt = startedAt; }
+
+    public Date getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+
+    public Date getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Date finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -6,4 +6,5 @@ import java.util.Optional;
 
 public interface AppRepository extends MongoRepository<App, String> {
     Optional<App> findByIdEquals(String id);
+    Optional<App> findByApiKey(String apiKey);
 }
@@ -2,8 +2,10 @@ package com.spectramonitor.repository;
 
 import com.spectramonitor.model.FeatureFlag;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.List;
 import java.util.Optional;
 
 public interface FeatureFlagRepository extends MongoRepository<FeatureFlag, String> {
+    List<FeatureFlag> findByAppId(String appId);
     Optional<FeatureFlag> findByIdEquals(String id);
 }
@@ -0,0 +1,155 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.App;
+import com.spectramonitor.repository.AppRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves SDK API keys to app ids for ingest authentication. Lookups are
+ * served from a bounded in-memory cache; valid keys are kept for
+ * {@code ttl-ms}, unknown keys for the shorter {@code negative-ttl-ms} in a
+ * separate, smaller map so a flood of bad keys cannot push out good ones.
+ * Enforcement is off unless {@code spectra.auth.enabled} is set.
+ */
+@Service
+public class ApiKeyCache {
+
+    public enum Outcome { OK, MISSING, INVALID, WRONG_APP }
+
+    public record Result(Outcome outcome, String appId) {
+    }
+
+    private final AppRepository appRepository;
+    private final DeviceDirectory deviceDirectory;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMs;
+    private final long negativeTtlMs;
+    private final Map<String, Entry> valid = new ConcurrentHashMap<>();
+    private final Map<String, Long> invalid = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ApiKeyCache(AppRepository appRepository, DeviceDirectory deviceDirectory,
+                       @Value("${spectra.auth.enabled:false}") boolean enabled,
+                       @Value("${spectra.auth.cache.max-entries:10000}") int maxEntries,
+                       @Value("${spectra.auth.cache.ttl-ms:300000}") long ttlMs,
+                       @Value("${spectra.auth.cache.negative-ttl-ms:30000}") long negativeTtlMs) {
+        this.appRepository = appRepository;
+        this.deviceDirectory = deviceDirectory;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.negativeTtlMs = negativeTtlMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** The app id the key belongs to, or null for an unknown key. */
+    public String appIdFor(String apiKey) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = valid.get(apiKey);
+        if (entry != null && now < entry.expiresAt) {
+            hits.incrementAndGet();
+            return entry.appId;
+        }
+        Long invalidUntil = invalid.get(apiKey);
+        if (invalidUntil != null && now < invalidUntil) {
+            hits.incrementAndGet();
+            return null;
+        }
+        misses.incrementAndGet();
+        String appId = appRepository.findByApiKey(apiKey).map(App::getId).orElse(null);
+        if (appId != null) {
+            makeRoom(valid, now);
+            valid.put(apiKey, new Entry(appId, now + ttlMs));
+            invalid.remove(apiKey);
+        } else {
+            makeRoom(invalid, now);
+            invalid.put(apiKey, now + negativeTtlMs);
+        }
+        return appId;
+    }
+
+    /**
+     * Checks a key for a request on behalf of {@code deviceId} and/or
+     * {@code expectedAppId} (either may be null). A device that is already
+     * registered to another app is refused; unknown devices are accepted and
+     * get registered by the usual ingest paths.
+     */
+    public Result check(String apiKey, String deviceId, String expectedAppId) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            rejected.incrementAndGet();
+            return new Result(Outcome.MISSING, null);
+        }
+        String appId = appIdFor(apiKey);
+        if (appId == null) {
+            rejected.incrementAndGet();
+            return new Result(Outcome.INVALID, null);
+        }
+        if (expectedAppId != null && !expectedAppId.equals(appId)) {
+            rejected.incrementAndGet();
+            return new Result(Outcome.WRONG_APP, appId);
+        }
+        return new Result(checkDevice(appId, deviceId), appId);
+    }
+
+    public Outcome checkDevice(String appId, String deviceId) {
+        if (deviceId != null) {
+            String deviceApp = deviceDirectory.appIdOf(deviceId);
+            if (!deviceApp.isEmpty() && !deviceApp.equals(appId)) {
+                rejected.incrementAndGet();
+                return Outcome.WRONG_APP;
+            }
+        }
+        return Outcome.OK;
+    }
+
+    /** Drops every cached key of an app, e.g. when the app is deleted. */
+    public void invalidateApp(String appId) {
+        valid.values().removeIf(entry -> entry.appId.equals(appId));
+    }
+
+    private <V> void makeRoom(Map<String, V> map, long now) {
+        int limit = map == invalid ? Math.max(1, maxEntries / 4) : maxEntries;
+        if (map.size() < limit) {
+            return;
+        }
+        map.entrySet().removeIf(e -> expiresAt(e.getValue()) <= now);
+        // Still full of live entries: drop an arbitrary tenth rather than track recency.
+        Iterator<String> keys = map.keySet().iterator();
+        for (int i = map.size() - limit + limit / 10; i >= 0 && keys.hasNext(); i--) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static long expiresAt(Object value) {
+        return value instanceof Entry entry ? entry.expiresAt : (Long) value;
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "enabled", enabled,
+                "validKeys", valid.size(),
+                "invalidKeys", invalid.size(),
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "rejected", rejected.get());
+    }
+
+    private record Entry(String appId, long expiresAt) {
+    }
+}
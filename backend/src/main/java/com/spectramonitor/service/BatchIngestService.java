@@ -0,0 +1,202 @@
+package com.spectramonitor.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.spectramonitor.anomaly.AnomalyEngine;
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.model.NetworkRequest;
+import com.spectramonitor.model.PerformanceMetric;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Streams a JSON array or newline-delimited JSON body record by record,
+ * maps each one and inserts the valid records in fixed-size chunks.
+ * Chunks already inserted stay stored when a later record is malformed or
+ * an insert fails; the result says how far the body was handled so the
+ * client resends only the rest.
+ */
+@Service
+public class BatchIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchIngestService.class);
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final RecentTelemetryCache recentTelemetryCache;
+    private final AnomalyEngine anomalyEngine;
+    private final NetworkAnalyticsService networkAnalyticsService;
+    private final LogSearchService logSearchService;
+    private final DeviceHealthEngine deviceHealthEngine;
+    private final MetricRollupService metricRollupService;
+    private final ObjectReader recordReader;
+    private final int chunkSize;
+    private final int maxRecords;
+
+    public BatchIngestService(MongoTemplate mongoTemplate, RecentTelemetryCache recentTelemetryCache,
+                              AnomalyEngine anomalyEngine, NetworkAnalyticsService networkAnalyticsService,
+                              LogSearchService logSearchService, DeviceHealthEngine deviceHealthEngine,
+                              MetricRollupService metricRollupService,
+                              @Value("${spectra.ingest.batch.chunk-size:500}") int chunkSize,
+                              @Value("${spectra.ingest.batch.max-records:10000}") int maxRecords) {
+        this.mongoTemplate = mongoTemplate;
+        this.recentTelemetryCache = recentTelemetryCache;
+        this.anomalyEngine = anomalyEngine;
+        this.networkAnalyticsService = networkAnalyticsService;
+        this.logSearchService = logSearchService;
+        this.deviceHealthEngine = deviceHealthEngine;
+        this.metricRollupService = metricRollupService;
+        this.recordReader = new ObjectMapper().readerFor(Object.class);
+        this.chunkSize = chunkSize;
+        this.maxRecords = maxRecords;
+    }
+
+    public BatchResult ingestLogs(String deviceId, InputStream body) {
+        return ingest(deviceId, body,
+                (id, fields) -> anomalyEngine.inspect(TelemetryMapper.toValidLogEntry(id, fields), false), LogEntry.class,
+                logSearchService::index);
+    }
+
+    public BatchResult ingestMetrics(String deviceId, InputStream body) {
+        return ingest(deviceId, body,
+                (id, fields) -> anomalyEngine.inspect(TelemetryMapper.toMetric(id, fields), false), PerformanceMetric.class,
+                inserted -> {
+                    inserted.forEach(deviceHealthEngine::onMetric);
+                    metricRollupService.onStored(inserted);
+                });
+    }
+
+    public BatchResult ingestNetworkRequests(String deviceId, InputStream body) {
+        return ingest(deviceId, body,
+                (id, fields) -> networkAnalyticsService.record(TelemetryMapper.toValidNetworkRequest(id, fields)), NetworkRequest.class,
+                inserted -> inserted.forEach(deviceHealthEngine::onNetworkRequest));
+    }
+
+    private <T> BatchResult ingest(String deviceId, InputStream body,
+                                   BiFunction<String, Map<String, Object>, T> mapper, Class<T> type,
+                                   Consumer<List<T>> afterInsert) {
+        BatchResult result = new BatchResult();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        try (MappingIterator<Object> records = recordReader.readValues(body)) {
+            while (records.hasNextValue()) {
+                if (index >= maxRecords) {
+                    result.fail("batch exceeds " + maxRecords + " records");
+                    break;
+                }
+                Object record;
+                try {
+                    record = records.nextValue();
+                } catch (IOException e) {
+                    result.fail("malformed record at index " + index + ": " + e.getMessage());
+                    break;
+                }
+                try {
+                    if (!(record instanceof Map)) {
+                        throw new IllegalArgumentException("record must be a JSON object");
+                    }
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> fields = (Map<String, Object>) record;
+                    chunk.add(mapper.apply(deviceId, fields));
+                } catch (IllegalArgumentException e) {
+                    result.reject(index, e.getMessage());
+                }
+                index++;
+                if (chunk.size() >= chunkSize) {
+                    if (!insert(chunk, type, result, afterInsert, index)) {
+                        break;
+                    }
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } catch (IOException e) {
+            result.fail("malformed body: " + e.getMessage());
+        }
+        if (!result.isStorageFailed()) {
+            insert(chunk, type, result, afterInsert, index);
+        }
+        if (result.accepted > 0) {
+            // Batches carry their own timestamps and may interleave with live
+            // traffic, so the recent-window buffers are rebuilt on next read.
+            recentTelemetryCache.invalidate(deviceId);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts one chunk; {@code handled} is the number of input records
+     * covered once it is stored. Returns false, with the result failed, if
+     * the insert throws.
+     */
+    private <T> boolean insert(List<T> chunk, Class<T> type, BatchResult result, Consumer<List<T>> afterInsert, int handled) {
+        if (!chunk.isEmpty()) {
+            try {
+                mongoTemplate.insert(chunk, type);
+            } catch (DataAccessException e) {
+                logger.warn("Batch insert of {} {} failed: {}", chunk.size(), type.getSimpleName(), e.getMessage());
+                result.storageFailed = true;
+                result.fail("insert failed: " + e.getMostSpecificCause().getMessage());
+                return false;
+            }
+            result.accepted += chunk.size();
+            afterInsert.accept(chunk);
+        }
+        result.resumeAt = handled;
+        return true;
+    }
+
+    public static class BatchResult {
+        private int accepted;
+        private int rejected;
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private String error;
+        private int resumeAt;
+        private boolean storageFailed;
+
+        void reject(int index, String reason) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("index", index);
+                entry.put("reason", reason);
+                errors.add(entry);
+            }
+        }
+
+        void fail(String error) {
+            this.error = error;
+        }
+
+        public int getAccepted() { return accepted; }
+
+        public int getRejected() { return rejected; }
+
+        public List<Map<String, Object>> getErrors() { return errors; }
+
+        public String getError() { return error; }
+
+        /** Index of the first record that was neither stored nor rejected; resend from here. */
+        public int getResumeAt() { return resumeAt; }
+
+        public boolean isFailed() { return error != null; }
+
+        @JsonIgnore
+        public boolean isStorageFailed() { return storageFailed; }
+    }
+}
@@ -0,0 +1,259 @@
+package com.spectramonitor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded write-behind queue drained by a single background thread.
+ * Items are handed to the sink in batches of up to {@code batchSize}, or
+ * whatever has accumulated once {@code flushIntervalMs} has elapsed since
+ * the first item of the batch was taken. A batch the sink throws on is
+ * retried up to {@code maxRetries} times, doubling {@code retryBackoffMs}
+ * between attempts, before its items are counted as failed; meanwhile the
+ * queue fills and the overflow policy applies.
+ */
+public class BatchingWriter<T> implements IngestWriter<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingWriter.class);
+
+    static final int DEFAULT_MAX_RETRIES = 2;
+    static final long DEFAULT_RETRY_BACKOFF_MS = 100;
+
+    public enum OverflowPolicy {
+        /** Caller waits for space in the queue. */
+        BLOCK,
+        /**
+         * The oldest queued item is discarded to make room. Its caller was
+         * already told it was accepted (and may have cached or broadcast
+         * it), so it is counted as evicted rather than dropped.
+         */
+        DROP_OLDEST,
+        /** The new item is discarded and counted. */
+        DROP
+    }
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<List<T>> sink;
+    private final boolean virtualThread;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final ReentrantLock lifecycle = new ReentrantLock();
+    private volatile boolean running;
+    private Thread worker;
+
+    public BatchingWriter(String name, int capacity, int batchSize, long flushIntervalMs,
+                          OverflowPolicy overflowPolicy, Consumer<List<T>> sink) {
+        this(name, capacity, batchSize, flushIntervalMs, overflowPolicy, sink, false);
+    }
+
+    /**
+     * @param virtualThread drain on a virtual thread, so a flush blocked on
+     *                      the database does not hold a platform thread
+     */
+    public BatchingWriter(String name, int capacity, int batchSize, long flushIntervalMs,
+                          OverflowPolicy overflowPolicy, Consumer<List<T>> sink, boolean virtualThread) {
+        this(name, capacity, batchSize, flushIntervalMs, overflowPolicy, sink, virtualThread,
+                DEFAULT_MAX_RETRIES, DEFAULT_RETRY_BACKOFF_MS);
+    }
+
+    /**
+     * @param maxRetries     further attempts at a batch the sink threw on
+     * @param retryBackoffMs wait before the first retry, doubled for each one after it
+     */
+    public BatchingWriter(String name, int capacity, int batchSize, long flushIntervalMs,
+                          OverflowPolicy overflowPolicy, Consumer<List<T>> sink, boolean virtualThread,
+                          int maxRetries, long retryBackoffMs) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflowPolicy = overflowPolicy;
+        this.sink = sink;
+        this.virtualThread = virtualThread;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoffMs = Math.max(0, retryBackoffMs);
+    }
+
+    @Override
+    public void start() {
+        lifecycle.lock();
+        try {
+            if (running) {
+                return;
+            }
+            running = true;
+            Thread.Builder builder = virtualThread ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+            worker = builder.name("batch-writer-" + name).start(this::drainLoop);
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Stops the background thread after flushing everything still queued.
+     */
+    @Override
+    public void stop() {
+        lifecycle.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<T> remaining = new ArrayList<>();
+            while (queue.drainTo(remaining, batchSize) > 0) {
+                flush(remaining);
+                remaining = new ArrayList<>();
+            }
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Queues an item for persistence.
+     *
+     * @return false if the item was discarded because the queue was full;
+     *         under {@code DROP_OLDEST} always true, even though an item
+     *         accepted earlier may be evicted to make room
+     */
+    @Override
+    public boolean submit(T item) {
+        submitted.incrementAndGet();
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(item);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            case DROP_OLDEST:
+                while (!queue.offer(item)) {
+                    if (queue.poll() != null) {
+                        evicted.incrementAndGet();
+                    }
+                }
+                return true;
+            default:
+                if (queue.offer(item)) {
+                    return true;
+                }
+                dropped.incrementAndGet();
+                return false;
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            List<T> batch = new ArrayList<>(batchSize);
+            try {
+                T first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            flush(batch);
+        }
+    }
+
+    private void flush(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                sink.accept(batch);
+                written.addAndGet(batch.size());
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries || !backOff(attempt)) {
+                    failed.addAndGet(batch.size());
+                    logger.error("Batch writer {} failed to flush {} items after {} attempts: {}",
+                            name, batch.size(), attempt + 1, e.getMessage());
+                    return;
+                }
+                logger.warn("Batch writer {} retrying {} items: {}", name, batch.size(), e.getMessage());
+            }
+        }
+    }
+
+    /** @return false if interrupted while waiting, so the batch is not retried */
+    private boolean backOff(int attempt) {
+        try {
+            Thread.sleep(retryBackoffMs << Math.min(attempt, 10));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public int getQueueDepth() { return queue.size(); }
+
+    @Override
+    public int getQueueCapacity() { return queue.size() + queue.remainingCapacity(); }
+
+    @Override
+    public long getSubmitted() { return submitted.get(); }
+
+    @Override
+    public long getWritten() { return written.get(); }
+
+    @Override
+    public long getDropped() { return dropped.get(); }
+
+    @Override
+    public long getEvicted() { return evicted.get(); }
+
+    @Override
+    public long getFailed() { return failed.get(); }
+}
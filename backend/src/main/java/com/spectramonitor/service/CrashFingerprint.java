@@ -0,0 +1,93 @@
+package com.spectramonitor.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Computes a stable grouping key for a crash. Stack traces are reduced to
+ * the exception type and the top frames with line numbers, addresses and
+ * generated class suffixes removed, so the same crash from different builds
+ * or devices lands in the same issue.
+ */
+public final class CrashFingerprint {
+
+    private static final int MAX_FRAMES = 5;
+
+    // "at com.app.Foo.bar(Foo.java:42)", "at UserService.getProfile (UserService.java:42)"
+    private static final Pattern JVM_FRAME = Pattern.compile("^\\s*at\\s+([^\\s(]+)\\s*\\(([^)]*)\\)");
+    // "#0 0x0000000104a1b2c3 in Foo.bar (file.dart:12:3)" and similar native/dart frames
+    private static final Pattern NUMBERED_FRAME = Pattern.compile("^\\s*#\\d+\\s+(?:0x[0-9a-fA-F]+\\s+(?:in\\s+)?)?(\\S+)");
+    private static final Pattern LINE_NUMBERS = Pattern.compile(":\\d+(?::\\d+)?");
+    private static final Pattern HEX = Pattern.compile("0x[0-9a-fA-F]+");
+    private static final Pattern GENERATED = Pattern.compile("\\$\\$?(?:Lambda|ExternalSynthetic)[^.(]*|\\$\\d+");
+    private static final Pattern UUID = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+    private CrashFingerprint() {
+    }
+
+    public static String of(String type, String error, String stackTrace) {
+        List<String> frames = frames(stackTrace);
+        StringBuilder key = new StringBuilder(type == null ? "" : type.trim());
+        if (frames.isEmpty()) {
+            // Nothing to group on but the message; strip the parts that vary per event.
+            key.append('\n').append(normalizeMessage(error));
+        }
+        for (String frame : frames) {
+            key.append('\n').append(frame);
+        }
+        return sha1(key.toString());
+    }
+
+    static List<String> frames(String stackTrace) {
+        List<String> frames = new ArrayList<>();
+        if (stackTrace == null || stackTrace.isBlank()) {
+            return frames;
+        }
+        for (String line : stackTrace.split("\\r?\\n|\\.\\.\\.\\s*")) {
+            if (frames.size() == MAX_FRAMES) {
+                break;
+            }
+            String frame = null;
+            Matcher jvm = JVM_FRAME.matcher(line);
+            if (jvm.find()) {
+                String location = LINE_NUMBERS.matcher(jvm.group(2)).replaceAll("");
+                frame = jvm.group(1) + "(" + location.trim() + ")";
+            } else {
+                Matcher numbered = NUMBERED_FRAME.matcher(line);
+                if (numbered.find()) {
+                    frame = numbered.group(1);
+                }
+            }
+            if (frame != null) {
+                frame = GENERATED.matcher(HEX.matcher(frame).replaceAll("")).replaceAll("");
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    static String normalizeMessage(String message) {
+        if (message == null) {
+            return "";
+        }
+        String normalized = UUID.matcher(message).replaceAll("<id>");
+        normalized = HEX.matcher(normalized).replaceAll("<addr>");
+        return NUMBER.matcher(normalized).replaceAll("<n>").trim();
+    }
+
+    private static String sha1(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
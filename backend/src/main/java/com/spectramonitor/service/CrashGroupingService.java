@@ -0,0 +1,156 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.CrashReport;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds incoming crash reports into grouped issues. Each report is a single
+ * atomic upsert keyed by app and fingerprint, so a crash storm increments
+ * one document instead of inserting one per event.
+ */
+@Service
+public class CrashGroupingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrashGroupingService.class);
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final MongoTemplate mongoTemplate;
+    private final DeviceDirectory deviceDirectory;
+    private final DeviceHealthEngine deviceHealthEngine;
+    private final int trendDays;
+    private final int trendRetentionDays;
+
+    public CrashGroupingService(MongoTemplate mongoTemplate, DeviceDirectory deviceDirectory,
+                                DeviceHealthEngine deviceHealthEngine,
+                                @Value("${spectra.crashes.trend-days:7}") int trendDays,
+                                @Value("${spectra.crashes.trend-retention-days:30}") int trendRetentionDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.deviceDirectory = deviceDirectory;
+        this.deviceHealthEngine = deviceHealthEngine;
+        this.trendDays = trendDays;
+        this.trendRetentionDays = Math.max(trendDays, trendRetentionDays);
+    }
+
+    public CrashReport record(String deviceId, Map<String, Object> body) {
+        CrashReport report = TelemetryMapper.toCrashReport(body);
+        String userId = TelemetryMapper.string(body, "userId", deviceId);
+        String appId = report.getAppId().isEmpty() ? deviceDirectory.appIdOf(deviceId) : report.getAppId();
+        String fingerprint = CrashFingerprint.of(report.getType(), report.getError(), report.getStackTrace());
+        Date now = new Date();
+        UserSketch.Observation user = UserSketch.observe(userId);
+
+        Query query = new Query(Criteria.where("appId").is(appId).and("fingerprint").is(fingerprint));
+        Update update = new Update()
+                .setOnInsert("id", "crash_" + now.getTime())
+                .setOnInsert("type", report.getType())
+                .setOnInsert("title", report.getTitle())
+                .setOnInsert("subtitle", report.getSubtitle())
+                .setOnInsert("error", report.getError())
+                .setOnInsert("stackTrace", report.getStackTrace())
+                .setOnInsert("affectedFile", report.getAffectedFile())
+                .setOnInsert("firstSeen", now)
+                .set("lastSeen", now)
+                .set("timestamp", now.toInstant().toString())
+                .inc("eventsCount", 1)
+                .inc("trendDays." + dayKey(now.toInstant()), 1)
+                .max("userSketch." + user.register(), user.rank());
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        CrashReport issue;
+        try {
+            issue = mongoTemplate.findAndModify(query, update, options, CrashReport.class);
+        } catch (DuplicateKeyException e) {
+            // Two first reports of the same crash raced on the insert; the loser updates the winner.
+            issue = mongoTemplate.findAndModify(query, update, options, CrashReport.class);
+        }
+        deviceHealthEngine.onCrash(deviceId);
+        return derive(issue);
+    }
+
+    public List<CrashReport> forApp(String appId, String sort, int limit) {
+        String field = "events".equalsIgnoreCase(sort) ? "eventsCount" : "lastSeen";
+        Query query = new Query(Criteria.where("appId").is(appId))
+                .with(Sort.by(Sort.Direction.DESC, field))
+                .limit(limit);
+        List<CrashReport> issues = mongoTemplate.find(query, CrashReport.class);
+        issues.forEach(this::derive);
+        return issues;
+    }
+
+    /**
+     * Issues of the app the device belongs to; crashes are grouped per app,
+     * not per device.
+     */
+    public List<CrashReport> forDevice(String deviceId, String sort, int limit) {
+        String appId = deviceDirectory.appIdOf(deviceId);
+        return appId.isEmpty() ? List.of() : forApp(appId, sort, limit);
+    }
+
+    /**
+     * Drops per-day counters that have aged out of the retention window so
+     * long-lived issues do not accumulate a key per day forever.
+     */
+    @Scheduled(cron = "${spectra.crashes.trend-prune-cron:0 15 0 * * *}", zone = "UTC")
+    public void pruneTrends() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        String cutoff = "d" + today.minusDays(trendRetentionDays - 1L).format(DAY);
+        Date cutoffDate = Date.from(today.minusDays(trendRetentionDays - 1L).atStartOfDay(ZoneOffset.UTC).toInstant());
+        AggregationOperation keepRecent = context -> new Document("$set", new Document("trendDays",
+                new Document("$arrayToObject", new Document("$filter", new Document("input", new Document("$objectToArray", "$trendDays"))
+                        .append("as", "day")
+                        .append("cond", new Document("$gte", List.of("$$day.k", cutoff)))))));
+        try {
+            mongoTemplate.updateMulti(new Query(Criteria.where("firstSeen").lt(cutoffDate)),
+                    AggregationUpdate.from(List.of(keepRecent)), CrashReport.class);
+        } catch (Exception e) {
+            logger.error("Crash trend prune failed: {}", e.getMessage());
+        }
+    }
+
+    /** Fills {@code usersCount} and {@code trend} from the stored counters. */
+    private CrashReport derive(CrashReport issue) {
+        if (issue == null) {
+            return null;
+        }
+        if (issue.getUserSketch() != null) {
+            issue.setUsersCount((int) Math.max(1, UserSketch.estimate(issue.getUserSketch())));
+        }
+        if (issue.getTrendDays() != null) {
+            Map<String, Integer> days = issue.getTrendDays();
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            List<Integer> trend = new ArrayList<>(trendDays);
+            for (int i = trendDays - 1; i >= 0; i--) {
+                trend.add(days.getOrDefault("d" + today.minusDays(i).format(DAY), 0));
+            }
+            issue.setTrend(trend);
+        }
+        return issue;
+    }
+
+    private static String dayKey(Instant instant) {
+        return "d" + instant.atZone(ZoneOffset.UTC).toLocalDate().format(DAY);
+    }
+}
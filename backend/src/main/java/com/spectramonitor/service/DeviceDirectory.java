@@ -0,0 +1,71 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.Device;
+import com.spectramonitor.repository.DeviceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached deviceId → appId lookups for ingest paths that only carry the
+ * device id. Devices never move between apps, so hits are kept until the
+ * cache is full; unknown devices are remembered briefly so a device that
+ * reports before it is registered does not cost a query per request.
+ */
+@Service
+public class DeviceDirectory {
+
+    private static final String UNKNOWN = "";
+
+    private final DeviceRepository deviceRepository;
+    private final int maxEntries;
+    private final long unknownTtlMs;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public DeviceDirectory(DeviceRepository deviceRepository,
+                           @Value("${spectra.devices.directory.max-entries:100000}") int maxEntries,
+                           @Value("${spectra.devices.directory.unknown-ttl-ms:30000}") long unknownTtlMs) {
+        this.deviceRepository = deviceRepository;
+        this.maxEntries = maxEntries;
+        this.unknownTtlMs = unknownTtlMs;
+    }
+
+    /** The device's app id, or an empty string if the device is not registered. */
+    public String appIdOf(String deviceId) {
+        if (deviceId == null) {
+            return UNKNOWN;
+        }
+        Entry entry = entries.get(deviceId);
+        if (entry != null && (entry.appId != UNKNOWN || System.currentTimeMillis() < entry.expiresAt)) {
+            return entry.appId;
+        }
+        String appId = deviceRepository.findByDeviceIdEquals(deviceId)
+                .map(Device::getAppId)
+                .filter(id -> !id.isEmpty())
+                .orElse(UNKNOWN);
+        remember(deviceId, appId);
+        return appId;
+    }
+
+    /** Records a known mapping, e.g. when a device is created or connects. */
+    public void remember(String deviceId, String appId) {
+        if (deviceId == null) {
+            return;
+        }
+        if (entries.size() >= maxEntries && !entries.containsKey(deviceId)) {
+            // Mappings are cheap to reload; start over rather than track recency.
+            entries.clear();
+        }
+        String value = appId == null || appId.isEmpty() ? UNKNOWN : appId;
+        entries.put(deviceId, new Entry(value, value == UNKNOWN ? System.currentTimeMillis() + unknownTtlMs : Long.MAX_VALUE));
+    }
+
+    public void forget(String deviceId) {
+        entries.remove(deviceId);
+    }
+
+    private record Entry(String appId, long expiresAt) {
+    }
+}
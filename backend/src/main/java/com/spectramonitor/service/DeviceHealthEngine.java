@@ -0,0 +1,440 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.Device;
+import com.spectramonitor.model.NetworkRequest;
+import com.spectramonitor.model.PerformanceMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps {@code devices.health} current from the telemetry stream. Metrics,
+ * network requests, sessions and crashes are folded into a per-device
+ * sliding window of time buckets as they arrive; a periodic pass turns the
+ * window into {@link Device.DeviceHealth} and writes only the fields that
+ * moved by at least {@code spectra.health.min-change} points, as one
+ * unordered bulk of {@code $set}s. Device reads then carry the scores
+ * without touching raw telemetry.
+ *
+ * <p>A session starts with a WebSocket {@code device:connect}, or with the
+ * first metric or network request after {@code spectra.health.session-gap-minutes}
+ * without any, so devices that only use REST are counted too. A crash is
+ * written through immediately, since it can flip the crash-free rate and
+ * churn risk on its own.
+ */
+@Service
+public class DeviceHealthEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceHealthEngine.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final long bucketMs;
+    private final int buckets;
+    private final int minChange;
+    private final long sessionGapMs;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicLong updatesWritten = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public DeviceHealthEngine(MongoTemplate mongoTemplate,
+                              @Value("${spectra.health.enabled:true}") boolean enabled,
+                              @Value("${spectra.health.window-minutes:60}") int windowMinutes,
+                              @Value("${spectra.health.bucket-minutes:5}") int bucketMinutes,
+                              @Value("${spectra.health.min-change:2}") int minChange,
+                              @Value("${spectra.health.session-gap-minutes:30}") int sessionGapMinutes) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.bucketMs = Math.max(1, bucketMinutes) * 60_000L;
+        this.buckets = Math.max(1, windowMinutes / Math.max(1, bucketMinutes));
+        this.minChange = minChange;
+        this.sessionGapMs = Math.max(1, sessionGapMinutes) * 60_000L;
+    }
+
+    public void onMetric(PerformanceMetric metric) {
+        Window window = window(metric.getDeviceId());
+        if (window == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        window.lock.lock();
+        try {
+            Bucket bucket = window.current(now);
+            window.activity(now, bucket);
+            bucket.metrics++;
+            bucket.cpuSum += value(metric.getCpuUsage(), 0);
+            bucket.fpsSum += value(metric.getFps(), 60);
+            bucket.temperatureSum += value(metric.getTemperature(), 35);
+            window.dirty = true;
+        } finally {
+            window.lock.unlock();
+        }
+    }
+
+    public void onNetworkRequest(NetworkRequest request) {
+        Window window = window(request.getDeviceId());
+        if (window == null) {
+            return;
+        }
+        boolean failed = value(request.getStatusCode(), 200) >= 400
+                || (request.getError() != null && !request.getError().isEmpty());
+        long now = System.currentTimeMillis();
+        window.lock.lock();
+        try {
+            Bucket bucket = window.current(now);
+            window.activity(now, bucket);
+            bucket.requests++;
+            bucket.failedRequests += failed ? 1 : 0;
+            bucket.durationSum += value(request.getDuration(), 0);
+            window.dirty = true;
+        } finally {
+            window.lock.unlock();
+        }
+    }
+
+    /** A device connected; crashes until the next connect belong to this session. */
+    public void onSessionStart(String deviceId) {
+        Window window = window(deviceId);
+        if (window == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        window.lock.lock();
+        try {
+            window.current(now).sessions++;
+            window.sessionCrashed = false;
+            window.lastActivity = now;
+            window.dirty = true;
+        } finally {
+            window.lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the open session as crashed. A crash with no session in the
+     * window leaves the crash-free rate alone rather than counting as a
+     * session of its own.
+     */
+    public void onCrash(String deviceId) {
+        Window window = window(deviceId);
+        if (window == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Update update;
+        window.lock.lock();
+        try {
+            Bucket bucket = window.current(now);
+            if (window.sessionOpen(now) && !window.sessionCrashed) {
+                window.sessionCrashed = true;
+                bucket.crashedSessions++;
+            }
+            update = changes(window, window.compute(now));
+            window.dirty = false;
+        } finally {
+            window.lock.unlock();
+        }
+        if (update == null) {
+            return;
+        }
+        try {
+            mongoTemplate.updateFirst(new Query(Criteria.where("deviceId").is(deviceId)), update, Device.class);
+            updatesWritten.incrementAndGet();
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            window.forgetWritten();
+            logger.error("Health update for {} failed: {}", deviceId, e.getMessage());
+        }
+    }
+
+    private Window window(String deviceId) {
+        if (!enabled || deviceId == null) {
+            return null;
+        }
+        return windows.computeIfAbsent(deviceId, id -> new Window());
+    }
+
+    /**
+     * Recomputes every device that received telemetry since the last pass
+     * or whose window has moved on by a bucket, so old data ages out of
+     * idle devices too, and forgets devices whose window has emptied.
+     */
+    @Scheduled(fixedDelayString = "${spectra.health.recompute-interval-ms:30000}")
+    public void recompute() {
+        long now = System.currentTimeMillis();
+        BulkOperations bulk = null;
+        List<Window> flushed = new ArrayList<>();
+        for (Map.Entry<String, Window> entry : windows.entrySet()) {
+            Window window = entry.getValue();
+            Update update;
+            window.lock.lock();
+            try {
+                if (window.isEmpty(now)) {
+                    windows.remove(entry.getKey(), window);
+                    continue;
+                }
+                if (!window.dirty && window.computedEpoch == now / bucketMs) {
+                    continue;
+                }
+                update = changes(window, window.compute(now));
+                window.dirty = false;
+            } finally {
+                window.lock.unlock();
+            }
+            if (update == null) {
+                continue;
+            }
+            if (bulk == null) {
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Device.class);
+            }
+            bulk.updateOne(new Query(Criteria.where("deviceId").is(entry.getKey())), update);
+            flushed.add(window);
+        }
+        if (bulk == null) {
+            return;
+        }
+        try {
+            bulk.execute();
+            updatesWritten.addAndGet(flushed.size());
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            logger.error("Health flush of {} devices failed: {}", flushed.size(), e.getMessage());
+            flushed.forEach(Window::forgetWritten);
+        }
+    }
+
+    /**
+     * The {@code $set}s for the fields that moved enough since they were
+     * last written, or null if none did. The window remembers what is now
+     * stored, so small drifts still add up to a write eventually. Called
+     * under the window's lock.
+     */
+    private Update changes(Window window, Device.DeviceHealth health) {
+        Device.DeviceHealth previous = window.written;
+        Device.DeviceHealth stored = new Device.DeviceHealth();
+        Update update = new Update();
+        stored.setScore(set(update, "health.score", previous == null ? null : previous.getScore(), health.getScore()));
+        stored.setUxScore(set(update, "health.uxScore", previous == null ? null : previous.getUxScore(), health.getUxScore()));
+        stored.setPerformanceIndex(set(update, "health.performanceIndex",
+                previous == null ? null : previous.getPerformanceIndex(), health.getPerformanceIndex()));
+        stored.setCrashFreeSessions(set(update, "health.crashFreeSessions",
+                previous == null ? null : previous.getCrashFreeSessions(), health.getCrashFreeSessions()));
+        stored.setChurnRisk(previous == null ? null : previous.getChurnRisk());
+        if (health.getChurnRisk() != null && !health.getChurnRisk().equals(stored.getChurnRisk())) {
+            update.set("health.churnRisk", health.getChurnRisk());
+            stored.setChurnRisk(health.getChurnRisk());
+        }
+        if (update.getUpdateObject().isEmpty()) {
+            return null;
+        }
+        window.written = stored;
+        return update;
+    }
+
+    /** Adds a {@code $set} if the value moved by at least {@code minChange}; returns the value now stored. */
+    private Integer set(Update update, String field, Integer previous, Integer current) {
+        if (current == null || (previous != null && Math.abs(current - previous) < minChange)) {
+            return previous;
+        }
+        update.set(field, current);
+        return current;
+    }
+
+    private static double value(Number number, double defaultValue) {
+        return number == null ? defaultValue : number.doubleValue();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedDevices", windows.size());
+        stats.put("windowMinutes", buckets * bucketMs / 60_000L);
+        stats.put("updatesWritten", updatesWritten.get());
+        stats.put("flushFailures", flushFailures.get());
+        return stats;
+    }
+
+    private static class Bucket {
+        private long epoch = -1;
+        private int metrics;
+        private double cpuSum;
+        private double fpsSum;
+        private double temperatureSum;
+        private int requests;
+        private int failedRequests;
+        private double durationSum;
+        private int sessions;
+        private int crashedSessions;
+    }
+
+    /** Ring of time buckets for one device; guarded by {@code lock}. */
+    private class Window {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Bucket[] ring = new Bucket[buckets];
+        private boolean dirty;
+        private boolean sessionCrashed;
+        private long lastActivity = -1;
+        private long computedEpoch = -1;
+        private Device.DeviceHealth written;
+
+        Window() {
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = new Bucket();
+            }
+        }
+
+        /** The bucket for {@code now}, cleared if it last held an older period. */
+        Bucket current(long now) {
+            long epoch = now / bucketMs;
+            Bucket bucket = ring[(int) (epoch % ring.length)];
+            if (bucket.epoch != epoch) {
+                ring[(int) (epoch % ring.length)] = bucket = new Bucket();
+                bucket.epoch = epoch;
+            }
+            return bucket;
+        }
+
+        /** Counts a new session when activity resumes after {@code sessionGapMs} without any. */
+        void activity(long now, Bucket bucket) {
+            if (!sessionOpen(now)) {
+                bucket.sessions++;
+                sessionCrashed = false;
+            }
+            lastActivity = now;
+        }
+
+        boolean sessionOpen(long now) {
+            return lastActivity >= 0 && now - lastActivity <= sessionGapMs;
+        }
+
+        /** After a failed write the stored fields are unknown; rewrite them all on the next pass. */
+        void forgetWritten() {
+            lock.lock();
+            try {
+                written = null;
+                dirty = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isEmpty(long now) {
+            long oldest = now / bucketMs - ring.length + 1;
+            for (Bucket bucket : ring) {
+                if (bucket.epoch >= oldest) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Scores from the buckets still inside the window:
+         * <ul>
+         *   <li>performanceIndex: frame rate against 60 fps (50%), CPU headroom (30%),
+         *       thermal headroom above 40&deg;C (20%)</li>
+         *   <li>uxScore: request success rate (60%) and latency, full marks up to
+         *       300 ms and none at 3 s (40%); frame rate alone without network data</li>
+         *   <li>crashFreeSessions: percentage of sessions without a crash; absent
+         *       until a session has been seen</li>
+         *   <li>score: crash-free 40%, performance 30%, UX 30%, re-weighted over
+         *       the parts that have data</li>
+         *   <li>churnRisk: High below 50 or under 90% crash-free, Medium below 75
+         *       or under 98%, otherwise Low</li>
+         * </ul>
+         */
+        Device.DeviceHealth compute(long now) {
+            computedEpoch = now / bucketMs;
+            long oldest = computedEpoch - ring.length + 1;
+            Bucket total = new Bucket();
+            for (Bucket bucket : ring) {
+                if (bucket.epoch < oldest) {
+                    continue;
+                }
+                total.metrics += bucket.metrics;
+                total.cpuSum += bucket.cpuSum;
+                total.fpsSum += bucket.fpsSum;
+                total.temperatureSum += bucket.temperatureSum;
+                total.requests += bucket.requests;
+                total.failedRequests += bucket.failedRequests;
+                total.durationSum += bucket.durationSum;
+                total.sessions += bucket.sessions;
+                total.crashedSessions += bucket.crashedSessions;
+            }
+
+            Double frames = null;
+            Double performance = null;
+            if (total.metrics > 0) {
+                double fps = total.fpsSum / total.metrics;
+                double cpu = total.cpuSum / total.metrics;
+                double temperature = total.temperatureSum / total.metrics;
+                frames = clamp(fps / 60 * 100);
+                double thermal = clamp(100 - Math.max(0, temperature - 40) * 5);
+                performance = 0.5 * frames + 0.3 * clamp(100 - cpu) + 0.2 * thermal;
+            }
+            Double ux = frames;
+            if (total.requests > 0) {
+                double success = 100.0 * (total.requests - total.failedRequests) / total.requests;
+                double latency = clamp(100 - (total.durationSum / total.requests - 300) / 27);
+                ux = 0.6 * success + 0.4 * latency;
+            }
+            Double crashFree = null;
+            if (total.sessions > 0) {
+                // A session that started before the window can have its crash inside it.
+                int crashed = Math.min(total.crashedSessions, total.sessions);
+                crashFree = 100.0 * (total.sessions - crashed) / total.sessions;
+            }
+
+            double weighted = 0;
+            double weights = 0;
+            if (crashFree != null) {
+                weighted += 0.4 * crashFree;
+                weights += 0.4;
+            }
+            if (performance != null) {
+                weighted += 0.3 * performance;
+                weights += 0.3;
+            }
+            if (ux != null) {
+                weighted += 0.3 * ux;
+                weights += 0.3;
+            }
+
+            Device.DeviceHealth health = new Device.DeviceHealth();
+            health.setPerformanceIndex(round(performance));
+            health.setUxScore(round(ux));
+            health.setCrashFreeSessions(round(crashFree));
+            if (weights > 0) {
+                double score = weighted / weights;
+                health.setScore((int) Math.round(score));
+                double crashFreeRate = crashFree == null ? 100 : crashFree;
+                health.setChurnRisk(score < 50 || crashFreeRate < 90 ? "High"
+                        : score < 75 || crashFreeRate < 98 ? "Medium" : "Low");
+            }
+            return health;
+        }
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0, Math.min(100, value));
+    }
+
+    private static Integer round(Double value) {
+        return value == null ? null : (int) Math.round(value);
+    }
+}
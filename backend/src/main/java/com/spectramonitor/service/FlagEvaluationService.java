@@ -0,0 +1,173 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.FeatureFlag;
+import com.spectramonitor.repository.FeatureFlagRepository;
+import com.spectramonitor.socket.EventBroadcaster;
+import com.spectramonitor.socket.RoomRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates feature flags from an in-memory snapshot per app. Snapshots are
+ * rebuilt when a flag of the app changes (and after {@code snapshot-ttl-ms}
+ * as a safety net for writes made elsewhere), so evaluation never touches
+ * Mongo. Snapshots are loaded outside the map's locks; a load only replaces
+ * a snapshot that was started before it, so a slow reload can never undo a
+ * newer one. At most {@code max-snapshots} apps are kept. Rollouts bucket
+ * devices deterministically: a device stays in or out
+ * of a rollout until the percentage changes, and raising the percentage
+ * only adds devices.
+ */
+@Service
+public class FlagEvaluationService {
+
+    private static final int BUCKETS = 10_000;
+
+    private final FeatureFlagRepository featureFlagRepository;
+    private final EventBroadcaster eventBroadcaster;
+    private final long snapshotTtlMs;
+    private final int maxSnapshots;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong loads = new AtomicLong();
+
+    public FlagEvaluationService(FeatureFlagRepository featureFlagRepository, EventBroadcaster eventBroadcaster,
+                                 @Value("${spectra.flags.snapshot-ttl-ms:300000}") long snapshotTtlMs,
+                                 @Value("${spectra.flags.max-snapshots:10000}") int maxSnapshots) {
+        this.featureFlagRepository = featureFlagRepository;
+        this.eventBroadcaster = eventBroadcaster;
+        this.snapshotTtlMs = snapshotTtlMs;
+        this.maxSnapshots = Math.max(1, maxSnapshots);
+    }
+
+    /**
+     * Immutable view of an app's flags; {@code etag} changes whenever any flag
+     * does. {@code sequence} orders loads by when they started.
+     */
+    public record Snapshot(String appId, List<FeatureFlag> flags, String etag, long loadedAt, long sequence) {
+    }
+
+    public record Evaluation(String appId, String etag, Map<String, Boolean> flags) {
+    }
+
+    public Snapshot snapshot(String appId) {
+        Snapshot snapshot = snapshots.get(appId);
+        if (snapshot != null && System.currentTimeMillis() - snapshot.loadedAt < snapshotTtlMs) {
+            return snapshot;
+        }
+        return install(load(appId));
+    }
+
+    public Evaluation evaluate(String appId, String deviceId) {
+        Snapshot snapshot = snapshot(appId);
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (FeatureFlag flag : snapshot.flags) {
+            result.put(keyOf(flag), isOn(flag, deviceId));
+        }
+        return new Evaluation(appId, snapshot.etag, result);
+    }
+
+    /**
+     * Rebuilds the app's snapshot after a write and tells connected clients.
+     * Must be called after the change is saved; the swap is atomic, so
+     * readers see either the old or the new snapshot, never a mix.
+     */
+    public void flagsChanged(String appId) {
+        if (appId == null) {
+            return;
+        }
+        Snapshot snapshot = install(load(appId));
+        eventBroadcaster.toRoom(RoomRegistry.appRoom(appId), "flags:changed",
+                Map.of("appId", appId, "etag", snapshot.etag));
+    }
+
+    /** Drops the app's snapshot, e.g. when the app is deleted. */
+    public void forget(String appId) {
+        if (appId != null) {
+            snapshots.remove(appId);
+        }
+    }
+
+    /** Keeps whichever of the loaded and the cached snapshot was started last. */
+    private Snapshot install(Snapshot loaded) {
+        makeRoom(loaded.appId);
+        return snapshots.merge(loaded.appId, loaded,
+                (current, fresh) -> current.sequence > fresh.sequence ? current : fresh);
+    }
+
+    private void makeRoom(String appId) {
+        if (snapshots.size() < maxSnapshots || snapshots.containsKey(appId)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        snapshots.values().removeIf(snapshot -> now - snapshot.loadedAt >= snapshotTtlMs);
+        // Still full of live snapshots: drop an arbitrary tenth rather than track recency.
+        Iterator<String> keys = snapshots.keySet().iterator();
+        for (int i = snapshots.size() - maxSnapshots + maxSnapshots / 10; i >= 0 && keys.hasNext(); i--) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    static boolean isOn(FeatureFlag flag, String deviceId) {
+        if (!Boolean.TRUE.equals(flag.getEnabled())) {
+            return false;
+        }
+        int rollout = flag.getRolloutPercentage() == null ? 100 : flag.getRolloutPercentage();
+        if (rollout >= 100) {
+            return true;
+        }
+        if (rollout <= 0 || deviceId == null) {
+            return false;
+        }
+        return bucketOf(keyOf(flag), deviceId) < rollout * (BUCKETS / 100);
+    }
+
+    /** Stable bucket in {@code [0, 10000)} for a device and flag. */
+    static int bucketOf(String flagKey, String deviceId) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : (flagKey + ':' + deviceId).getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) Long.remainderUnsigned(h, BUCKETS);
+    }
+
+    private static String keyOf(FeatureFlag flag) {
+        if (flag.getKey() != null) {
+            return flag.getKey();
+        }
+        return flag.getName() != null ? flag.getName() : flag.getId();
+    }
+
+    private Snapshot load(String appId) {
+        // Taken before the query, so a load that may have missed a write orders before the one that follows it.
+        long sequence = loads.incrementAndGet();
+        long loadedAt = System.currentTimeMillis();
+        List<FeatureFlag> flags = new ArrayList<>(featureFlagRepository.findByAppId(appId));
+        flags.sort(Comparator.comparing(FlagEvaluationService::keyOf, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return new Snapshot(appId, List.copyOf(flags), etagOf(flags), loadedAt, sequence);
+    }
+
+    private static String etagOf(List<FeatureFlag> flags) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (FeatureFlag flag : flags) {
+                String line = keyOf(flag) + '|' + flag.getEnabled() + '|' + flag.getRolloutPercentage() + '\n';
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
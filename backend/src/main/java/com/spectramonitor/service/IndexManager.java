@@ -0,0 +1,272 @@
+package com.spectramonitor.service;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Creates the indexes declared on {@code @Document} models once the
+ * application is up, and records which ones were missing. Index builds run
+ * on a background thread so startup is never blocked on a large collection.
+ *
+ * <p>Indexes are matched by name, so renaming or extending a declaration
+ * leaves the old index behind. An undeclared plain index whose keys are a
+ * leading prefix of a declared index that is now present is redundant. It
+ * is logged and listed as superseded, and only dropped when
+ * {@code spectra.indexes.drop-superseded=true}.
+ */
+@Service
+public class IndexManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexManager.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+    private final boolean createMissing;
+    private final boolean dropSuperseded;
+    private final Map<Class<?>, List<IndexDefinition>> programmatic = new ConcurrentHashMap<>();
+    private final Map<String, CollectionIndexState> states = new ConcurrentHashMap<>();
+
+    public IndexManager(MongoTemplate mongoTemplate, MongoMappingContext mappingContext,
+                        @Value("${spectra.indexes.create-missing:true}") boolean createMissing,
+                        @Value("${spectra.indexes.drop-superseded:false}") boolean dropSuperseded) {
+        this.mongoTemplate = mongoTemplate;
+        this.mappingContext = mappingContext;
+        this.createMissing = createMissing;
+        this.dropSuperseded = dropSuperseded;
+    }
+
+    /**
+     * Registers an index that cannot be declared on the model, typically
+     * because an option such as a TTL comes from configuration. Must be
+     * called before the application is ready to take part in bootstrap.
+     */
+    public void require(Class<?> type, IndexDefinition definition) {
+        programmatic.computeIfAbsent(type, k -> new CopyOnWriteArrayList<>()).add(definition);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        Thread thread = new Thread(this::ensureAll, "index-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void ensureAll() {
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            List<IndexDefinition> declared = new ArrayList<>();
+            resolver.resolveIndexFor(entity.getType()).forEach(declared::add);
+            declared.addAll(programmatic.getOrDefault(entity.getType(), List.of()));
+            if (!declared.isEmpty()) {
+                ensure(entity.getCollection(), declared);
+            }
+        }
+    }
+
+    private void ensure(String collection, List<IndexDefinition> declared) {
+        CollectionIndexState state = new CollectionIndexState(collection);
+        states.put(collection, state);
+        try {
+            IndexOperations ops = mongoTemplate.indexOps(collection);
+            Map<String, IndexInfo> existing = new HashMap<>();
+            for (IndexInfo info : ops.getIndexInfo()) {
+                existing.put(info.getName(), info);
+            }
+            for (IndexDefinition definition : declared) {
+                String name = nameOf(definition);
+                state.declared.add(name);
+                if (existing.containsKey(name)) {
+                    state.present.add(name);
+                    syncExpiry(collection, existing.get(name), definition);
+                    continue;
+                }
+                logger.warn("Missing index {}.{} {}", collection, name, definition.getIndexKeys().toJson());
+                state.missing.add(name);
+                if (createMissing) {
+                    try {
+                        ops.ensureIndex(inBackground(definition));
+                        state.missing.remove(name);
+                        state.created.add(name);
+                    } catch (Exception e) {
+                        state.error = name + ": " + e.getMessage();
+                        logger.error("Could not create index {}.{}: {}", collection, name, e.getMessage());
+                    }
+                }
+            }
+            handleSuperseded(collection, ops, existing, declared, state);
+        } catch (Exception e) {
+            state.error = e.getMessage();
+            logger.error("Index bootstrap failed for {}: {}", collection, e.getMessage());
+        }
+        state.checkedAt = new Date();
+    }
+
+    private void handleSuperseded(String collection, IndexOperations ops, Map<String, IndexInfo> existing,
+                                  List<IndexDefinition> declared, CollectionIndexState state) {
+        for (IndexInfo info : existing.values()) {
+            if (info.getName().equals("_id_") || state.declared.contains(info.getName()) || !isPlain(info)) {
+                continue;
+            }
+            List<String> keys = keysOf(info);
+            for (IndexDefinition definition : declared) {
+                String name = nameOf(definition);
+                List<String> declaredKeys = keysOf(definition);
+                boolean live = state.present.contains(name) || state.created.contains(name);
+                if (live && declaredKeys.size() > keys.size() && declaredKeys.subList(0, keys.size()).equals(keys)) {
+                    if (!dropSuperseded) {
+                        state.superseded.add(info.getName());
+                        logger.warn("Index {}.{} is superseded by {}; set spectra.indexes.drop-superseded=true to drop it",
+                                collection, info.getName(), name);
+                        break;
+                    }
+                    try {
+                        ops.dropIndex(info.getName());
+                        state.dropped.add(info.getName());
+                        logger.info("Dropped index {}.{}, superseded by {}", collection, info.getName(), name);
+                    } catch (Exception e) {
+                        logger.error("Could not drop index {}.{}: {}", collection, info.getName(), e.getMessage());
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Ascending or descending keys only, with no option that changes what the index enforces or holds. */
+    private static boolean isPlain(IndexInfo info) {
+        return !info.isUnique() && !info.isSparse() && info.getExpireAfter().isEmpty()
+                && info.getPartialFilterExpression() == null
+                && info.getIndexFields().stream().allMatch(field -> field.getDirection() != null);
+    }
+
+    private static List<String> keysOf(IndexInfo info) {
+        return info.getIndexFields().stream()
+                .map(field -> field.getKey() + ":" + (field.getDirection() == Sort.Direction.ASC ? 1 : -1))
+                .toList();
+    }
+
+    private static List<String> keysOf(IndexDefinition definition) {
+        List<String> keys = new ArrayList<>();
+        definition.getIndexKeys().forEach((key, direction) -> keys.add(key + ":" + direction));
+        return keys;
+    }
+
+    /**
+     * TTL indexes keep their name when the retention changes, so the new
+     * expiry is applied in place with collMod instead of a rebuild.
+     */
+    private void syncExpiry(String collection, IndexInfo info, IndexDefinition definition) {
+        Number wanted = definition.getIndexOptions().get("expireAfterSeconds", Number.class);
+        if (wanted == null) {
+            return;
+        }
+        long current = info.getExpireAfter().map(Duration::getSeconds).orElse(-1L);
+        if (current == wanted.longValue()) {
+            return;
+        }
+        try {
+            mongoTemplate.executeCommand(new Document("collMod", collection)
+                    .append("index", new Document("name", info.getName())
+                            .append("expireAfterSeconds", wanted.longValue())));
+            logger.info("Updated TTL of {}.{} to {}s", collection, info.getName(), wanted);
+        } catch (Exception e) {
+            logger.error("Could not update TTL of {}.{}: {}", collection, info.getName(), e.getMessage());
+        }
+    }
+
+    private static String nameOf(IndexDefinition definition) {
+        String name = definition.getIndexOptions().getString("name");
+        if (name != null) {
+            return name;
+        }
+        StringJoiner generated = new StringJoiner("_");
+        definition.getIndexKeys().forEach((key, direction) -> generated.add(key).add(String.valueOf(direction)));
+        return generated.toString();
+    }
+
+    private static IndexDefinition inBackground(IndexDefinition definition) {
+        Document keys = definition.getIndexKeys();
+        Document options = new Document(definition.getIndexOptions()).append("background", true);
+        return new IndexDefinition() {
+            @Override
+            public Document getIndexKeys() { return keys; }
+
+            @Override
+            public Document getIndexOptions() { return options; }
+        };
+    }
+
+    /**
+     * Current index state per collection, including the indexes Mongo reports
+     * right now in addition to what the last bootstrap run found.
+     */
+    public List<Map<String, Object>> describe() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (CollectionIndexState state : new TreeMap<>(states).values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("collection", state.collection);
+            entry.put("declared", state.declared);
+            entry.put("present", state.present);
+            entry.put("created", state.created);
+            entry.put("missing", state.missing);
+            entry.put("superseded", state.superseded);
+            entry.put("dropped", state.dropped);
+            entry.put("error", state.error);
+            entry.put("checkedAt", state.checkedAt);
+            try {
+                List<Map<String, Object>> live = new ArrayList<>();
+                for (IndexInfo info : mongoTemplate.indexOps(state.collection).getIndexInfo()) {
+                    Map<String, Object> index = new LinkedHashMap<>();
+                    index.put("name", info.getName());
+                    index.put("fields", info.getIndexFields().stream()
+                            .map(field -> field.getKey() + ":" + (field.getDirection() == null ? "special" : field.getDirection()))
+                            .toList());
+                    index.put("unique", info.isUnique());
+                    live.add(index);
+                }
+                entry.put("indexes", live);
+            } catch (Exception e) {
+                entry.put("indexes", List.of());
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    private static class CollectionIndexState {
+        private final String collection;
+        private final List<String> declared = new CopyOnWriteArrayList<>();
+        private final List<String> present = new CopyOnWriteArrayList<>();
+        private final List<String> created = new CopyOnWriteArrayList<>();
+        private final List<String> missing = new CopyOnWriteArrayList<>();
+        private final List<String> superseded = new CopyOnWriteArrayList<>();
+        private final List<String> dropped = new CopyOnWriteArrayList<>();
+        private volatile String error;
+        private volatile Date checkedAt;
+
+        CollectionIndexState(String collection) {
+            this.collection = collection;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.model.NetworkRequest;
+import com.spectramonitor.model.PerformanceMetric;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind persistence for high-volume telemetry. Callers hand records
+ * over and return immediately; a background writer bulk-inserts them.
+ *
+ * <p>{@code spectra.ingest.mode} picks the writer: {@code BLOCKING} drains
+ * each queue on its own thread through {@link MongoTemplate},
+ * {@code REACTIVE} streams it through {@link ReactiveMongoTemplate} with
+ * demand-driven batching. Metrics and network requests share the log
+ * writer's flush interval and overflow policy. A failed blocking insert is
+ * retried; records carry their ids from {@link #submitLog} onwards, so
+ * duplicate-key errors on a retry only mean part of the batch was stored
+ * the first time.
+ */
+@Service
+public class IngestPipeline {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    public enum Mode {
+        BLOCKING,
+        REACTIVE
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectProvider<ReactiveMongoTemplate> reactiveMongoTemplate;
+    private final Mode mode;
+    private final long flushIntervalMs;
+    private final BatchingWriter.OverflowPolicy overflowPolicy;
+    private final int reactiveConcurrency;
+    private final int flushRetries;
+    private final long retryBackoffMs;
+    private final boolean virtualThreads;
+
+    private final IngestWriter<LogEntry> logWriter;
+    private final IngestWriter<PerformanceMetric> metricWriter;
+    private final IngestWriter<NetworkRequest> networkWriter;
+
+    public IngestPipeline(MongoTemplate mongoTemplate, ObjectProvider<ReactiveMongoTemplate> reactiveMongoTemplate,
+                          LogSearchService logSearchService, MetricRollupService metricRollupService,
+                          @Value("${spectra.ingest.mode:BLOCKING}") Mode mode,
+                          @Value("${spectra.ingest.logs.queue-capacity:50000}") int capacity,
+                          @Value("${spectra.ingest.logs.batch-size:500}") int batchSize,
+                          @Value("${spectra.ingest.logs.flush-interval-ms:200}") long flushIntervalMs,
+                          @Value("${spectra.ingest.logs.overflow-policy:DROP}") BatchingWriter.OverflowPolicy overflowPolicy,
+                          @Value("${spectra.ingest.metrics.queue-capacity:20000}") int metricCapacity,
+                          @Value("${spectra.ingest.metrics.batch-size:500}") int metricBatchSize,
+                          @Value("${spectra.ingest.network.queue-capacity:20000}") int networkCapacity,
+                          @Value("${spectra.ingest.network.batch-size:500}") int networkBatchSize,
+                          @Value("${spectra.ingest.reactive.concurrency:4}") int reactiveConcurrency,
+                          @Value("${spectra.ingest.flush-retries:2}") int flushRetries,
+                          @Value("${spectra.ingest.retry-backoff-ms:100}") long retryBackoffMs,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.mode = mode;
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflowPolicy = overflowPolicy;
+        this.reactiveConcurrency = reactiveConcurrency;
+        this.flushRetries = flushRetries;
+        this.retryBackoffMs = retryBackoffMs;
+        this.virtualThreads = virtualThreads;
+        this.logWriter = writer("logs", LogEntry.class, capacity, batchSize, logSearchService::index);
+        this.metricWriter = writer("metrics", PerformanceMetric.class, metricCapacity, metricBatchSize,
+                metricRollupService::onStored);
+        this.networkWriter = writer("network", NetworkRequest.class, networkCapacity, networkBatchSize, null);
+    }
+
+    /**
+     * @param afterInsert blocking follow-up run once a batch is stored; in
+     *                    reactive mode it is moved off the driver's threads
+     */
+    private <T> IngestWriter<T> writer(String name, Class<T> type, int capacity, int batchSize,
+                                       Consumer<List<T>> afterInsert) {
+        if (mode == Mode.REACTIVE) {
+            ReactiveMongoTemplate template = reactiveMongoTemplate.getObject();
+            return new ReactiveBatchWriter<>(name, capacity, batchSize, Duration.ofMillis(flushIntervalMs),
+                    overflowPolicy, reactiveConcurrency, batch -> {
+                        Mono<Void> insert = template.insertAll(batch).then();
+                        return afterInsert == null ? insert : insert.then(Mono.fromRunnable(() -> afterInsert.accept(batch))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .then());
+                    });
+        }
+        return new BatchingWriter<>(name, capacity, batchSize, flushIntervalMs, overflowPolicy, batch -> {
+            insertIgnoringDuplicates(batch, type);
+            if (afterInsert != null) {
+                afterInsert.accept(batch);
+            }
+        }, virtualThreads, flushRetries, retryBackoffMs);
+    }
+
+    private void insertIgnoringDuplicates(List<?> batch, Class<?> type) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type).insert(batch).execute();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                throw e;
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        writers().forEach(IngestWriter::start);
+    }
+
+    @PreDestroy
+    public void stop() {
+        writers().forEach(IngestWriter::stop);
+    }
+
+    /**
+     * Queues a log entry for persistence. The id is assigned up front so the
+     * entry can be broadcast before it reaches Mongo.
+     *
+     * @return false if the entry was dropped by the overflow policy
+     */
+    public boolean submitLog(LogEntry log) {
+        if (log.getMongoId() == null) {
+            log.setMongoId(new ObjectId().toHexString());
+        }
+        return logWriter.submit(log);
+    }
+
+    public boolean submitMetric(PerformanceMetric metric) {
+        if (metric.getMongoId() == null) {
+            metric.setMongoId(new ObjectId().toHexString());
+        }
+        return metricWriter.submit(metric);
+    }
+
+    public boolean submitNetworkRequest(NetworkRequest request) {
+        if (request.getMongoId() == null) {
+            request.setMongoId(new ObjectId().toHexString());
+        }
+        return networkWriter.submit(request);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public List<IngestWriter<?>> writers() {
+        return List.of(logWriter, metricWriter, networkWriter);
+    }
+}
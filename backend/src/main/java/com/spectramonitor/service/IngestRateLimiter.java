@@ -0,0 +1,244 @@
+package com.spectramonitor.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket limits on ingest, per app and per device. Buckets are kept
+ * in GCRA form: one long per bucket holding the time at which it will be
+ * full again, updated with a CAS, so checks are lock-free. Device buckets
+ * live in a fixed array indexed by a hash of the device id, which keeps
+ * memory constant however many devices there are; devices that collide on
+ * a slot share a budget. App ids can come from clients, so at most
+ * {@code maxApps} app buckets are kept: buckets that have refilled are swept
+ * out (a full bucket is no different from a new one), and an app that still
+ * finds no room shares one overflow bucket until it does. Apps with an
+ * override always get their own bucket.
+ */
+@Service
+public class IngestRateLimiter {
+
+    public enum Scope { APP, DEVICE }
+
+    /** Outcome of a check; {@code retryAfterMs} is 0 when allowed. */
+    public record Decision(boolean allowed, Scope scope, long retryAfterMs) {
+        static final Decision ALLOWED = new Decision(true, null, 0);
+    }
+
+    static final String OTHER_APPS = "(other)";
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final boolean enabled;
+    private final Limit defaultAppLimit;
+    private final Limit defaultDeviceLimit;
+    private final Map<String, Limit[]> overrides = new HashMap<>();
+    private final AtomicLongArray deviceSlots;
+    private final int slotMask;
+    private final int maxApps;
+    private final Map<String, AtomicLong> appBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflowBucket = new AtomicLong();
+    private final AtomicLong lastSweep;
+    private final long sweepIntervalNanos;
+    private final Map<String, ShedCounters> shed = new ConcurrentHashMap<>();
+    private final long epoch = System.nanoTime();
+
+    public IngestRateLimiter(@Value("${spectra.ratelimit.enabled:true}") boolean enabled,
+                             @Value("${spectra.ratelimit.app.per-second:2000}") double appPerSecond,
+                             @Value("${spectra.ratelimit.device.per-second:50}") double devicePerSecond,
+                             @Value("${spectra.ratelimit.burst-seconds:10}") double burstSeconds,
+                             @Value("${spectra.ratelimit.device-slots:1048576}") int deviceSlots,
+                             @Value("${spectra.ratelimit.max-apps:10000}") int maxApps,
+                             @Value("${spectra.ratelimit.app-overrides:}") List<String> appOverrides) {
+        this.enabled = enabled;
+        this.defaultAppLimit = new Limit(appPerSecond, burstSeconds);
+        this.maxApps = Math.max(1, maxApps);
+        this.sweepIntervalNanos = Math.min(SWEEP_INTERVAL_NANOS, defaultAppLimit.burstNanos);
+        this.lastSweep = new AtomicLong(-sweepIntervalNanos);
+        this.defaultDeviceLimit = new Limit(devicePerSecond, burstSeconds);
+        int slots = Integer.highestOneBit(Math.max(1024, deviceSlots));
+        this.deviceSlots = new AtomicLongArray(slots);
+        this.slotMask = slots - 1;
+        for (String override : appOverrides) {
+            // appId:appPerSecond[:devicePerSecond]
+            String[] parts = override.trim().split(":");
+            if (parts.length < 2) {
+                continue;
+            }
+            Limit app = new Limit(Double.parseDouble(parts[1]), burstSeconds);
+            Limit device = parts.length > 2 ? new Limit(Double.parseDouble(parts[2]), burstSeconds) : defaultDeviceLimit;
+            overrides.put(parts[0], new Limit[]{app, device});
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Charges {@code cost} events to the device and its app. The device is
+     * checked first so one noisy device is shed before it eats into the
+     * app's budget; if the app then refuses, the device's charge is handed
+     * back. {@code appId} may be empty for unregistered devices.
+     */
+    public Decision acquire(String appId, String deviceId, int cost) {
+        if (!enabled) {
+            return Decision.ALLOWED;
+        }
+        Limit[] limits = appId == null ? null : overrides.get(appId);
+        Limit appLimit = limits == null ? defaultAppLimit : limits[0];
+        Limit deviceLimit = limits == null ? defaultDeviceLimit : limits[1];
+
+        long now = System.nanoTime() - epoch;
+        int slot = deviceId == null ? -1 : slotOf(deviceId);
+        if (slot >= 0) {
+            long wait = deviceLimit.acquire(deviceSlots, slot, now, cost);
+            if (wait > 0) {
+                return reject(appId, Scope.DEVICE, wait);
+            }
+        }
+        if (appId != null && !appId.isEmpty()) {
+            AtomicLong bucket = appBucket(appId, limits != null, now);
+            long wait = appLimit.acquire(bucket, now, cost);
+            if (wait > 0) {
+                if (slot >= 0) {
+                    deviceLimit.refund(deviceSlots, slot, cost);
+                }
+                return reject(appId, Scope.APP, wait);
+            }
+        }
+        return Decision.ALLOWED;
+    }
+
+    private AtomicLong appBucket(String appId, boolean overridden, long now) {
+        AtomicLong bucket = appBuckets.get(appId);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (!overridden && appBuckets.size() >= maxApps && !makeRoom(now)) {
+            return overflowBucket;
+        }
+        return appBuckets.computeIfAbsent(appId, k -> new AtomicLong());
+    }
+
+    /**
+     * Drops the buckets that have refilled, at most once per sweep interval
+     * so a stream of new ids does not rescan the map on every request.
+     */
+    private boolean makeRoom(long now) {
+        long last = lastSweep.get();
+        if (now - last >= sweepIntervalNanos && lastSweep.compareAndSet(last, now)) {
+            appBuckets.values().removeIf(bucket -> bucket.get() <= now);
+        }
+        return appBuckets.size() < maxApps;
+    }
+
+    private Decision reject(String appId, Scope scope, long waitNanos) {
+        String key = appId == null ? "" : appId;
+        ShedCounters counters = shed.get(key);
+        if (counters == null) {
+            counters = shed.computeIfAbsent(shed.size() < maxApps ? key : OTHER_APPS, k -> new ShedCounters());
+        }
+        (scope == Scope.APP ? counters.app : counters.device).increment();
+        return new Decision(false, scope, Math.max(1, (waitNanos + 999_999) / 1_000_000));
+    }
+
+    int slotOf(String deviceId) {
+        int h = deviceId.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h & slotMask;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("appPerSecond", defaultAppLimit.perSecond);
+        stats.put("devicePerSecond", defaultDeviceLimit.perSecond);
+        stats.put("deviceSlots", deviceSlots.length());
+        stats.put("overrides", overrides.keySet());
+        stats.put("maxApps", maxApps);
+        stats.put("trackedApps", appBuckets.size());
+        Map<String, Map<String, Long>> byApp = new LinkedHashMap<>();
+        shed.forEach((appId, counters) -> byApp.put(appId.isEmpty() ? "(unregistered)" : appId,
+                Map.of("app", counters.app.sum(), "device", counters.device.sum())));
+        stats.put("shed", byApp);
+        return stats;
+    }
+
+    /**
+     * Rate and burst for one kind of bucket. A bucket's value is its
+     * theoretical arrival time: each event pushes it {@code interval} into
+     * the future, and a request is refused if that would put it more than
+     * {@code burst} ahead of now.
+     */
+    private static final class Limit {
+        private final double perSecond;
+        private final long intervalNanos;
+        private final long burstNanos;
+
+        Limit(double perSecond, double burstSeconds) {
+            this.perSecond = perSecond;
+            this.intervalNanos = Math.max(1, (long) (1_000_000_000L / perSecond));
+            this.burstNanos = Math.max(intervalNanos, (long) (burstSeconds * 1_000_000_000L));
+        }
+
+        long acquire(AtomicLongArray slots, int slot, long now, int cost) {
+            long increment = increment(cost);
+            while (true) {
+                long tat = slots.get(slot);
+                long next = Math.max(tat, now) + increment;
+                long ahead = next - now;
+                if (ahead > burstNanos) {
+                    return ahead - burstNanos;
+                }
+                if (slots.compareAndSet(slot, tat, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        long acquire(AtomicLong bucket, long now, int cost) {
+            long increment = increment(cost);
+            while (true) {
+                long tat = bucket.get();
+                long next = Math.max(tat, now) + increment;
+                long ahead = next - now;
+                if (ahead > burstNanos) {
+                    return ahead - burstNanos;
+                }
+                if (bucket.compareAndSet(tat, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Takes back a charge made by {@link #acquire(AtomicLongArray, int, long, int)}.
+         * Other requests may have charged the slot since, so the increment is
+         * subtracted rather than the previous value restored.
+         */
+        void refund(AtomicLongArray slots, int slot, int cost) {
+            slots.addAndGet(slot, -increment(cost));
+        }
+
+        // A request larger than the whole burst could never pass; it takes the full burst instead.
+        private long increment(int cost) {
+            return cost >= burstNanos / intervalNanos ? burstNanos : Math.max(1, cost) * intervalNanos;
+        }
+    }
+
+    private static final class ShedCounters {
+        private final LongAdder app = new LongAdder();
+        private final LongAdder device = new LongAdder();
+    }
+}
@@ -0,0 +1,38 @@
+package com.spectramonitor.service;
+
+/**
+ * Write-behind queue for one telemetry collection. {@link BatchingWriter}
+ * drains it on a thread with blocking inserts, {@link ReactiveBatchWriter}
+ * through the reactive driver; callers and metrics see the same counters.
+ */
+public interface IngestWriter<T> {
+
+    void start();
+
+    /** Flushes what is still queued, then stops. */
+    void stop();
+
+    /**
+     * Queues an item for persistence.
+     *
+     * @return false if the item was discarded because the queue was full
+     */
+    boolean submit(T item);
+
+    String getName();
+
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    long getSubmitted();
+
+    long getWritten();
+
+    long getDropped();
+
+    /** Items accepted by {@link #submit} and later discarded to make room. */
+    default long getEvicted() { return 0; }
+
+    long getFailed();
+}
@@ -0,0 +1,105 @@
+package com.spectramonitor.service;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination over per-device telemetry, newest first. The cursor is
+ * the (time, _id) pair of the last item returned, so each page is a single
+ * index seek on {deviceId, time, _id} no matter how deep the client pages.
+ * Time-range reads page the same way, oldest first.
+ */
+@Service
+public class KeysetPager {
+
+    public record Page<T>(List<T> items, String nextCursor) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    public KeysetPager(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Loads the page after {@code cursor} (or the first page when null).
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public <T> Page<T> page(Class<T> type, String deviceId, String timeField, String cursor, int limit,
+                            Function<T, Date> timeOf, Function<T, String> idOf) {
+        Criteria criteria = Criteria.where("deviceId").is(deviceId);
+        if (cursor != null) {
+            Position after = decode(cursor);
+            criteria = criteria.orOperator(
+                    Criteria.where(timeField).lt(after.time()),
+                    Criteria.where(timeField).is(after.time()).and("_id").lt(after.id()));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Order.desc(timeField), Sort.Order.desc("_id")))
+                .limit(limit);
+        List<T> items = mongoTemplate.find(query, type);
+        String next = items.size() < limit ? null : cursorOf(items.get(items.size() - 1), timeOf, idOf);
+        return new Page<>(items, next);
+    }
+
+    /**
+     * Loads the page after {@code cursor} of the items in {@code scope} with
+     * {@code from <= time <= to}, oldest first. When {@code uniqueTime} is set
+     * the time alone orders the items (one rollup bucket per start), so the
+     * sort stays on an index that does not end in {@code _id}.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public <T> Page<T> range(Class<T> type, Criteria scope, String timeField, Date from, Date to, boolean uniqueTime,
+                             String cursor, int limit, Function<T, Date> timeOf, Function<T, String> idOf) {
+        Criteria criteria = scope.and(timeField).gte(from).lte(to);
+        if (cursor != null) {
+            Position after = decode(cursor);
+            criteria = uniqueTime
+                    ? new Criteria().andOperator(criteria, Criteria.where(timeField).gt(after.time()))
+                    : criteria.orOperator(
+                            Criteria.where(timeField).gt(after.time()),
+                            Criteria.where(timeField).is(after.time()).and("_id").gt(after.id()));
+        }
+        Sort sort = uniqueTime ? Sort.by(Sort.Order.asc(timeField))
+                : Sort.by(Sort.Order.asc(timeField), Sort.Order.asc("_id"));
+        List<T> items = mongoTemplate.find(new Query(criteria).with(sort).limit(limit), type);
+        String next = items.size() < limit ? null : cursorOf(items.get(items.size() - 1), timeOf, idOf);
+        return new Page<>(items, next);
+    }
+
+    public static <T> String cursorOf(T item, Function<T, Date> timeOf, Function<T, String> idOf) {
+        Date time = timeOf.apply(item);
+        String id = idOf.apply(item);
+        if (time == null || id == null) {
+            return null;
+        }
+        String raw = time.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Position(Date time, ObjectId id) {
+    }
+
+    private static Position decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new Position(new Date(Long.parseLong(raw.substring(0, separator))),
+                    new ObjectId(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
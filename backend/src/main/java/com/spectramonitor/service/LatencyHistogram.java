@@ -0,0 +1,84 @@
+package com.spectramonitor.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Log-linear histogram with fixed bucket boundaries, in the style of
+ * HdrHistogram: values below 16 get exact buckets, larger values 16
+ * sub-buckets per power of two (about 6% bucket width). Because the
+ * boundaries never change, histograms are merged by adding counts per
+ * bucket, which Mongo can do atomically with {@code $inc}.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final Map<Integer, Long> counts = new TreeMap<>();
+    private long total;
+
+    public static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    public static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << shift;
+    }
+
+    public static long upperBound(int bucket) {
+        return lowerBound(bucket + 1) - 1;
+    }
+
+    public void record(long value) {
+        add(bucketOf(value), 1);
+    }
+
+    public void add(int bucket, long count) {
+        counts.merge(bucket, count, Long::sum);
+        total += count;
+    }
+
+    public void merge(Map<String, ? extends Number> stored) {
+        if (stored == null) {
+            return;
+        }
+        stored.forEach((bucket, count) -> add(Integer.parseInt(bucket), count.longValue()));
+    }
+
+    public Map<Integer, Long> counts() {
+        return counts;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    /** Value at quantile {@code q} (0..1), reported as the bucket midpoint. */
+    public long quantile(double q) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> bucket : counts.entrySet()) {
+            seen += bucket.getValue();
+            if (seen >= rank) {
+                long low = lowerBound(bucket.getKey());
+                return low + (upperBound(bucket.getKey()) - low) / 2;
+            }
+        }
+        return upperBound(((TreeMap<Integer, Long>) counts).lastKey());
+    }
+}
@@ -0,0 +1,94 @@
+package com.spectramonitor.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.spectramonitor.model.Device;
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.repository.DeviceRepository;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams logs as NDJSON straight from a Mongo cursor to the response, so
+ * memory use does not depend on how many lines are exported. Every cursor
+ * reads one device, so the sort is served by {deviceId, createdAt, _id}.
+ */
+@Service
+public class LogExportService {
+
+    private static final int CURSOR_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final DeviceRepository deviceRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter lineWriter;
+
+    public LogExportService(MongoTemplate mongoTemplate, DeviceRepository deviceRepository, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.deviceRepository = deviceRepository;
+        this.objectMapper = objectMapper;
+        this.lineWriter = objectMapper.writerFor(LogEntry.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void exportDevice(String deviceId, Date from, Date to, boolean gzip, OutputStream out) throws IOException {
+        export(List.of(deviceId), from, to, gzip, out);
+    }
+
+    /**
+     * Exports the app's devices one after the other, each oldest first. A
+     * single {@code $in} query sorted by time would need an in-memory sort
+     * across all of them.
+     */
+    public void exportApp(String appId, Date from, Date to, boolean gzip, OutputStream out) throws IOException {
+        List<String> deviceIds = deviceRepository.findByAppId(appId).stream().map(Device::getDeviceId).sorted().toList();
+        export(deviceIds, from, to, gzip, out);
+    }
+
+    private void export(List<String> deviceIds, Date from, Date to, boolean gzip, OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(target)) {
+            generator.setRootValueSeparator(null);
+            for (String deviceId : deviceIds) {
+                writeDevice(generator, deviceId, from, to);
+            }
+        }
+    }
+
+    private void writeDevice(JsonGenerator generator, String deviceId, Date from, Date to) throws IOException {
+        Criteria criteria = Criteria.where("deviceId").is(deviceId);
+        if (from != null || to != null) {
+            Criteria range = Criteria.where("createdAt");
+            if (from != null) {
+                range = range.gte(from);
+            }
+            if (to != null) {
+                range = range.lt(to);
+            }
+            criteria = new Criteria().andOperator(criteria, range);
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Order.asc("createdAt"), Sort.Order.asc("_id")))
+                .cursorBatchSize(CURSOR_BATCH_SIZE);
+
+        try (Stream<LogEntry> logs = mongoTemplate.stream(query, LogEntry.class)) {
+            Iterator<LogEntry> it = logs.iterator();
+            while (it.hasNext()) {
+                lineWriter.writeValue(generator, it.next());
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.spectramonitor.service;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.spectramonitor.model.LogEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full-text search over log messages and tags. Logs are copied at ingest
+ * into one segment collection per UTC day ({@code log_segments_yyyyMMdd}),
+ * each with a text index led by {@code appId}. A search only queries the
+ * segments that overlap its window, newest first, and retention drops
+ * whole segments instead of deleting documents.
+ *
+ * <p>Copies go through a write-behind queue of their own, so indexing does
+ * not hold up the ingest writer that stored the logs.
+ */
+@Service
+public class LogSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogSearchService.class);
+
+    static final String SEGMENT_PREFIX = "log_segments_";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String TEXT_INDEX = "appId_text_createdAt";
+    /** Earlier text index without createdAt; a collection can only hold one text index. */
+    private static final String LEGACY_TEXT_INDEX = "appId_text";
+
+    private final MongoTemplate mongoTemplate;
+    private final DeviceDirectory deviceDirectory;
+    private final boolean enabled;
+    private final int retentionDays;
+    private final BatchingWriter<LogEntry> writer;
+    private final Set<String> indexedSegments = ConcurrentHashMap.newKeySet();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public LogSearchService(MongoTemplate mongoTemplate, DeviceDirectory deviceDirectory,
+                            @Value("${spectra.search.enabled:true}") boolean enabled,
+                            @Value("${spectra.search.retention-days:14}") int retentionDays,
+                            @Value("${spectra.search.queue-capacity:50000}") int capacity,
+                            @Value("${spectra.search.batch-size:500}") int batchSize,
+                            @Value("${spectra.search.flush-interval-ms:500}") long flushIntervalMs,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.deviceDirectory = deviceDirectory;
+        this.enabled = enabled;
+        this.retentionDays = Math.max(1, retentionDays);
+        this.writer = new BatchingWriter<>("search", capacity, batchSize, flushIntervalMs,
+                BatchingWriter.OverflowPolicy.DROP, this::write, virtualThreads);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    /** Runs after the ingest writers have flushed, since they depend on this service. */
+    @PreDestroy
+    public void stop() {
+        writer.stop();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues stored logs for their day segments. Called after the logs are
+     * written, so a full queue or a failure here leaves them unsearchable
+     * but not lost.
+     */
+    public void index(List<LogEntry> logs) {
+        if (!enabled) {
+            return;
+        }
+        logs.forEach(writer::submit);
+    }
+
+    private void write(List<LogEntry> logs) {
+        Map<String, List<Document>> bySegment = new HashMap<>();
+        try {
+            for (LogEntry log : logs) {
+                Document document = new Document();
+                mongoTemplate.getConverter().write(log, document);
+                document.remove("_class");
+                document.put("appId", deviceDirectory.appIdOf(log.getDeviceId()));
+                Date createdAt = log.getCreatedAt() != null ? log.getCreatedAt() : new Date();
+                bySegment.computeIfAbsent(segmentOf(createdAt.toInstant()), k -> new ArrayList<>()).add(document);
+            }
+        } catch (Exception e) {
+            failed.addAndGet(logs.size());
+            logger.error("Preparing {} logs for search failed: {}", logs.size(), e.getMessage());
+            return;
+        }
+        bySegment.forEach((segment, documents) -> {
+            try {
+                ensureIndexed(segment);
+                mongoTemplate.insert(documents, segment);
+                indexed.addAndGet(documents.size());
+            } catch (Exception e) {
+                failed.addAndGet(documents.size());
+                logger.error("Indexing {} logs into {} failed: {}", documents.size(), segment, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Logs of an app whose message or tag match {@code query}, newest first.
+     * {@code query} uses MongoDB {@code $text} syntax: words are OR-ed,
+     * {@code "quoted phrases"} must all match and {@code -word} excludes.
+     */
+    public List<LogEntry> search(String appId, String query, String level, Date from, Date to, int limit) {
+        Date end = to != null ? to : new Date();
+        Date oldest = Date.from(LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays - 1L).atStartOfDay(ZoneOffset.UTC).toInstant());
+        Date start = from != null ? from : new Date(end.getTime() - 86_400_000L);
+        if (start.before(oldest)) {
+            start = oldest;
+        }
+        List<LogEntry> results = new ArrayList<>();
+        if (!start.before(end)) {
+            return results;
+        }
+        Set<String> existing = mongoTemplate.getCollectionNames();
+        LocalDate first = day(start.toInstant());
+        for (LocalDate day = day(end.toInstant()); !day.isBefore(first) && results.size() < limit; day = day.minusDays(1)) {
+            String segment = SEGMENT_PREFIX + day.format(DAY);
+            if (!existing.contains(segment)) {
+                continue;
+            }
+            // $text matches are always sorted in memory; with the limit it stays a top-k sort.
+            Query segmentQuery = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(query))
+                    .addCriteria(Criteria.where("appId").is(appId).and("createdAt").gte(start).lt(end))
+                    .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                    .limit(limit - results.size());
+            if (level != null && !level.isBlank()) {
+                segmentQuery.addCriteria(Criteria.where("level").is(level));
+            }
+            results.addAll(mongoTemplate.find(segmentQuery, LogEntry.class, segment));
+        }
+        return results;
+    }
+
+    /** Drops day segments that have aged out of {@code spectra.search.retention-days}. */
+    @Scheduled(cron = "${spectra.search.retention-cron:0 5 0 * * *}", zone = "UTC")
+    public void dropExpiredSegments() {
+        LocalDate oldestKept = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays - 1L);
+        for (String name : mongoTemplate.getCollectionNames()) {
+            if (!name.startsWith(SEGMENT_PREFIX)) {
+                continue;
+            }
+            try {
+                LocalDate day = LocalDate.parse(name.substring(SEGMENT_PREFIX.length()), DAY);
+                if (day.isBefore(oldestKept)) {
+                    mongoTemplate.dropCollection(name);
+                    indexedSegments.remove(name);
+                    logger.info("Dropped log search segment {}", name);
+                }
+            } catch (DateTimeParseException e) {
+                logger.warn("Ignoring unexpected collection {}", name);
+            } catch (Exception e) {
+                logger.error("Dropping log search segment {} failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void ensureIndexed(String segment) {
+        if (indexedSegments.contains(segment)) {
+            return;
+        }
+        MongoCollection<Document> collection = mongoTemplate.getCollection(segment);
+        for (Document index : collection.listIndexes()) {
+            if (LEGACY_TEXT_INDEX.equals(index.getString("name"))) {
+                collection.dropIndex(LEGACY_TEXT_INDEX);
+            }
+        }
+        // Log text is mostly identifiers and codes, so no stemming or stop words ("none").
+        // createdAt as a suffix key filters the search window inside the index scan.
+        collection.createIndex(
+                new Document("appId", 1).append("message", "text").append("tag", "text").append("createdAt", -1),
+                new IndexOptions().name(TEXT_INDEX).defaultLanguage("none"));
+        indexedSegments.add(segment);
+    }
+
+    private static String segmentOf(Instant instant) {
+        return SEGMENT_PREFIX + day(instant).format(DAY);
+    }
+
+    private static LocalDate day(Instant instant) {
+        return instant.atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("retentionDays", retentionDays);
+        stats.put("indexed", indexed.get());
+        stats.put("failed", failed.get());
+        stats.put("queueDepth", writer.getQueueDepth());
+        stats.put("dropped", writer.getDropped());
+        stats.put("segmentsIndexedHere", indexedSegments.size());
+        return stats;
+    }
+}
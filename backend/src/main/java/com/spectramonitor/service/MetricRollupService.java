@@ -0,0 +1,358 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.MetricRollup;
+import com.spectramonitor.model.PerformanceMetric;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Retention and downsampling for {@code performance_metrics}. Raw samples
+ * expire through a TTL index; closed minute and hour buckets are rolled up
+ * into {@code performance_metric_rollups} with their own expiry, and reads
+ * over long ranges are answered from the coarsest tier that covers them.
+ *
+ * <p>Buckets are rolled up by sample time behind a watermark. A sample
+ * stored later for a bucket the watermark has passed (a late device or a
+ * batch backfill) marks that device's bucket dirty, and the next run
+ * rolls it up again from the raw samples, which are still there as long
+ * as the sample is younger than the raw retention. Dirty buckets are kept
+ * in memory by the instance that stored the sample, at most
+ * {@code spectra.metrics.rollup.max-late-buckets} of them.
+ */
+@Service
+public class MetricRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricRollupService.class);
+
+    public enum Resolution {
+        RAW("raw", 0),
+        MINUTE("1m", 60_000L),
+        HOUR("1h", 3_600_000L);
+
+        private final String label;
+        private final long bucketMs;
+
+        Resolution(String label, long bucketMs) {
+            this.label = label;
+            this.bucketMs = bucketMs;
+        }
+
+        public String getLabel() { return label; }
+
+        public static Resolution fromLabel(String label) {
+            for (Resolution resolution : values()) {
+                if (resolution.label.equalsIgnoreCase(label)) {
+                    return resolution;
+                }
+            }
+            throw new IllegalArgumentException("Unknown resolution: " + label);
+        }
+    }
+
+    private static final String STATE_COLLECTION = "performance_metric_rollup_state";
+    private static final int BULK_SIZE = 500;
+    private static final List<Resolution> ROLLED_UP = List.of(Resolution.MINUTE, Resolution.HOUR);
+
+    /** One device's bucket that received samples after it was rolled up. */
+    private record LateBucket(String deviceId, long start) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final KeysetPager keysetPager;
+    private final IndexManager indexManager;
+    private final Duration rawRetention;
+    private final Duration minuteRetention;
+    private final Duration hourRetention;
+    private final long latenessMs;
+    private final int maxBucketsPerRun;
+    private final Duration rawMaxSpan;
+    private final Duration minuteMaxSpan;
+    private final int maxLateBuckets;
+    private final Map<Resolution, Long> watermarks = new ConcurrentHashMap<>();
+    private final Map<Resolution, Set<LateBucket>> lateBuckets = new EnumMap<>(Resolution.class);
+    private final AtomicLong lateSamplesSkipped = new AtomicLong();
+
+    public MetricRollupService(MongoTemplate mongoTemplate,
+                               KeysetPager keysetPager,
+                               IndexManager indexManager,
+                               @Value("${spectra.metrics.retention.raw-days:7}") long rawDays,
+                               @Value("${spectra.metrics.retention.minute-days:30}") long minuteDays,
+                               @Value("${spectra.metrics.retention.hour-days:365}") long hourDays,
+                               @Value("${spectra.metrics.rollup.lateness-ms:30000}") long latenessMs,
+                               @Value("${spectra.metrics.rollup.max-buckets-per-run:120}") int maxBucketsPerRun,
+                               @Value("${spectra.metrics.query.raw-max-span-minutes:360}") long rawMaxSpanMinutes,
+                               @Value("${spectra.metrics.query.minute-max-span-hours:168}") long minuteMaxSpanHours,
+                               @Value("${spectra.metrics.rollup.max-late-buckets:10000}") int maxLateBuckets) {
+        this.mongoTemplate = mongoTemplate;
+        this.keysetPager = keysetPager;
+        this.indexManager = indexManager;
+        this.rawRetention = Duration.ofDays(rawDays);
+        this.minuteRetention = Duration.ofDays(minuteDays);
+        this.hourRetention = Duration.ofDays(hourDays);
+        this.latenessMs = latenessMs;
+        this.maxBucketsPerRun = maxBucketsPerRun;
+        this.rawMaxSpan = Duration.ofMinutes(rawMaxSpanMinutes);
+        this.minuteMaxSpan = Duration.ofHours(minuteMaxSpanHours);
+        this.maxLateBuckets = maxLateBuckets;
+        for (Resolution resolution : ROLLED_UP) {
+            lateBuckets.put(resolution, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @PostConstruct
+    public void registerIndexes() {
+        indexManager.require(PerformanceMetric.class,
+                new Index().on("timestamp", Sort.Direction.ASC).named("timestamp_ttl").expire(rawRetention));
+    }
+
+    @Scheduled(fixedDelayString = "${spectra.metrics.rollup.interval-ms:60000}",
+               initialDelayString = "${spectra.metrics.rollup.interval-ms:60000}")
+    public void rollupClosedBuckets() {
+        try {
+            rollup(Resolution.MINUTE);
+            rollup(Resolution.HOUR);
+        } catch (Exception e) {
+            logger.error("Metric rollup failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Marks the buckets of samples stored behind the watermark for another
+     * rollup. Called for every sample once it has been stored.
+     */
+    public void onStored(List<PerformanceMetric> samples) {
+        long oldest = System.currentTimeMillis() - rawRetention.toMillis();
+        for (Resolution resolution : ROLLED_UP) {
+            Long watermark = watermarks.get(resolution);
+            if (watermark == null) {
+                continue;
+            }
+            Set<LateBucket> late = lateBuckets.get(resolution);
+            for (PerformanceMetric sample : samples) {
+                long time = sample.getTimestamp().getTime();
+                if (time >= watermark || time < oldest || sample.getDeviceId() == null) {
+                    continue;
+                }
+                LateBucket bucket = new LateBucket(sample.getDeviceId(), floor(time, resolution.bucketMs));
+                if (late.size() < maxLateBuckets || late.contains(bucket)) {
+                    late.add(bucket);
+                } else {
+                    lateSamplesSkipped.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rolls up every closed bucket after the stored watermark, capped at
+     * {@code maxBucketsPerRun} buckets so a long outage is caught up over
+     * several runs rather than in one huge scan, then up to as many
+     * device buckets that received late samples.
+     */
+    public void rollup(Resolution resolution) {
+        long bucketMs = resolution.bucketMs;
+        long closedUntil = floor(System.currentTimeMillis() - latenessMs, bucketMs);
+        Optional<Long> watermark = readWatermark(resolution);
+        watermark.ifPresent(value -> watermarks.put(resolution, value));
+        long start = watermark
+                .orElse(floor(closedUntil - Math.min(rawRetention.toMillis(), bucketMs * maxBucketsPerRun), bucketMs));
+        long end = Math.min(closedUntil, start + bucketMs * maxBucketsPerRun);
+        Date expireAt = new Date(System.currentTimeMillis() + retentionOf(resolution).toMillis());
+        rerollLate(resolution, expireAt);
+        if (end <= start) {
+            return;
+        }
+
+        Query query = new Query(Criteria.where("timestamp").gte(new Date(start)).lt(new Date(end)))
+                .with(Sort.by(Sort.Order.asc("deviceId"), Sort.Order.desc("timestamp")));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MetricRollup.class);
+        int pending = 0;
+        String currentDevice = null;
+        Map<Long, List<PerformanceMetric>> buckets = new TreeMap<>();
+
+        try (Stream<PerformanceMetric> stream = mongoTemplate.stream(query, PerformanceMetric.class)) {
+            Iterator<PerformanceMetric> samples = stream.iterator();
+            while (samples.hasNext()) {
+                PerformanceMetric sample = samples.next();
+                if (currentDevice != null && !Objects.equals(currentDevice, sample.getDeviceId())) {
+                    pending += queueRollups(bulk, currentDevice, resolution, buckets, expireAt);
+                    buckets.clear();
+                    if (pending >= BULK_SIZE) {
+                        bulk.execute();
+                        bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MetricRollup.class);
+                        pending = 0;
+                    }
+                }
+                currentDevice = sample.getDeviceId();
+                long bucket = floor(sample.getTimestamp().getTime(), bucketMs);
+                buckets.computeIfAbsent(bucket, k -> new ArrayList<>()).add(sample);
+            }
+        }
+        if (currentDevice != null) {
+            pending += queueRollups(bulk, currentDevice, resolution, buckets, expireAt);
+        }
+        if (pending > 0) {
+            bulk.execute();
+        }
+        writeWatermark(resolution, end);
+        watermarks.put(resolution, end);
+    }
+
+    /**
+     * Recomputes up to {@code maxBucketsPerRun} device buckets that received
+     * samples after they were rolled up. Buckets are put back if the write
+     * fails, so they are retried on the next run.
+     */
+    private void rerollLate(Resolution resolution, Date expireAt) {
+        long skipped = lateSamplesSkipped.getAndSet(0);
+        if (skipped > 0) {
+            logger.warn("{} late metric samples were not re-rolled: more than {} late buckets pending",
+                    skipped, maxLateBuckets);
+        }
+        Set<LateBucket> late = lateBuckets.get(resolution);
+        List<LateBucket> taken = new ArrayList<>();
+        for (Iterator<LateBucket> it = late.iterator(); it.hasNext() && taken.size() < maxBucketsPerRun; ) {
+            taken.add(it.next());
+            it.remove();
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MetricRollup.class);
+            int pending = 0;
+            for (LateBucket bucket : taken) {
+                Query samples = new Query(Criteria.where("deviceId").is(bucket.deviceId())
+                        .and("timestamp").gte(new Date(bucket.start())).lt(new Date(bucket.start() + resolution.bucketMs)));
+                List<PerformanceMetric> found = mongoTemplate.find(samples, PerformanceMetric.class);
+                if (!found.isEmpty()) {
+                    pending += queueRollups(bulk, bucket.deviceId(), resolution, Map.of(bucket.start(), found), expireAt);
+                }
+            }
+            if (pending > 0) {
+                bulk.execute();
+            }
+            logger.debug("Re-rolled {} late {} buckets", taken.size(), resolution.label);
+        } catch (RuntimeException e) {
+            late.addAll(taken);
+            throw e;
+        }
+    }
+
+    private int queueRollups(BulkOperations bulk, String deviceId, Resolution resolution,
+                             Map<Long, List<PerformanceMetric>> buckets, Date expireAt) {
+        for (Map.Entry<Long, List<PerformanceMetric>> bucket : buckets.entrySet()) {
+            List<PerformanceMetric> samples = bucket.getValue();
+            Query key = new Query(Criteria.where("deviceId").is(deviceId)
+                    .and("resolution").is(resolution.label)
+                    .and("bucketStart").is(new Date(bucket.getKey())));
+            Update update = new Update()
+                    .set("sampleCount", samples.size())
+                    .set("cpuUsage", stats(samples, PerformanceMetric::getCpuUsage))
+                    .set("memoryUsage", stats(samples, PerformanceMetric::getMemoryUsage))
+                    .set("batteryLevel", stats(samples, PerformanceMetric::getBatteryLevel))
+                    .set("temperature", stats(samples, PerformanceMetric::getTemperature))
+                    .set("fps", stats(samples, PerformanceMetric::getFps))
+                    .set("uploadSpeed", stats(samples, PerformanceMetric::getUploadSpeed))
+                    .set("downloadSpeed", stats(samples, PerformanceMetric::getDownloadSpeed))
+                    .set("expireAt", expireAt);
+            bulk.upsert(key, update);
+        }
+        return buckets.size();
+    }
+
+    private static MetricRollup.Stats stats(List<PerformanceMetric> samples, Function<PerformanceMetric, ? extends Number> field) {
+        double[] values = new double[samples.size()];
+        int n = 0;
+        double sum = 0;
+        for (PerformanceMetric sample : samples) {
+            Number value = field.apply(sample);
+            if (value != null) {
+                values[n++] = value.doubleValue();
+                sum += value.doubleValue();
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        Arrays.sort(values, 0, n);
+        MetricRollup.Stats stats = new MetricRollup.Stats();
+        stats.setMin(values[0]);
+        stats.setMax(values[n - 1]);
+        stats.setAvg(sum / n);
+        stats.setP95(values[(int) Math.ceil(0.95 * n) - 1]);
+        return stats;
+    }
+
+    /**
+     * Picks the cheapest resolution whose retention still covers {@code from}
+     * and whose point count stays reasonable for the requested span.
+     */
+    public Resolution chooseResolution(Date from, Date to) {
+        long now = System.currentTimeMillis();
+        long span = to.getTime() - from.getTime();
+        long age = now - from.getTime();
+        if (span <= rawMaxSpan.toMillis() && age <= rawRetention.toMillis()) {
+            return Resolution.RAW;
+        }
+        if (span <= minuteMaxSpan.toMillis() && age <= minuteRetention.toMillis()) {
+            return Resolution.MINUTE;
+        }
+        return Resolution.HOUR;
+    }
+
+    /**
+     * One page of the range, oldest first, at the given resolution. Every
+     * tier pages through {@link KeysetPager} so a window with more than
+     * {@code limit} points is read in full by following the cursor.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public KeysetPager.Page<?> query(String deviceId, Date from, Date to, Resolution resolution, String cursor, int limit) {
+        if (resolution == Resolution.RAW) {
+            return keysetPager.range(PerformanceMetric.class, Criteria.where("deviceId").is(deviceId), "timestamp",
+                    from, to, false, cursor, limit, PerformanceMetric::getTimestamp, PerformanceMetric::getMongoId);
+        }
+        return keysetPager.range(MetricRollup.class,
+                Criteria.where("deviceId").is(deviceId).and("resolution").is(resolution.label), "bucketStart",
+                from, to, true, cursor, limit, MetricRollup::getBucketStart, MetricRollup::getMongoId);
+    }
+
+    private Duration retentionOf(Resolution resolution) {
+        return resolution == Resolution.HOUR ? hourRetention : minuteRetention;
+    }
+
+    private Optional<Long> readWatermark(Resolution resolution) {
+        Document state = mongoTemplate.findById(resolution.label, Document.class, STATE_COLLECTION);
+        return Optional.ofNullable(state).map(doc -> doc.getDate("watermark").getTime());
+    }
+
+    private void writeWatermark(Resolution resolution, long watermark) {
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(resolution.label)),
+                new Update().set("watermark", new Date(watermark)), STATE_COLLECTION);
+    }
+
+    private static long floor(long millis, long bucketMs) {
+        return millis - Math.floorMod(millis, bucketMs);
+    }
+}
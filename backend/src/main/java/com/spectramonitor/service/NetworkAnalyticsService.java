@@ -0,0 +1,292 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.NetworkAggregate;
+import com.spectramonitor.model.NetworkRequest;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Ingest-time aggregation of network requests per (app, method, URL
+ * template, status class, minute). Requests are folded into in-memory
+ * accumulators and flushed periodically as {@code $inc} upserts into
+ * {@code network_aggregates}, so endpoint analytics never scan raw requests.
+ */
+@Service
+public class NetworkAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetworkAnalyticsService.class);
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final int BULK_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final DeviceDirectory deviceDirectory;
+    private final long retentionMs;
+    private final int maxPendingKeys;
+    private final Map<Key, Accumulator> pending = new ConcurrentHashMap<>();
+    private final AtomicLong unattributed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public NetworkAnalyticsService(MongoTemplate mongoTemplate, DeviceDirectory deviceDirectory,
+                                   @Value("${spectra.network.analytics.retention-days:30}") long retentionDays,
+                                   @Value("${spectra.network.analytics.max-pending-keys:100000}") int maxPendingKeys) {
+        this.mongoTemplate = mongoTemplate;
+        this.deviceDirectory = deviceDirectory;
+        this.retentionMs = retentionDays * 24 * 3_600_000L;
+        this.maxPendingKeys = maxPendingKeys;
+    }
+
+    public NetworkRequest record(NetworkRequest request) {
+        String appId = deviceDirectory.appIdOf(request.getDeviceId());
+        if (appId.isEmpty()) {
+            unattributed.incrementAndGet();
+            return request;
+        }
+        long at = request.getTimestamp() == null ? System.currentTimeMillis() : request.getTimestamp().getTime();
+        Key key = new Key(appId,
+                request.getMethod() == null ? "GET" : request.getMethod().toUpperCase(Locale.ROOT),
+                UrlTemplate.of(request.getUrl()),
+                statusClass(request.getStatusCode()),
+                at - Math.floorMod(at, MINUTE_MS));
+        if (pending.size() >= maxPendingKeys && !pending.containsKey(key)) {
+            dropped.incrementAndGet();
+            return request;
+        }
+        // compute() holds the key's bin lock, so a concurrent flush either
+        // drains this accumulator before or after the add, never during it.
+        pending.compute(key, (k, accumulator) -> {
+            Accumulator target = accumulator == null ? new Accumulator() : accumulator;
+            target.add(request);
+            return target;
+        });
+        return request;
+    }
+
+    @Scheduled(fixedDelayString = "${spectra.network.analytics.flush-interval-ms:10000}")
+    public void flush() {
+        List<Key> keys = new ArrayList<>(pending.keySet());
+        for (int from = 0; from < keys.size(); from += BULK_SIZE) {
+            Map<Key, Accumulator> batch = new LinkedHashMap<>();
+            for (Key key : keys.subList(from, Math.min(keys.size(), from + BULK_SIZE))) {
+                Accumulator accumulator = pending.remove(key);
+                if (accumulator != null) {
+                    batch.put(key, accumulator);
+                }
+            }
+            write(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void write(Map<Key, Accumulator> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NetworkAggregate.class);
+        batch.forEach((key, accumulator) -> {
+            Query query = new Query(Criteria.where("appId").is(key.appId)
+                    .and("method").is(key.method)
+                    .and("urlTemplate").is(key.urlTemplate)
+                    .and("statusClass").is(key.statusClass)
+                    .and("minute").is(new Date(key.minute)));
+            Update update = new Update()
+                    .inc("count", accumulator.count)
+                    .inc("errorCount", accumulator.errorCount)
+                    .inc("durationSum", accumulator.durationSum)
+                    .inc("requestBytes", accumulator.requestBytes)
+                    .inc("responseBytes", accumulator.responseBytes)
+                    .max("durationMax", accumulator.durationMax)
+                    .setOnInsert("expireAt", new Date(key.minute + retentionMs));
+            accumulator.histogram.counts().forEach((bucket, count) -> update.inc("histogram." + bucket, count));
+            bulk.upsert(query, update);
+        });
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            logger.error("Network analytics flush of {} aggregates failed: {}", batch.size(), e.getMessage());
+            // Put the counts back; the next flush retries them together with anything new.
+            batch.forEach((key, accumulator) -> pending.merge(key, accumulator, Accumulator::addAll));
+        }
+    }
+
+    /**
+     * Per-endpoint totals for an app over {@code [from, to)}, busiest first.
+     * Counts still waiting for the next flush are not included.
+     */
+    public List<Map<String, Object>> endpoints(String appId, Date from, Date to, int limit) {
+        Query query = new Query(Criteria.where("appId").is(appId).and("minute").gte(from).lt(to));
+        Map<String, EndpointStats> endpoints = new HashMap<>();
+        try (Stream<NetworkAggregate> stream = mongoTemplate.stream(query, NetworkAggregate.class)) {
+            stream.forEach(aggregate -> endpoints
+                    .computeIfAbsent(aggregate.getMethod() + " " + aggregate.getUrlTemplate(),
+                            k -> new EndpointStats(aggregate.getMethod(), aggregate.getUrlTemplate()))
+                    .add(aggregate));
+        }
+        return endpoints.values().stream()
+                .sorted(Comparator.comparingLong((EndpointStats stats) -> stats.count).reversed())
+                .limit(limit)
+                .map(EndpointStats::toMap)
+                .toList();
+    }
+
+    /** One endpoint over time, in buckets of {@code bucketMinutes}. */
+    public List<Map<String, Object>> timeseries(String appId, String method, String urlTemplate,
+                                                Date from, Date to, int bucketMinutes) {
+        long bucketMs = Math.max(1, bucketMinutes) * MINUTE_MS;
+        Query query = new Query(Criteria.where("appId").is(appId)
+                .and("method").is(method.toUpperCase(Locale.ROOT))
+                .and("urlTemplate").is(urlTemplate)
+                .and("minute").gte(from).lt(to))
+                .with(Sort.by(Sort.Direction.ASC, "minute"));
+        Map<Long, EndpointStats> buckets = new TreeMap<>();
+        try (Stream<NetworkAggregate> stream = mongoTemplate.stream(query, NetworkAggregate.class)) {
+            stream.forEach(aggregate -> {
+                long minute = aggregate.getMinute().getTime();
+                buckets.computeIfAbsent(minute - Math.floorMod(minute, bucketMs),
+                        k -> new EndpointStats(aggregate.getMethod(), aggregate.getUrlTemplate())).add(aggregate);
+            });
+        }
+        List<Map<String, Object>> points = new ArrayList<>(buckets.size());
+        buckets.forEach((bucketStart, stats) -> {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("bucketStart", new Date(bucketStart));
+            point.putAll(stats.toMap());
+            point.remove("method");
+            point.remove("urlTemplate");
+            points.add(point);
+        });
+        return points;
+    }
+
+    public int pendingKeys() {
+        return pending.size();
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "pendingKeys", pending.size(),
+                "unattributed", unattributed.get(),
+                "dropped", dropped.get(),
+                "flushFailures", flushFailures.get());
+    }
+
+    static String statusClass(Integer statusCode) {
+        if (statusCode == null || statusCode <= 0) {
+            return "error";
+        }
+        return statusCode / 100 + "xx";
+    }
+
+    private record Key(String appId, String method, String urlTemplate, String statusClass, long minute) {
+    }
+
+    private static class Accumulator {
+        private long count;
+        private long errorCount;
+        private long durationSum;
+        private long durationMax;
+        private long requestBytes;
+        private long responseBytes;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        void add(NetworkRequest request) {
+            count++;
+            Integer status = request.getStatusCode();
+            if (status == null || status <= 0 || status >= 400
+                    || (request.getError() != null && !request.getError().isEmpty())) {
+                errorCount++;
+            }
+            if (request.getDuration() != null) {
+                long duration = Math.max(0, request.getDuration());
+                durationSum += duration;
+                durationMax = Math.max(durationMax, duration);
+                histogram.record(duration);
+            }
+            requestBytes += request.getRequestSize() == null ? 0 : request.getRequestSize();
+            responseBytes += request.getResponseSize() == null ? 0 : request.getResponseSize();
+        }
+
+        Accumulator addAll(Accumulator other) {
+            count += other.count;
+            errorCount += other.errorCount;
+            durationSum += other.durationSum;
+            durationMax = Math.max(durationMax, other.durationMax);
+            requestBytes += other.requestBytes;
+            responseBytes += other.responseBytes;
+            other.histogram.counts().forEach(histogram::add);
+            return this;
+        }
+    }
+
+    private static class EndpointStats {
+        private final String method;
+        private final String urlTemplate;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final Map<String, Long> statusClasses = new TreeMap<>();
+        private long count;
+        private long errorCount;
+        private long durationSum;
+        private long durationMax;
+        private long requestBytes;
+        private long responseBytes;
+
+        EndpointStats(String method, String urlTemplate) {
+            this.method = method;
+            this.urlTemplate = urlTemplate;
+        }
+
+        void add(NetworkAggregate aggregate) {
+            long aggregateCount = value(aggregate.getCount());
+            count += aggregateCount;
+            errorCount += value(aggregate.getErrorCount());
+            durationSum += value(aggregate.getDurationSum());
+            durationMax = Math.max(durationMax, value(aggregate.getDurationMax()));
+            requestBytes += value(aggregate.getRequestBytes());
+            responseBytes += value(aggregate.getResponseBytes());
+            statusClasses.merge(aggregate.getStatusClass(), aggregateCount, Long::sum);
+            histogram.merge(aggregate.getHistogram());
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("method", method);
+            result.put("urlTemplate", urlTemplate);
+            result.put("count", count);
+            result.put("errorRate", count == 0 ? 0.0 : (double) errorCount / count);
+            result.put("avgMs", histogram.total() == 0 ? 0 : durationSum / histogram.total());
+            result.put("p50Ms", histogram.quantile(0.50));
+            result.put("p95Ms", histogram.quantile(0.95));
+            result.put("p99Ms", histogram.quantile(0.99));
+            result.put("maxMs", durationMax);
+            result.put("requestBytes", requestBytes);
+            result.put("responseBytes", responseBytes);
+            result.put("statusClasses", statusClasses);
+            return result;
+        }
+
+        private static long value(Long value) {
+            return value == null ? 0 : value;
+        }
+    }
+}
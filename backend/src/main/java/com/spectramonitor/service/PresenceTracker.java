@@ -0,0 +1,221 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.Device;
+import com.spectramonitor.socket.EventBroadcaster;
+import com.spectramonitor.socket.RoomRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory device presence fed by connects, heartbeats and disconnects.
+ * Hot-path calls only touch a concurrent map; {@code lastSeen}/{@code status}
+ * changes are flushed to Mongo periodically as one unordered bulk write, and
+ * {@code device:update} is only pushed when a device goes online or offline.
+ * Updates to an entry go through the map's {@code compute}, so the sweep
+ * cannot forget a device that was seen while it was deciding.
+ */
+@Service
+public class PresenceTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceTracker.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final EventBroadcaster eventBroadcaster;
+    private final DeviceDirectory deviceDirectory;
+    private final long offlineAfterMs;
+    private final Map<String, Presence> devices = new ConcurrentHashMap<>();
+
+    public PresenceTracker(MongoTemplate mongoTemplate, EventBroadcaster eventBroadcaster, DeviceDirectory deviceDirectory,
+                           @Value("${spectra.presence.offline-after-ms:60000}") long offlineAfterMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventBroadcaster = eventBroadcaster;
+        this.deviceDirectory = deviceDirectory;
+        this.offlineAfterMs = offlineAfterMs;
+    }
+
+    /**
+     * Records a device connect. The metadata is only written if the device
+     * does not exist yet.
+     */
+    public void connect(String deviceId, String appId, Map<String, Object> metadata) {
+        seen(devices.compute(deviceId, (id, presence) -> {
+            presence = touch(id, presence);
+            if (appId != null) {
+                presence.appId = appId;
+            }
+            presence.insertMetadata = metadata;
+            return presence;
+        }));
+    }
+
+    public void heartbeat(String deviceId) {
+        if (deviceId != null) {
+            seen(devices.compute(deviceId, PresenceTracker::touch));
+        }
+    }
+
+    public void disconnect(String deviceId) {
+        Presence presence = devices.get(deviceId);
+        if (presence != null && presence.online.compareAndSet(true, false)) {
+            presence.dirty.set(true);
+            publish(presence, "offline");
+        }
+    }
+
+    public boolean isOnline(String deviceId) {
+        Presence presence = devices.get(deviceId);
+        return presence != null && presence.online.get();
+    }
+
+    private static Presence touch(String deviceId, Presence presence) {
+        if (presence == null) {
+            presence = new Presence(deviceId);
+        }
+        presence.lastSeen = System.currentTimeMillis();
+        presence.dirty.set(true);
+        return presence;
+    }
+
+    private void seen(Presence presence) {
+        if (presence.online.compareAndSet(false, true)) {
+            publish(presence, "online");
+        }
+    }
+
+    /**
+     * Devices first seen through a heartbeat or telemetry carry no app id.
+     * Looking it up may query Mongo, so it is left to the sweep instead of
+     * the socket thread that reported the device.
+     */
+    private void publish(Presence presence, String status) {
+        String appId = presence.appId;
+        if (appId == null) {
+            presence.unresolved = true;
+            return;
+        }
+        eventBroadcaster.toRoom(RoomRegistry.appRoom(appId), "device:update",
+                Map.of("id", presence.deviceId, "status", status));
+    }
+
+    /** Publishes the current status of a device whose app id was not known when it changed. */
+    private void resolve(Presence presence) {
+        presence.unresolved = false;
+        String appId = deviceDirectory.appIdOf(presence.deviceId);
+        if (!appId.isEmpty()) {
+            presence.appId = appId;
+            publish(presence, presence.online.get() ? "online" : "offline");
+        }
+    }
+
+    /**
+     * Publishes updates held back for an app id lookup, marks devices that
+     * stopped sending heartbeats offline, and forgets offline devices whose
+     * state has already been flushed.
+     */
+    @Scheduled(fixedDelayString = "${spectra.presence.sweep-interval-ms:5000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        for (Presence presence : devices.values()) {
+            if (presence.unresolved) {
+                resolve(presence);
+            }
+            if (now - presence.lastSeen <= offlineAfterMs) {
+                continue;
+            }
+            if (presence.online.compareAndSet(true, false)) {
+                presence.dirty.set(true);
+                publish(presence, "offline");
+            } else if (!presence.online.get() && !presence.dirty.get()) {
+                // Re-checked under the entry's lock: a heartbeat may have landed since.
+                devices.computeIfPresent(presence.deviceId, (id, current) -> current == presence
+                        && now - current.lastSeen > offlineAfterMs && !current.online.get() && !current.dirty.get()
+                        ? null : current);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${spectra.presence.flush-interval-ms:5000}")
+    public void flush() {
+        BulkOperations bulk = null;
+        List<Presence> flushed = new ArrayList<>();
+        List<Map<String, Object>> flushedMetadata = new ArrayList<>();
+        for (Presence presence : devices.values()) {
+            if (!presence.dirty.getAndSet(false)) {
+                continue;
+            }
+            if (bulk == null) {
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Device.class);
+            }
+            Query query = new Query(Criteria.where("deviceId").is(presence.deviceId));
+            Update update = new Update()
+                    .set("status", presence.online.get() ? "online" : "offline")
+                    .set("lastSeen", new Date(presence.lastSeen));
+            Map<String, Object> metadata = presence.insertMetadata;
+            flushed.add(presence);
+            flushedMetadata.add(metadata);
+            if (metadata != null) {
+                if (presence.appId != null) {
+                    update.setOnInsert("appId", presence.appId);
+                }
+                metadata.forEach((key, value) -> {
+                    if (value != null) {
+                        update.setOnInsert(key, value);
+                    }
+                });
+                presence.insertMetadata = null;
+                bulk.upsert(query, update);
+            } else {
+                bulk.updateOne(query, update);
+            }
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            logger.error("Presence flush of {} devices failed: {}", flushed.size(), e.getMessage());
+            for (int i = 0; i < flushed.size(); i++) {
+                Presence presence = flushed.get(i);
+                if (presence.insertMetadata == null) {
+                    presence.insertMetadata = flushedMetadata.get(i);
+                }
+                presence.dirty.set(true);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long online = devices.values().stream().filter(presence -> presence.online.get()).count();
+        return Map.of("tracked", devices.size(), "online", online);
+    }
+
+    private static class Presence {
+        private final String deviceId;
+        private final AtomicBoolean online = new AtomicBoolean();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private volatile long lastSeen;
+        private volatile String appId;
+        private volatile boolean unresolved;
+        private volatile Map<String, Object> insertMetadata;
+
+        Presence(String deviceId) {
+            this.deviceId = deviceId;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.CrashReport;
+import com.spectramonitor.model.Device;
+import com.spectramonitor.model.FeatureFlag;
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.model.MetricRollup;
+import com.spectramonitor.model.NetworkAggregate;
+import com.spectramonitor.model.NetworkRequest;
+import com.spectramonitor.model.PerformanceMetric;
+import com.spectramonitor.model.PurgeJob;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes everything that belongs to a deleted app in the background.
+ *
+ * <p>A job first walks the app's devices a page at a time and removes their
+ * logs, metrics, rollups and network requests; then it removes the
+ * app-keyed data (crashes, flags, network aggregates, search segments).
+ * Devices can keep sending after their page was purged, and a reconnect
+ * re-creates a deleted device row, so a final sweep walks the devices
+ * again, deleting their telemetry once more and then the device rows
+ * themselves. Deletes go out in batches of
+ * {@code spectra.purge.batch-size} ids, paced to
+ * {@code spectra.purge.max-docs-per-second}, and pause while the ingest
+ * queues are more than half full, so a purge never competes with live
+ * writes for long.
+ *
+ * <p>Progress is checkpointed on the job document after every batch. Jobs
+ * are claimed under a lease, so after a restart (or on another instance)
+ * a job whose lease ran out is picked up again and resumes from its last
+ * device page; every delete is by key, so repeating a batch is harmless.
+ */
+@Service
+public class PurgeJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PurgeJobService.class);
+
+    private static final List<Class<?>> DEVICE_COLLECTIONS = List.of(
+            LogEntry.class, PerformanceMetric.class, MetricRollup.class, NetworkRequest.class);
+    private static final List<Class<?>> APP_COLLECTIONS = List.of(
+            CrashReport.class, FeatureFlag.class, NetworkAggregate.class);
+    private static final long BUSY_BACKOFF_MS = 1000;
+    private static final int MAX_BUSY_BACKOFFS = 30;
+
+    private final MongoTemplate mongoTemplate;
+    private final IngestPipeline ingestPipeline;
+    private final DeviceDirectory deviceDirectory;
+    private final RecentTelemetryCache recentTelemetryCache;
+    private final int batchSize;
+    private final int devicePageSize;
+    private final double maxDocsPerSecond;
+    private final long leaseMs;
+    private final String owner = UUID.randomUUID().toString();
+    private final ExecutorService worker;
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final AtomicLong documentsDeleted = new AtomicLong();
+    private final AtomicLong busyPauses = new AtomicLong();
+    private volatile boolean running = true;
+
+    public PurgeJobService(MongoTemplate mongoTemplate, IngestPipeline ingestPipeline,
+                           DeviceDirectory deviceDirectory, RecentTelemetryCache recentTelemetryCache,
+                           @Value("${spectra.purge.batch-size:1000}") int batchSize,
+                           @Value("${spectra.purge.device-page-size:100}") int devicePageSize,
+                           @Value("${spectra.purge.max-docs-per-second:5000}") double maxDocsPerSecond,
+                           @Value("${spectra.purge.lease-ms:60000}") long leaseMs,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.ingestPipeline = ingestPipeline;
+        this.deviceDirectory = deviceDirectory;
+        this.recentTelemetryCache = recentTelemetryCache;
+        this.batchSize = batchSize;
+        this.devicePageSize = devicePageSize;
+        this.maxDocsPerSecond = maxDocsPerSecond;
+        this.leaseMs = leaseMs;
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        this.worker = Executors.newSingleThreadExecutor(builder.name("purge-worker").factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        worker.shutdownNow();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Queues a purge of the app's data; the worker picks it up within one poll interval. */
+    public PurgeJob schedule(String appId) {
+        PurgeJob job = new PurgeJob();
+        job.setId("purge_" + new ObjectId().toHexString());
+        job.setAppId(appId);
+        return mongoTemplate.insert(job);
+    }
+
+    public Optional<PurgeJob> find(String jobId) {
+        return Optional.ofNullable(mongoTemplate.findOne(new Query(Criteria.where("id").is(jobId)), PurgeJob.class));
+    }
+
+    public List<PurgeJob> recent(int limit) {
+        return mongoTemplate.find(new Query().with(Sort.by(Sort.Direction.DESC, "createdAt")).limit(limit), PurgeJob.class);
+    }
+
+    /**
+     * Claims the oldest job that is pending or whose owner's lease ran out,
+     * and runs it on the purge worker. One job runs per instance at a time.
+     */
+    @Scheduled(fixedDelayString = "${spectra.purge.poll-interval-ms:10000}")
+    public void poll() {
+        if (!running || !busy.compareAndSet(false, true)) {
+            return;
+        }
+        PurgeJob job;
+        try {
+            Date now = new Date();
+            Query claimable = new Query(new Criteria().orOperator(
+                    Criteria.where("status").is(PurgeJob.Status.PENDING),
+                    Criteria.where("status").is(PurgeJob.Status.RUNNING).and("leaseUntil").lt(now)))
+                    .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+            Update claim = new Update()
+                    .set("status", PurgeJob.Status.RUNNING)
+                    .set("owner", owner)
+                    .set("leaseUntil", new Date(now.getTime() + leaseMs))
+                    .set("updatedAt", now)
+                    .min("startedAt", now);
+            job = mongoTemplate.findAndModify(claimable, claim, FindAndModifyOptions.options().returnNew(true), PurgeJob.class);
+        } catch (Exception e) {
+            busy.set(false);
+            logger.error("Purge job claim failed: {}", e.getMessage());
+            return;
+        }
+        if (job == null) {
+            busy.set(false);
+            return;
+        }
+        PurgeJob claimed = job;
+        worker.execute(() -> {
+            try {
+                run(claimed);
+            } finally {
+                busy.set(false);
+            }
+        });
+    }
+
+    private void run(PurgeJob job) {
+        logger.info("Purge {} of app {} started ({})", job.getId(), job.getAppId(), job.getPhase());
+        try {
+            String cursor = job.getDeviceCursor();
+            if (job.getPhase() == PurgeJob.Phase.DEVICE_TELEMETRY) {
+                purgeDevices(job, cursor, false);
+                if (!checkpoint(job, new Update().set("phase", PurgeJob.Phase.APP_DATA))) {
+                    throw new LeaseLostException();
+                }
+            }
+            if (job.getPhase() != PurgeJob.Phase.DEVICE_SWEEP) {
+                purgeAppData(job);
+                if (!checkpoint(job, new Update().set("phase", PurgeJob.Phase.DEVICE_SWEEP).unset("deviceCursor"))) {
+                    throw new LeaseLostException();
+                }
+                cursor = null;
+            }
+            purgeDevices(job, cursor, true);
+            finish(job, new Update().set("status", PurgeJob.Status.DONE).unset("leaseUntil"));
+            logger.info("Purge {} of app {} finished", job.getId(), job.getAppId());
+        } catch (LeaseLostException e) {
+            logger.warn("Purge {} lost its lease; leaving it to the new owner", job.getId());
+        } catch (InterruptedException e) {
+            // Give the lease up so the job resumes as soon as any instance polls.
+            release(job);
+            logger.info("Purge {} interrupted; it will resume from its last checkpoint", job.getId());
+        } catch (Exception e) {
+            logger.error("Purge {} of app {} failed: {}", job.getId(), job.getAppId(), e.getMessage());
+            finish(job, new Update().set("status", PurgeJob.Status.FAILED).set("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Deletes the telemetry of the app's devices a page at a time, starting
+     * after {@code cursor}.
+     *
+     * @param deleteRows also delete the device rows (the final sweep)
+     */
+    private void purgeDevices(PurgeJob job, String cursor, boolean deleteRows) throws InterruptedException {
+        String deviceCollection = mongoTemplate.getCollectionName(Device.class);
+        while (true) {
+            Criteria devices = Criteria.where("appId").is(job.getAppId());
+            if (cursor != null) {
+                devices = devices.and("_id").gt(new ObjectId(cursor));
+            }
+            Query page = new Query(devices).with(Sort.by(Sort.Direction.ASC, "_id")).limit(devicePageSize);
+            page.fields().include("_id").include("deviceId");
+            List<Document> found = mongoTemplate.find(page, Document.class, deviceCollection);
+            if (found.isEmpty()) {
+                return;
+            }
+            List<String> deviceIds = new ArrayList<>(found.size());
+            for (Document device : found) {
+                if (device.getString("deviceId") != null) {
+                    deviceIds.add(device.getString("deviceId"));
+                }
+            }
+            for (Class<?> type : DEVICE_COLLECTIONS) {
+                deleteAll(job, mongoTemplate.getCollectionName(type), Criteria.where("deviceId").in(deviceIds), false);
+            }
+            Update progress = new Update();
+            if (deleteRows) {
+                List<Object> rowIds = found.stream().map(device -> device.get("_id")).toList();
+                long deleted = mongoTemplate.remove(new Query(Criteria.where("_id").in(rowIds)), deviceCollection)
+                        .getDeletedCount();
+                documentsDeleted.addAndGet(deleted);
+                progress.inc("deleted." + deviceCollection, deleted);
+            } else {
+                progress.inc("devicesPurged", found.size());
+            }
+            deviceIds.forEach(deviceId -> {
+                recentTelemetryCache.invalidate(deviceId);
+                deviceDirectory.forget(deviceId);
+            });
+            cursor = found.get(found.size() - 1).getObjectId("_id").toHexString();
+            if (!checkpoint(job, progress.set("deviceCursor", cursor))) {
+                throw new LeaseLostException();
+            }
+        }
+    }
+
+    private void purgeAppData(PurgeJob job) throws InterruptedException {
+        Criteria byApp = Criteria.where("appId").is(job.getAppId());
+        for (Class<?> type : APP_COLLECTIONS) {
+            deleteAll(job, mongoTemplate.getCollectionName(type), byApp, false);
+        }
+        // Segments have only a text index; walk them in _id order instead of rescanning per batch.
+        for (String collection : mongoTemplate.getCollectionNames()) {
+            if (collection.startsWith(LogSearchService.SEGMENT_PREFIX)) {
+                deleteAll(job, collection, byApp, true);
+            }
+        }
+    }
+
+    /**
+     * Deletes every document matching {@code criteria} in batches, pacing
+     * each batch and checkpointing the count.
+     *
+     * @param idCursor page by {@code _id} for collections without an index
+     *                 on the criteria fields
+     */
+    private void deleteAll(PurgeJob job, String collection, Criteria criteria, boolean idCursor)
+            throws InterruptedException {
+        Object lastId = null;
+        while (running) {
+            waitForIngest();
+            long start = System.nanoTime();
+            Query batch = idCursor && lastId != null
+                    ? new Query(new Criteria().andOperator(criteria, Criteria.where("_id").gt(lastId)))
+                    : new Query(criteria);
+            if (idCursor) {
+                batch.with(Sort.by(Sort.Direction.ASC, "_id"));
+            }
+            batch.limit(batchSize).fields().include("_id");
+            List<Object> ids = mongoTemplate.find(batch, Document.class, collection).stream()
+                    .map(document -> document.get("_id"))
+                    .toList();
+            if (ids.isEmpty()) {
+                return;
+            }
+            lastId = ids.get(ids.size() - 1);
+            long deleted = mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), collection).getDeletedCount();
+            documentsDeleted.addAndGet(deleted);
+            if (!checkpoint(job, new Update().inc("deleted." + collection, deleted))) {
+                throw new LeaseLostException();
+            }
+            pace(ids.size(), start);
+        }
+        throw new InterruptedException("purge worker stopping");
+    }
+
+    /** Sleeps so that deletes stay under {@code maxDocsPerSecond} on average. */
+    private void pace(int documents, long startNanos) throws InterruptedException {
+        if (maxDocsPerSecond <= 0) {
+            return;
+        }
+        long budgetNanos = (long) (documents / maxDocsPerSecond * 1_000_000_000L);
+        long remaining = budgetNanos - (System.nanoTime() - startNanos);
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    /**
+     * Backs off while any ingest queue is over half full. The wait is
+     * bounded so a permanently busy instance still makes progress.
+     */
+    private void waitForIngest() throws InterruptedException {
+        for (int i = 0; i < MAX_BUSY_BACKOFFS && ingestBusy(); i++) {
+            busyPauses.incrementAndGet();
+            Thread.sleep(BUSY_BACKOFF_MS);
+        }
+    }
+
+    private boolean ingestBusy() {
+        for (IngestWriter<?> writer : ingestPipeline.writers()) {
+            if (writer.getQueueDepth() * 2L > writer.getQueueCapacity()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Records progress and renews the lease; false if another owner took the job over. */
+    private boolean checkpoint(PurgeJob job, Update update) {
+        Date now = new Date();
+        update.set("leaseUntil", new Date(now.getTime() + leaseMs)).set("updatedAt", now);
+        Query mine = new Query(Criteria.where("id").is(job.getId()).and("owner").is(owner));
+        return mongoTemplate.updateFirst(mine, update, PurgeJob.class).getMatchedCount() > 0;
+    }
+
+    private void finish(PurgeJob job, Update update) {
+        Date now = new Date();
+        update.set("finishedAt", now).set("updatedAt", now);
+        Query mine = new Query(Criteria.where("id").is(job.getId()).and("owner").is(owner));
+        try {
+            mongoTemplate.updateFirst(mine, update, PurgeJob.class);
+        } catch (Exception e) {
+            logger.error("Purge {} status update failed: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    private void release(PurgeJob job) {
+        Query mine = new Query(Criteria.where("id").is(job.getId()).and("owner").is(owner));
+        try {
+            mongoTemplate.updateFirst(mine, new Update().set("leaseUntil", new Date()).set("updatedAt", new Date()), PurgeJob.class);
+        } catch (Exception e) {
+            logger.debug("Purge {} lease release failed: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", busy.get());
+        stats.put("documentsDeleted", documentsDeleted.get());
+        stats.put("ingestPauses", busyPauses.get());
+        stats.put("maxDocsPerSecond", maxDocsPerSecond);
+        stats.put("batchSize", batchSize);
+        return stats;
+    }
+
+    private static class LeaseLostException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        LeaseLostException() {
+            // Only used for control flow; the stack trace is never looked at.
+            super(null, null, false, false);
+        }
+    }
+}
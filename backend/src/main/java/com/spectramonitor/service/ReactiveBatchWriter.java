@@ -0,0 +1,175 @@
+package com.spectramonitor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Write-behind queue on the reactive driver. Submitted items flow through
+ * one {@code Flux}: {@code bufferTimeout} cuts batches of up to
+ * {@code batchSize} or whatever arrived within {@code flushInterval}, and at
+ * most {@code concurrency} batch writes are in flight. Batches are only
+ * requested as writes complete, so a slow database leaves items waiting in
+ * the buffer rather than piling up as pending inserts. The buffer is bounded
+ * by {@code capacity} permits, released once an item's batch has been
+ * written or has failed.
+ *
+ * <p>{@link BatchingWriter.OverflowPolicy#DROP_OLDEST} cannot evict from the
+ * middle of the stream and behaves as {@code DROP}.
+ */
+public class ReactiveBatchWriter<T> implements IngestWriter<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveBatchWriter.class);
+
+    private final String name;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final BatchingWriter.OverflowPolicy overflowPolicy;
+    private final int concurrency;
+    private final Function<List<T>, Mono<Void>> sink;
+    private final Semaphore permits;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final ReentrantLock lifecycle = new ReentrantLock();
+    private volatile FluxSink<T> emitter;
+    private Disposable subscription;
+    private CountDownLatch completed;
+
+    /**
+     * @param sink writes one batch; the returned {@code Mono} completes when
+     *             the batch is persisted
+     */
+    public ReactiveBatchWriter(String name, int capacity, int batchSize, Duration flushInterval,
+                               BatchingWriter.OverflowPolicy overflowPolicy, int concurrency,
+                               Function<List<T>, Mono<Void>> sink) {
+        this.name = name;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflowPolicy = overflowPolicy;
+        this.concurrency = Math.max(1, concurrency);
+        this.sink = sink;
+        this.permits = new Semaphore(capacity);
+    }
+
+    @Override
+    public void start() {
+        lifecycle.lock();
+        try {
+            if (emitter != null) {
+                return;
+            }
+            CountDownLatch done = new CountDownLatch(1);
+            completed = done;
+            subscription = Flux.<T>create(target -> emitter = target, FluxSink.OverflowStrategy.BUFFER)
+                    .bufferTimeout(batchSize, flushInterval, true)
+                    .flatMap(this::write, concurrency, 1)
+                    .doFinally(signal -> done.countDown())
+                    .subscribe();
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Completes the stream so the partial batch is written, and waits for
+     * the writes in flight.
+     */
+    @Override
+    public void stop() {
+        lifecycle.lock();
+        try {
+            FluxSink<T> target = emitter;
+            if (target == null) {
+                return;
+            }
+            emitter = null;
+            target.complete();
+            try {
+                if (!completed.await(10, TimeUnit.SECONDS)) {
+                    logger.warn("Reactive writer {} did not drain within 10s", name);
+                    subscription.dispose();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                subscription.dispose();
+            }
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    @Override
+    public boolean submit(T item) {
+        submitted.incrementAndGet();
+        FluxSink<T> target = emitter;
+        if (target == null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (overflowPolicy == BatchingWriter.OverflowPolicy.BLOCK) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+                return false;
+            }
+        } else if (!permits.tryAcquire()) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        target.next(item);
+        return true;
+    }
+
+    private Mono<Void> write(List<T> batch) {
+        return sink.apply(batch)
+                .doOnSuccess(ignored -> written.addAndGet(batch.size()))
+                .onErrorResume(e -> {
+                    failed.addAndGet(batch.size());
+                    logger.error("Reactive writer {} failed to flush {} items: {}", name, batch.size(), e.getMessage());
+                    return Mono.empty();
+                })
+                .doFinally(signal -> permits.release(batch.size()));
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    /** Items accepted but not yet written, including batches in flight. */
+    @Override
+    public int getQueueDepth() { return capacity - permits.availablePermits(); }
+
+    @Override
+    public int getQueueCapacity() { return capacity; }
+
+    @Override
+    public long getSubmitted() { return submitted.get(); }
+
+    @Override
+    public long getWritten() { return written.get(); }
+
+    @Override
+    public long getDropped() { return dropped.get(); }
+
+    @Override
+    public long getFailed() { return failed.get(); }
+}
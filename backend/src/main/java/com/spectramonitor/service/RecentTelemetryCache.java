@@ -0,0 +1,185 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.model.PerformanceMetric;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-device ring buffers of the most recent logs and metrics, written
+ * through by every ingest path so dashboard polls for the latest window are
+ * answered from memory. The total estimated size is capped; when it is
+ * exceeded the least recently used devices are dropped.
+ */
+@Service
+public class RecentTelemetryCache {
+
+    private static final long LOG_OVERHEAD_BYTES = 160;
+    private static final long METRIC_BYTES = 200;
+
+    private final int logsPerDevice;
+    private final int metricsPerDevice;
+    private final long maxBytes;
+    private final Map<String, DeviceBuffers> devices = new ConcurrentHashMap<>();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public RecentTelemetryCache(@Value("${spectra.cache.logs-per-device:500}") int logsPerDevice,
+                                @Value("${spectra.cache.metrics-per-device:200}") int metricsPerDevice,
+                                @Value("${spectra.cache.max-bytes:268435456}") long maxBytes) {
+        this.logsPerDevice = logsPerDevice;
+        this.metricsPerDevice = metricsPerDevice;
+        this.maxBytes = maxBytes;
+    }
+
+    public void appendLog(LogEntry log) {
+        if (log.getDeviceId() == null) {
+            return;
+        }
+        account(buffersFor(log.getDeviceId()).logs.add(log));
+    }
+
+    public void appendMetric(PerformanceMetric metric) {
+        if (metric.getDeviceId() == null) {
+            return;
+        }
+        account(buffersFor(metric.getDeviceId()).metrics.add(metric));
+    }
+
+    /**
+     * Newest logs oldest first, or null if the buffer cannot answer and the
+     * caller has to query Mongo (and should then {@link #seedLogs}).
+     */
+    public List<LogEntry> recentLogs(String deviceId, int limit) {
+        DeviceBuffers buffers = touch(deviceId);
+        return record(buffers == null ? null : buffers.logs.newest(limit));
+    }
+
+    /**
+     * Newest metrics newest first, matching the repository ordering, or null
+     * on a miss.
+     */
+    public List<PerformanceMetric> recentMetrics(String deviceId, int limit) {
+        DeviceBuffers buffers = touch(deviceId);
+        List<PerformanceMetric> metrics = record(buffers == null ? null : buffers.metrics.newest(limit));
+        if (metrics == null) {
+            return null;
+        }
+        List<PerformanceMetric> newestFirst = new ArrayList<>(metrics);
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    public void seedLogs(String deviceId, List<LogEntry> oldestFirst, boolean loadedAll) {
+        account(buffersFor(deviceId).logs.seed(oldestFirst, loadedAll, LogEntry::getMongoId));
+    }
+
+    public void seedMetrics(String deviceId, List<PerformanceMetric> oldestFirst, boolean loadedAll) {
+        account(buffersFor(deviceId).metrics.seed(oldestFirst, loadedAll, PerformanceMetric::getMongoId));
+    }
+
+    /**
+     * Drops a device's buffers, e.g. after a bulk write the buffers did not
+     * see in order.
+     */
+    public void invalidate(String deviceId) {
+        DeviceBuffers removed = devices.remove(deviceId);
+        if (removed != null) {
+            estimatedBytes.addAndGet(-removed.weight());
+        }
+    }
+
+    private DeviceBuffers buffersFor(String deviceId) {
+        DeviceBuffers buffers = devices.computeIfAbsent(deviceId, k -> new DeviceBuffers(logsPerDevice, metricsPerDevice));
+        buffers.lastAccess = System.nanoTime();
+        return buffers;
+    }
+
+    private DeviceBuffers touch(String deviceId) {
+        DeviceBuffers buffers = devices.get(deviceId);
+        if (buffers != null) {
+            buffers.lastAccess = System.nanoTime();
+        }
+        return buffers;
+    }
+
+    private <T> List<T> record(List<T> result) {
+        (result == null ? misses : hits).incrementAndGet();
+        return result;
+    }
+
+    private void account(long delta) {
+        if (estimatedBytes.addAndGet(delta) > maxBytes) {
+            evictIdle();
+        }
+    }
+
+    /**
+     * Drops least recently used devices until the cache is back under 90%
+     * of its cap. Only one thread evicts at a time; others carry on.
+     */
+    private void evictIdle() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long target = maxBytes / 10 * 9;
+            List<Map.Entry<String, DeviceBuffers>> byAge = new ArrayList<>(devices.entrySet());
+            byAge.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+            for (Map.Entry<String, DeviceBuffers> entry : byAge) {
+                if (estimatedBytes.get() <= target) {
+                    break;
+                }
+                if (devices.remove(entry.getKey(), entry.getValue())) {
+                    estimatedBytes.addAndGet(-entry.getValue().weight());
+                }
+            }
+            // Writers racing with removal may have charged a dropped buffer; resync.
+            estimatedBytes.set(devices.values().stream().mapToLong(DeviceBuffers::weight).sum());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "devices", devices.size(),
+                "estimatedBytes", estimatedBytes.get(),
+                "maxBytes", maxBytes,
+                "hits", hits.get(),
+                "misses", misses.get());
+    }
+
+    private static long weighLog(LogEntry log) {
+        long chars = (log.getMessage() == null ? 0 : log.getMessage().length())
+                + (log.getTag() == null ? 0 : log.getTag().length())
+                + (log.getTimestamp() == null ? 0 : log.getTimestamp().length());
+        return LOG_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    private static class DeviceBuffers {
+        private final RingBuffer<LogEntry> logs;
+        private final RingBuffer<PerformanceMetric> metrics;
+        private volatile long lastAccess;
+
+        DeviceBuffers(int logCapacity, int metricCapacity) {
+            this.logs = new RingBuffer<>(logCapacity, RecentTelemetryCache::weighLog);
+            this.metrics = new RingBuffer<>(metricCapacity, metric -> METRIC_BYTES);
+        }
+
+        long weight() {
+            return logs.weight() + metrics.weight();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.spectramonitor.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Fixed-capacity buffer of the most recent items for one device, oldest
+ * first. {@code complete} is set when the buffer is known to hold every item
+ * that exists for the device, so reads larger than the buffer can still be
+ * answered without going to Mongo.
+ */
+public class RingBuffer<T> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Object[] items;
+    private final ToLongFunction<T> weigher;
+    private int head;
+    private int size;
+    private long weight;
+    private boolean complete;
+
+    public RingBuffer(int capacity, ToLongFunction<T> weigher) {
+        this.items = new Object[capacity];
+        this.weigher = weigher;
+    }
+
+    /**
+     * Appends an item, overwriting the oldest one when full.
+     *
+     * @return the change in estimated weight
+     */
+    public long add(T item) {
+        lock.lock();
+        try {
+            long delta = weigher.applyAsLong(item);
+            int tail = (head + size) % items.length;
+            if (size == items.length) {
+                delta -= weigher.applyAsLong(itemAt(0));
+                head = (head + 1) % items.length;
+                complete = false;
+            } else {
+                size++;
+            }
+            items[tail] = item;
+            weight += delta;
+            return delta;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the newest {@code limit} items oldest first, or null when the
+     * buffer cannot prove it holds them.
+     */
+    public List<T> newest(int limit) {
+        lock.lock();
+        try {
+            if (size < limit && !complete) {
+                return null;
+            }
+            int count = Math.min(limit, size);
+            List<T> result = new ArrayList<>(count);
+            for (int i = size - count; i < size; i++) {
+                result.add(itemAt(i));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the contents with items loaded from Mongo (oldest first),
+     * keeping any buffered items the query could not see yet.
+     *
+     * @return the change in estimated weight
+     */
+    public long seed(List<T> loaded, boolean loadedAll, Function<T, Object> identity) {
+        lock.lock();
+        try {
+            Set<Object> loadedIds = new HashSet<>();
+            for (T item : loaded) {
+                loadedIds.add(identity.apply(item));
+            }
+            List<T> merged = new ArrayList<>(loaded);
+            for (int i = 0; i < size; i++) {
+                T item = itemAt(i);
+                Object id = identity.apply(item);
+                if (id == null || !loadedIds.contains(id)) {
+                    merged.add(item);
+                }
+            }
+            int from = Math.max(0, merged.size() - items.length);
+            long before = weight;
+            clear();
+            for (T item : merged.subList(from, merged.size())) {
+                items[size++] = item;
+                weight += weigher.applyAsLong(item);
+            }
+            complete = loadedAll && from == 0;
+            return weight - before;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long weight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void clear() {
+        for (int i = 0; i < items.length; i++) {
+            items[i] = null;
+        }
+        head = 0;
+        size = 0;
+        weight = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int index) {
+        return (T) items[(head + index) % items.length];
+    }
+}
@@ -0,0 +1,150 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.CrashReport;
+import com.spectramonitor.model.LogEntry;
+import com.spectramonitor.model.NetworkRequest;
+import com.spectramonitor.model.PerformanceMetric;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Converts raw request bodies into telemetry documents. Shared by the
+ * single-record and batch ingest endpoints so both apply the same defaults.
+ * Invalid fields raise {@link IllegalArgumentException} with a short reason.
+ */
+public final class TelemetryMapper {
+
+    private TelemetryMapper() {
+    }
+
+    public static LogEntry toLogEntry(String deviceId, Map<String, Object> body) {
+        LogEntry log = new LogEntry();
+        log.setDeviceId(deviceId);
+        log.setLevel(string(body, "level", "info"));
+        log.setMessage(string(body, "message", null));
+        log.setTag(string(body, "tag", "app"));
+        log.setTimestamp(string(body, "timestamp", new Date().toString()));
+        log.setIsAnomaly(bool(body, "isAnomaly", false));
+        return log;
+    }
+
+    public static PerformanceMetric toMetric(String deviceId, Map<String, Object> body) {
+        PerformanceMetric metric = new PerformanceMetric();
+        metric.setDeviceId(deviceId);
+        metric.setCpuUsage(number(body, "cpuUsage", 0).doubleValue());
+        metric.setMemoryUsage(number(body, "memoryUsage", 0).doubleValue());
+        metric.setBatteryLevel(number(body, "batteryLevel", 100).doubleValue());
+        metric.setTemperature(number(body, "temperature", 35).intValue());
+        metric.setFps(number(body, "fps", 60L).longValue());
+        metric.setUploadSpeed(number(body, "uploadSpeed", 0L).longValue());
+        metric.setDownloadSpeed(number(body, "downloadSpeed", 0L).longValue());
+        Date timestamp = date(body, "timestamp");
+        if (timestamp != null) {
+            metric.setTimestamp(timestamp);
+        }
+        return metric;
+    }
+
+    public static NetworkRequest toNetworkRequest(String deviceId, Map<String, Object> body) {
+        NetworkRequest request = new NetworkRequest();
+        request.setDeviceId(deviceId);
+        request.setMethod(string(body, "method", "GET"));
+        request.setUrl(string(body, "url", null));
+        request.setStatusCode(number(body, "statusCode", 200).intValue());
+        request.setDuration(number(body, "duration", 0L).longValue());
+        request.setRequestSize(number(body, "requestSize", 0L).longValue());
+        request.setResponseSize(number(body, "responseSize", 0L).longValue());
+        request.setError(string(body, "error", ""));
+        Date timestamp = date(body, "timestamp");
+        if (timestamp != null) {
+            request.setTimestamp(timestamp);
+        }
+        return request;
+    }
+
+    public static CrashReport toCrashReport(Map<String, Object> body) {
+        CrashReport crash = new CrashReport();
+        crash.setAppId(string(body, "appId", ""));
+        crash.setType(string(body, "type", "Exception"));
+        crash.setTitle(string(body, "title", null));
+        crash.setSubtitle(string(body, "subtitle", ""));
+        crash.setError(string(body, "error", null));
+        crash.setStackTrace(string(body, "stackTrace", ""));
+        crash.setAffectedFile(string(body, "affectedFile", ""));
+        return crash;
+    }
+
+    /**
+     * Stricter variant used by batch ingestion, where a record without a
+     * message carries no information worth storing.
+     */
+    public static LogEntry toValidLogEntry(String deviceId, Map<String, Object> body) {
+        LogEntry log = toLogEntry(deviceId, body);
+        if (log.getMessage() == null) {
+            throw new IllegalArgumentException("message is required");
+        }
+        return log;
+    }
+
+    public static NetworkRequest toValidNetworkRequest(String deviceId, Map<String, Object> body) {
+        NetworkRequest request = toNetworkRequest(deviceId, body);
+        if (request.getUrl() == null || request.getUrl().isEmpty()) {
+            throw new IllegalArgumentException("url is required");
+        }
+        return request;
+    }
+
+    static String string(Map<String, Object> body, String key, String defaultValue) {
+        Object value = body.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(key + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static Boolean bool(Map<String, Object> body, String key, boolean defaultValue) {
+        Object value = body.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Boolean)) {
+            throw new IllegalArgumentException(key + " must be a boolean");
+        }
+        return (Boolean) value;
+    }
+
+    private static Number number(Map<String, Object> body, String key, Number defaultValue) {
+        Object value = body.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+        return (Number) value;
+    }
+
+    private static Date date(Map<String, Object> body, String key) {
+        Object value = body.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return new Date(((Number) value).longValue());
+        }
+        if (value instanceof String) {
+            try {
+                return Date.from(Instant.parse((String) value));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException(key + " must be epoch millis or ISO-8601");
+            }
+        }
+        throw new IllegalArgumentException(key + " must be epoch millis or ISO-8601");
+    }
+}
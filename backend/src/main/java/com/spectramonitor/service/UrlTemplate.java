@@ -0,0 +1,91 @@
+package com.spectramonitor.service;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces request URLs to templates so requests to the same endpoint are
+ * aggregated together: the query string and fragment are dropped and path
+ * segments that look like identifiers are replaced with placeholders, e.g.
+ * {@code https://api.x.com/users/42/orders?page=2} becomes
+ * {@code api.x.com/users/{id}/orders}.
+ */
+public final class UrlTemplate {
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern UUID = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern HEX_ID = Pattern.compile("[0-9a-fA-F]{16,}");
+    private static final Pattern EMAIL = Pattern.compile("[^@/]+@[^@/]+\\.[^@/]+");
+    private static final Pattern LONG_DIGIT_RUN = Pattern.compile(".*\\d{6,}.*");
+    private static final Pattern TOKEN = Pattern.compile("[A-Za-z0-9_\\-=]{24,}");
+    private static final int MAX_SEGMENTS = 12;
+
+    private UrlTemplate() {
+    }
+
+    public static String of(String url) {
+        if (url == null || url.isBlank()) {
+            return "unknown";
+        }
+        String rest = url.trim();
+        int cut = indexOfAny(rest, '?', '#');
+        if (cut >= 0) {
+            rest = rest.substring(0, cut);
+        }
+        int scheme = rest.indexOf("://");
+        if (scheme >= 0) {
+            rest = rest.substring(scheme + 3);
+        }
+        String[] segments = rest.split("/");
+        StringBuilder template = new StringBuilder(rest.length());
+        int start = 0;
+        if (scheme >= 0) {
+            // The first segment of an absolute URL is the host; keep it as is.
+            template.append(segments[0].toLowerCase());
+            start = 1;
+        }
+        int written = 0;
+        for (int i = start; i < segments.length; i++) {
+            if (segments[i].isEmpty()) {
+                continue;
+            }
+            if (written == MAX_SEGMENTS) {
+                template.append("/…");
+                break;
+            }
+            template.append('/').append(normalize(segments[i]));
+            written++;
+        }
+        return template.length() == 0 ? "/" : template.toString();
+    }
+
+    static String normalize(String segment) {
+        if (NUMBER.matcher(segment).matches()) {
+            return "{id}";
+        }
+        if (UUID.matcher(segment).matches()) {
+            return "{uuid}";
+        }
+        if (HEX_ID.matcher(segment).matches()) {
+            return "{hash}";
+        }
+        if (EMAIL.matcher(segment).matches()) {
+            return "{email}";
+        }
+        if (LONG_DIGIT_RUN.matcher(segment).matches()) {
+            return "{id}";
+        }
+        if (TOKEN.matcher(segment).matches() && segment.chars().anyMatch(Character::isDigit)) {
+            return "{token}";
+        }
+        return segment;
+    }
+
+    private static int indexOfAny(String value, char a, char b) {
+        int first = value.indexOf(a);
+        int second = value.indexOf(b);
+        if (first < 0) {
+            return second;
+        }
+        return second < 0 ? first : Math.min(first, second);
+    }
+}
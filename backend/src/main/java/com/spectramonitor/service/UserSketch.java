@@ -0,0 +1,64 @@
+package com.spectramonitor.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * HyperLogLog distinct counter stored as a sparse map of register values.
+ * Each observation touches exactly one register, so it can be applied to a
+ * Mongo document with a single {@code $max}, and sketches never need to be
+ * read back on the write path. 1024 registers give roughly 3% error.
+ */
+public final class UserSketch {
+
+    static final int PRECISION = 10;
+    static final int REGISTERS = 1 << PRECISION;
+    static final String REGISTER_PREFIX = "r";
+
+    private UserSketch() {
+    }
+
+    /** Register key ({@code r<index>}) and rank for one observed user. */
+    public record Observation(String register, int rank) {
+    }
+
+    public static Observation observe(String userId) {
+        long hash = hash(userId);
+        int index = (int) (hash >>> (64 - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        return new Observation(REGISTER_PREFIX + index, rank);
+    }
+
+    public static long estimate(Map<String, Integer> registers) {
+        if (registers == null || registers.isEmpty()) {
+            return 0;
+        }
+        int zeros = REGISTERS;
+        double sum = 0;
+        for (Integer rank : registers.values()) {
+            if (rank != null && rank > 0) {
+                zeros--;
+                sum += Math.pow(2, -rank);
+            }
+        }
+        sum += zeros;
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
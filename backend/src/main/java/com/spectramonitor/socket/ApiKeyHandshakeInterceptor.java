@@ -0,0 +1,57 @@
+package com.spectramonitor.socket;
+
+import com.spectramonitor.service.ApiKeyCache;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Resolves the API key once per WebSocket connection. Browsers cannot set
+ * headers on a WebSocket, so the key may also be passed as the
+ * {@code apiKey} query parameter. Connections without a key are accepted as
+ * viewers; with auth enabled they cannot send device events.
+ */
+@Component
+public class ApiKeyHandshakeInterceptor implements HandshakeInterceptor {
+
+    static final String APP_ID_ATTR = "appId";
+
+    private final ApiKeyCache apiKeyCache;
+
+    public ApiKeyHandshakeInterceptor(ApiKeyCache apiKeyCache) {
+        this.apiKeyCache = apiKeyCache;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (!apiKeyCache.isEnabled()) {
+            return true;
+        }
+        String apiKey = request.getHeaders().getFirst("X-Api-Key");
+        if (apiKey == null) {
+            apiKey = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("apiKey");
+        }
+        if (apiKey == null || apiKey.isEmpty()) {
+            return true;
+        }
+        String appId = apiKeyCache.appIdFor(apiKey);
+        if (appId == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(APP_ID_ATTR, appId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
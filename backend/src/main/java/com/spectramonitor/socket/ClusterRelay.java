@@ -0,0 +1,74 @@
+package com.spectramonitor.socket;
+
+import com.spectramonitor.cluster.ClusterBus;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connects this node's rooms to the cluster bus: advertises which rooms
+ * have local members, and hands events published on other nodes to local
+ * sessions.
+ */
+@Component
+public class ClusterRelay implements ClusterBus.Listener, RoomRegistry.RoomListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRelay.class);
+
+    private final ClusterBus clusterBus;
+    private final RoomRegistry roomRegistry;
+    private final FanoutEngine fanoutEngine;
+    private final SignalHandler signalHandler;
+    private final ReentrantLock interestLock = new ReentrantLock();
+
+    public ClusterRelay(ClusterBus clusterBus, RoomRegistry roomRegistry, FanoutEngine fanoutEngine,
+                        SignalHandler signalHandler) {
+        this.clusterBus = clusterBus;
+        this.roomRegistry = roomRegistry;
+        this.fanoutEngine = fanoutEngine;
+        this.signalHandler = signalHandler;
+    }
+
+    @PostConstruct
+    public void start() {
+        roomRegistry.setListener(this);
+        clusterBus.start(this);
+    }
+
+    /**
+     * Advertises the room's current state rather than the change that was
+     * reported. Under the lock, the last notification for a room always
+     * reads the membership left by the last join or leave.
+     */
+    @Override
+    public void roomChanged(String room) {
+        interestLock.lock();
+        try {
+            clusterBus.setInterest(room, !roomRegistry.members(room).isEmpty());
+        } finally {
+            interestLock.unlock();
+        }
+    }
+
+    @Override
+    public void onEvent(String room, byte[] envelope) {
+        TextMessage message = new TextMessage(envelope);
+        fanoutEngine.sendAll(room == null ? roomRegistry.allSessions() : roomRegistry.members(room), message);
+    }
+
+    @Override
+    public void onScreenFrame(byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        try {
+            signalHandler.deliverScreenFrame(ScreenFrameCodec.readHeader(buffer), buffer);
+        } catch (IllegalArgumentException | IOException e) {
+            logger.debug("Dropping screen frame from cluster: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.spectramonitor.socket;
+
+import com.spectramonitor.cluster.ClusterBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+/**
+ * Publishes server events to rooms or to every connected client, on this
+ * node and on the other nodes of the cluster. Each event is serialized
+ * once and each session receives it at most once; events for a room are
+ * only forwarded to nodes with members in it.
+ */
+@Component
+public class EventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventBroadcaster.class);
+
+    private final RoomRegistry roomRegistry;
+    private final FanoutEngine fanoutEngine;
+    private final ClusterBus clusterBus;
+
+    public EventBroadcaster(RoomRegistry roomRegistry, FanoutEngine fanoutEngine, ClusterBus clusterBus) {
+        this.roomRegistry = roomRegistry;
+        this.fanoutEngine = fanoutEngine;
+        this.clusterBus = clusterBus;
+    }
+
+    public void toRoom(String room, String event, Object data) {
+        Set<WebSocketSession> sessions = roomRegistry.members(room);
+        boolean remote = clusterBus.hasRemoteInterest(room);
+        if (sessions.isEmpty() && !remote) {
+            return;
+        }
+        TextMessage message = serialize(event, data);
+        if (message == null) {
+            return;
+        }
+        if (!sessions.isEmpty()) {
+            fanoutEngine.sendAll(sessions, message);
+        }
+        if (remote) {
+            clusterBus.publishEvent(room, message.asBytes());
+        }
+    }
+
+    public void toAll(String event, Object data) {
+        TextMessage message = serialize(event, data);
+        if (message != null) {
+            fanoutEngine.sendAll(roomRegistry.allSessions(), message);
+            clusterBus.publishEvent(null, message.asBytes());
+        }
+    }
+
+    public boolean hasRemoteViewers(String deviceId) {
+        return clusterBus.hasRemoteInterest(RoomRegistry.deviceRoom(deviceId));
+    }
+
+    /**
+     * Forwards a binary screen frame to the other nodes with viewers of the
+     * device; local viewers are served by the caller.
+     */
+    public void forwardScreenFrame(String deviceId, ByteBuffer frame) {
+        String room = RoomRegistry.deviceRoom(deviceId);
+        if (!clusterBus.hasRemoteInterest(room)) {
+            return;
+        }
+        ByteBuffer view = frame.duplicate();
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        clusterBus.publishScreenFrame(room, deviceId, bytes);
+    }
+
+    private TextMessage serialize(String event, Object data) {
+        try {
+            return fanoutEngine.serialize(event, data);
+        } catch (IOException e) {
+            logger.error("Error serializing {}: {}", event, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.spectramonitor.socket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.websocket.Session;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Outbound side of the WebSocket layer. Events are serialized once into a
+ * shared message and handed to per-session bounded queues, so the ingest
+ * thread never blocks on a client. Each queue is drained by its own virtual
+ * thread: a client that stops reading only holds its own sender, and a send
+ * blocked for longer than {@code spectra.ws.outbound.send-time-limit-ms}
+ * fails and closes the session.
+ */
+@Component
+public class FanoutEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanoutEngine.class);
+
+    public enum OverflowPolicy {
+        /** Discard the oldest queued message. */
+        DROP_OLDEST,
+        /** Discard the message being sent. */
+        DROP_NEWEST,
+        /** Close the session; the client is expected to reconnect. */
+        DISCONNECT
+    }
+
+    private static final int DRAIN_BATCH = 64;
+    /** Tomcat's limit for a blocking WebSocket send, read from the session's user properties. */
+    static final String BLOCKING_SEND_TIMEOUT_PROPERTY = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, OutboundQueue> queues = new ConcurrentHashMap<>();
+    private final ExecutorService senders;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long sendTimeLimitMs;
+
+    public FanoutEngine(@Value("${spectra.ws.outbound.capacity:256}") int capacity,
+                        @Value("${spectra.ws.outbound.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                        @Value("${spectra.ws.outbound.send-time-limit-ms:5000}") long sendTimeLimitMs) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        // Virtual whether or not spring.threads.virtual.enabled is set: a shared pool of
+        // platform threads is exhausted by as many stalled clients as it has threads.
+        // One drain at a time per session already bounds the concurrency.
+        this.senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-sender-", 1).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    public void register(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session container = nativeSession.getNativeSession(Session.class);
+            if (container != null) {
+                container.getUserProperties().put(BLOCKING_SEND_TIMEOUT_PROPERTY, sendTimeLimitMs);
+            }
+        }
+        queues.put(session.getId(), new OutboundQueue(session, capacity));
+    }
+
+    public void unregister(WebSocketSession session) {
+        OutboundQueue queue = queues.remove(session.getId());
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    /**
+     * Serializes an event envelope once; the result can be sent to any
+     * number of sessions.
+     */
+    public TextMessage serialize(String event, Object data) throws JsonProcessingException {
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("event", event);
+        envelope.put("data", data);
+        return new TextMessage(objectMapper.writeValueAsString(envelope));
+    }
+
+    public void send(WebSocketSession session, WebSocketMessage<?> message) {
+        send(session, message, null);
+    }
+
+    /**
+     * Queues a message for a session. Messages sharing a conflation key
+     * replace each other while still queued.
+     */
+    public void send(WebSocketSession session, WebSocketMessage<?> message, String conflationKey) {
+        OutboundQueue queue = queues.get(session.getId());
+        if (queue == null || !session.isOpen()) {
+            return;
+        }
+        switch (queue.offer(message, conflationKey, overflowPolicy == OverflowPolicy.DROP_OLDEST)) {
+            case SCHEDULE:
+                senders.execute(() -> drain(queue));
+                break;
+            case OVERFLOW:
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    unregister(session);
+                    senders.execute(() -> closeSlowConsumer(session, "Outbound queue overflow"));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void sendAll(Collection<WebSocketSession> sessions, WebSocketMessage<?> message) {
+        for (WebSocketSession session : sessions) {
+            send(session, message, null);
+        }
+    }
+
+    private void drain(OutboundQueue queue) {
+        WebSocketSession session = queue.getSession();
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            WebSocketMessage<?> message = queue.poll();
+            if (message == null) {
+                return;
+            }
+            try {
+                session.sendMessage(message);
+                queue.recordSent();
+            } catch (IOException | IllegalStateException e) {
+                // Includes sends that hit the time limit: the client has stopped reading.
+                logger.debug("Error sending message to {}: {}", session.getId(), e.getMessage());
+                unregister(session);
+                closeSlowConsumer(session, "Send failed or timed out");
+                return;
+            }
+        }
+        // End this task and continue in a fresh one, so a busy session does not keep one thread forever.
+        senders.execute(() -> drain(queue));
+    }
+
+    private void closeSlowConsumer(WebSocketSession session, String reason) {
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE.withReason(reason));
+        } catch (IOException e) {
+            logger.debug("Error closing slow session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    /** Messages waiting in all outbound queues. */
+    public int queuedMessages() {
+        int total = 0;
+        for (OutboundQueue queue : queues.values()) {
+            total += queue.depth();
+        }
+        return total;
+    }
+
+    public int sessionCount() {
+        return queues.size();
+    }
+
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (OutboundQueue queue : queues.values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("sessionId", queue.getSession().getId());
+            entry.put("queueDepth", queue.depth());
+            entry.put("sent", queue.getSent());
+            entry.put("dropped", queue.getDropped());
+            entry.put("conflated", queue.getConflated());
+            result.add(entry);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,57 @@
+package com.spectramonitor.socket;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Payload types of the events clients send on {@code /ws}. Each event's
+ * {@code data} object is bound straight to one of these records; fields
+ * not listed here are skipped.
+ */
+public final class InboundEvents {
+
+    private InboundEvents() {
+    }
+
+    /** {@code leave_device_session}, {@code device:heartbeat}. */
+    public record DeviceRef(String deviceId) {
+    }
+
+    public record JoinDeviceSession(String deviceId, Boolean binaryFrames) {
+    }
+
+    /** {@code join_app}, {@code leave_app}. */
+    public record AppRef(String appId) {
+    }
+
+    public record DeviceConnect(String id, String appId, String model, String osVersion, String userName) {
+    }
+
+    public record DeviceLog(String deviceId, String level, String message, String tag, String timestamp) {
+    }
+
+    /** {@code device:metric}; absent fields take the REST defaults. */
+    public record DeviceMetric(String deviceId, Double cpuUsage, Double memoryUsage, Double batteryLevel,
+                               Integer temperature, Long fps, Long uploadSpeed, Long downloadSpeed, Date timestamp) {
+    }
+
+    /** {@code device:network}; requests without a url are ignored. */
+    public record DeviceNetworkRequest(String deviceId, String method, String url, Integer statusCode, Long duration,
+                                       Long requestSize, Long responseSize, String error, Date timestamp) {
+    }
+
+    public record ScreenFrame(String deviceId, String imageBase64) {
+    }
+
+    static final Map<String, Class<?>> TYPES = Map.of(
+            "join_device_session", JoinDeviceSession.class,
+            "leave_device_session", DeviceRef.class,
+            "join_app", AppRef.class,
+            "leave_app", AppRef.class,
+            "device:connect", DeviceConnect.class,
+            "device:heartbeat", DeviceRef.class,
+            "device:log", DeviceLog.class,
+            "device:metric", DeviceMetric.class,
+            "device:network", DeviceNetworkRequest.class,
+            "device:screen_frame", ScreenFrame.class);
+}
@@ -0,0 +1,54 @@
+package com.spectramonitor.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-session inbound queue that runs message handling off the container
+ * thread while keeping a session's messages in order: at most one task per
+ * mailbox runs at a time, and it keeps draining until the mailbox is empty.
+ */
+class InboundMailbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboundMailbox.class);
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Executor executor;
+    private final int capacity;
+
+    InboundMailbox(Executor executor, int capacity) {
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return false if the mailbox is full and the task was not queued
+     */
+    boolean offer(Runnable task) {
+        if (pending.get() >= capacity) {
+            return false;
+        }
+        tasks.add(task);
+        if (pending.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+        return true;
+    }
+
+    private void drain() {
+        do {
+            Runnable task = tasks.poll();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.warn("Inbound task failed: {}", e.getMessage());
+            }
+        } while (pending.decrementAndGet() > 0);
+    }
+}
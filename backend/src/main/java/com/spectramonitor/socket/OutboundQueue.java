@@ -0,0 +1,148 @@
+package com.spectramonitor.socket;
+
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded outbound buffer for one session. Producers enqueue and return;
+ * at most one sender thread drains a given queue at a time, so messages
+ * to a session stay ordered and one slow client only delays itself.
+ */
+class OutboundQueue {
+
+    enum Offer { QUEUED, SCHEDULE, REJECTED, OVERFLOW }
+
+    private static final class Pending {
+        private WebSocketMessage<?> message;
+        private final String conflationKey;
+
+        Pending(WebSocketMessage<?> message, String conflationKey) {
+            this.message = message;
+            this.conflationKey = conflationKey;
+        }
+    }
+
+    private final WebSocketSession session;
+    private final int capacity;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final Map<String, Pending> queuedByKey = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean draining;
+    private volatile boolean closed;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+
+    OutboundQueue(WebSocketSession session, int capacity) {
+        this.session = session;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a message. A message with a conflation key replaces a queued,
+     * not yet sent message with the same key (e.g. a stale screen frame).
+     *
+     * @return SCHEDULE when the caller must start a drain, OVERFLOW when the
+     *         queue is full and the caller has to apply its overflow policy
+     */
+    Offer offer(WebSocketMessage<?> message, String conflationKey, boolean dropOldestOnOverflow) {
+        lock.lock();
+        try {
+            if (closed) {
+                return Offer.REJECTED;
+            }
+            if (conflationKey != null) {
+                Pending queued = queuedByKey.get(conflationKey);
+                if (queued != null) {
+                    queued.message = message;
+                    conflated.incrementAndGet();
+                    return Offer.QUEUED;
+                }
+            }
+            if (queue.size() >= capacity) {
+                if (!dropOldestOnOverflow) {
+                    dropped.incrementAndGet();
+                    return Offer.OVERFLOW;
+                }
+                forget(queue.poll());
+                dropped.incrementAndGet();
+            }
+            Pending pending = new Pending(message, conflationKey);
+            queue.add(pending);
+            if (conflationKey != null) {
+                queuedByKey.put(conflationKey, pending);
+            }
+            if (draining) {
+                return Offer.QUEUED;
+            }
+            draining = true;
+            return Offer.SCHEDULE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next message, or clears the draining flag when empty.
+     */
+    WebSocketMessage<?> poll() {
+        lock.lock();
+        try {
+            Pending pending = queue.poll();
+            if (pending == null || closed) {
+                draining = false;
+                return null;
+            }
+            forget(pending);
+            return pending.message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forget(Pending pending) {
+        if (pending != null && pending.conflationKey != null) {
+            queuedByKey.remove(pending.conflationKey, pending);
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            dropped.addAndGet(queue.size());
+            queue.clear();
+            queuedByKey.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void recordSent() {
+        sent.incrementAndGet();
+    }
+
+    WebSocketSession getSession() { return session; }
+
+    int depth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getSent() { return sent.get(); }
+
+    long getDropped() { return dropped.get(); }
+
+    long getConflated() { return conflated.get(); }
+}
@@ -0,0 +1,130 @@
+package com.spectramonitor.socket;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Two-way index of WebSocket sessions and the rooms they joined. Leaving
+ * or disconnecting touches only the session's own rooms, and a room is
+ * removed as soon as its last member leaves. Room names come from
+ * client-supplied ids, so names longer than {@link #MAX_ROOM_LENGTH} are
+ * refused.
+ */
+@Component
+public class RoomRegistry {
+
+    /** Told after a room gains its first member or loses its last one. */
+    public interface RoomListener {
+        void roomChanged(String room);
+    }
+
+    public static final int MAX_ROOM_LENGTH = 256;
+
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<WebSocketSession>> sessionsByRoom = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> roomsBySession = new ConcurrentHashMap<>();
+    private volatile RoomListener listener;
+
+    public static String deviceRoom(String deviceId) {
+        return "session:" + deviceId;
+    }
+
+    public static String appRoom(String appId) {
+        return "app:" + appId;
+    }
+
+    public void setListener(RoomListener listener) {
+        this.listener = listener;
+    }
+
+    public void register(WebSocketSession session) {
+        sessions.put(session.getId(), session);
+    }
+
+    /** @return false if the room name is too long; the session joins nothing */
+    public boolean join(WebSocketSession session, String room) {
+        if (room.length() > MAX_ROOM_LENGTH) {
+            return false;
+        }
+        boolean[] created = new boolean[1];
+        sessionsByRoom.compute(room, (key, members) -> {
+            created[0] = members == null;
+            Set<WebSocketSession> result = members != null ? members : ConcurrentHashMap.newKeySet();
+            result.add(session);
+            return result;
+        });
+        roomsBySession.computeIfAbsent(session.getId(), key -> ConcurrentHashMap.newKeySet()).add(room);
+        if (created[0]) {
+            notifyChanged(room);
+        }
+        return true;
+    }
+
+    public void leave(WebSocketSession session, String room) {
+        Set<String> rooms = roomsBySession.get(session.getId());
+        if (rooms != null) {
+            rooms.remove(room);
+        }
+        removeMember(room, session);
+    }
+
+    /**
+     * Forgets a closed session, visiting only the rooms it had joined.
+     */
+    public void remove(WebSocketSession session) {
+        sessions.remove(session.getId());
+        Set<String> rooms = roomsBySession.remove(session.getId());
+        if (rooms == null) {
+            return;
+        }
+        for (String room : rooms) {
+            removeMember(room, session);
+        }
+    }
+
+    private void removeMember(String room, WebSocketSession session) {
+        boolean[] emptied = new boolean[1];
+        sessionsByRoom.computeIfPresent(room, (key, members) -> {
+            members.remove(session);
+            emptied[0] = members.isEmpty();
+            return emptied[0] ? null : members;
+        });
+        if (emptied[0]) {
+            notifyChanged(room);
+        }
+    }
+
+    private void notifyChanged(String room) {
+        RoomListener current = listener;
+        if (current != null) {
+            current.roomChanged(room);
+        }
+    }
+
+    public Set<WebSocketSession> members(String room) {
+        Set<WebSocketSession> members = sessionsByRoom.get(room);
+        return members != null ? members : Set.of();
+    }
+
+    /**
+     * Every connected session exactly once, regardless of room membership.
+     */
+    public Collection<WebSocketSession> allSessions() {
+        return sessions.values();
+    }
+
+    public int roomCount() {
+        return sessionsByRoom.size();
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "sessions", sessions.size(),
+                "rooms", sessionsByRoom.size());
+    }
+}
@@ -0,0 +1,94 @@
+package com.spectramonitor.socket;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary screen frame layout (big endian):
+ * <pre>
+ *   u8   version (1)
+ *   u8   codec   (0 = jpeg, 1 = png, 2 = webp)
+ *   i64  sequence
+ *   u16  deviceId length, followed by the UTF-8 deviceId
+ *   ...  image bytes
+ * </pre>
+ * Frames are relayed to viewers byte for byte, so the header is only ever
+ * read, never rewritten.
+ */
+public final class ScreenFrameCodec {
+
+    public static final byte VERSION = 1;
+    public static final int FIXED_HEADER_BYTES = 12;
+
+    public enum Codec {
+        JPEG("image/jpeg"), PNG("image/png"), WEBP("image/webp");
+
+        private final String mimeType;
+
+        Codec(String mimeType) {
+            this.mimeType = mimeType;
+        }
+
+        public String getMimeType() { return mimeType; }
+
+        static Codec of(int id) {
+            Codec[] codecs = values();
+            if (id < 0 || id >= codecs.length) {
+                throw new IllegalArgumentException("Unknown frame codec " + id);
+            }
+            return codecs[id];
+        }
+    }
+
+    public record Header(String deviceId, long sequence, Codec codec, int imageOffset) {
+    }
+
+    private ScreenFrameCodec() {
+    }
+
+    /**
+     * Reads the header without consuming the buffer or copying the image.
+     */
+    public static Header readHeader(ByteBuffer frame) {
+        ByteBuffer view = frame.duplicate();
+        if (view.remaining() < FIXED_HEADER_BYTES) {
+            throw new IllegalArgumentException("Frame shorter than header");
+        }
+        byte version = view.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported frame version " + version);
+        }
+        Codec codec = Codec.of(view.get());
+        long sequence = view.getLong();
+        int idLength = Short.toUnsignedInt(view.getShort());
+        if (idLength == 0 || view.remaining() < idLength) {
+            throw new IllegalArgumentException("Invalid deviceId length " + idLength);
+        }
+        byte[] id = new byte[idLength];
+        view.get(id);
+        return new Header(new String(id, StandardCharsets.UTF_8), sequence, codec, view.position() - frame.position());
+    }
+
+    public static ByteBuffer encode(String deviceId, long sequence, Codec codec, byte[] image) {
+        byte[] id = deviceId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(FIXED_HEADER_BYTES + id.length + image.length);
+        frame.put(VERSION)
+                .put((byte) codec.ordinal())
+                .putLong(sequence)
+                .putShort((short) id.length)
+                .put(id)
+                .put(image);
+        return frame.flip();
+    }
+
+    /**
+     * Copies out the image bytes, for viewers that still need base64 text.
+     */
+    public static byte[] image(ByteBuffer frame, Header header) {
+        ByteBuffer view = frame.duplicate();
+        view.position(view.position() + header.imageOffset());
+        byte[] image = new byte[view.remaining()];
+        view.get(image);
+        return image;
+    }
+}
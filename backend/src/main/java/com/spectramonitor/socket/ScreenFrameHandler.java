@@ -0,0 +1,73 @@
+package com.spectramonitor.socket;
+
+import com.spectramonitor.service.ApiKeyCache;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Receives raw screen frames from devices on {@code /ws/screen}. Frames are
+ * validated and relayed to the device's viewers without re-encoding; see
+ * {@link ScreenFrameCodec} for the layout.
+ */
+@Component
+public class ScreenFrameHandler extends BinaryWebSocketHandler {
+
+    private static final String VERIFIED_DEVICES_ATTR = "verifiedDevices";
+
+    private final SignalHandler signalHandler;
+    private final ApiKeyCache apiKeyCache;
+
+    public ScreenFrameHandler(SignalHandler signalHandler, ApiKeyCache apiKeyCache) {
+        this.signalHandler = signalHandler;
+        this.apiKeyCache = apiKeyCache;
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        ByteBuffer frame = message.getPayload();
+        ScreenFrameCodec.Header header;
+        try {
+            header = ScreenFrameCodec.readHeader(frame);
+        } catch (IllegalArgumentException e) {
+            session.close(CloseStatus.BAD_DATA.withReason(e.getMessage()));
+            return;
+        }
+        if (!authorized(session, header.deviceId())) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("device not authorized"));
+            return;
+        }
+        signalHandler.relayScreenFrame(header, frame);
+    }
+
+    /**
+     * Devices are checked against the session's app once and then
+     * remembered on the session, so steady-state frames cost a set lookup.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean authorized(WebSocketSession session, String deviceId) {
+        if (!apiKeyCache.isEnabled()) {
+            return true;
+        }
+        String appId = (String) session.getAttributes().get(ApiKeyHandshakeInterceptor.APP_ID_ATTR);
+        if (appId == null) {
+            return false;
+        }
+        Set<String> verified = (Set<String>) session.getAttributes()
+                .computeIfAbsent(VERIFIED_DEVICES_ATTR, k -> ConcurrentHashMap.newKeySet());
+        if (verified.contains(deviceId)) {
+            return true;
+        }
+        if (apiKeyCache.checkDevice(appId, deviceId) != ApiKeyCache.Outcome.OK) {
+            return false;
+        }
+        verified.add(deviceId);
+        return true;
+    }
+}
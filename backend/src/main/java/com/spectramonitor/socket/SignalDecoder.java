@@ -0,0 +1,104 @@
+package com.spectramonitor.socket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes {@code {"event": ..., "data": {...}}} envelopes without building
+ * a tree: the envelope is walked with the streaming parser and {@code data}
+ * is bound directly to the event's record in {@link InboundEvents} by a
+ * shared {@link ObjectReader}. The same walk handles JSON text and CBOR.
+ */
+public final class SignalDecoder {
+
+    /** A decoded envelope; {@code payload} is null for unknown events or a missing {@code data}. */
+    public record Decoded(String event, Object payload) {
+    }
+
+    private final JsonFactory jsonFactory;
+    private final CBORFactory cborFactory = new CBORFactory();
+    private final Map<String, ObjectReader> readers = new HashMap<>();
+
+    public SignalDecoder() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.jsonFactory = objectMapper.getFactory();
+        InboundEvents.TYPES.forEach((event, type) -> readers.put(event, objectMapper.readerFor(type)));
+    }
+
+    public Decoded decode(String text) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(text)) {
+            return decode(parser);
+        }
+    }
+
+    public Decoded decodeCbor(ByteBuffer buffer) throws IOException {
+        byte[] bytes;
+        int offset;
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+        } else {
+            bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            offset = 0;
+        }
+        try (JsonParser parser = cborFactory.createParser(bytes, offset, buffer.remaining())) {
+            return decode(parser);
+        }
+    }
+
+    private Decoded decode(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "envelope must be an object");
+        }
+        String event = null;
+        Object payload = null;
+        TokenBuffer early = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("event".equals(field)) {
+                event = parser.getValueAsString();
+            } else if ("data".equals(field)) {
+                if (event != null) {
+                    payload = bind(event, parser);
+                } else {
+                    // "data" came first; keep its tokens until the event name is known.
+                    early = new TokenBuffer(parser);
+                    early.copyCurrentStructure(parser);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (early != null && event != null) {
+            try (JsonParser buffered = early.asParser()) {
+                buffered.nextToken();
+                payload = bind(event, buffered);
+            }
+        }
+        return new Decoded(event, payload);
+    }
+
+    private Object bind(String event, JsonParser parser) throws IOException {
+        ObjectReader reader = readers.get(event);
+        if (reader == null || parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        return reader.readValue(parser);
+    }
+}
@@ -1,159 +1,540 @@
 package com.spectramonitor.socket;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.spectramonitor.model.Device;
+import com.spectramonitor.anomaly.AnomalyEngine;
 import com.spectramonitor.model.LogEntry;
-import com.spectramonitor.repository.DeviceRepository;
-import com.spectramonitor.repository.LogRepository;
+import com.spectramonitor.model.NetworkRequest;
+import com.spectramonitor.model.PerformanceMetric;
+import com.spectramonitor.service.ApiKeyCache;
+import com.spectramonitor.service.DeviceHealthEngine;
+import com.spectramonitor.service.IngestPipeline;
+import com.spectramonitor.service.IngestRateLimiter;
+import com.spectramonitor.service.NetworkAnalyticsService;
+import com.spectramonitor.service.PresenceTracker;
+import com.spectramonitor.service.RecentTelemetryCache;
+import com.spectramonitor.socket.InboundEvents.AppRef;
+import com.spectramonitor.socket.InboundEvents.DeviceConnect;
+import com.spectramonitor.socket.InboundEvents.DeviceLog;
+import com.spectramonitor.socket.InboundEvents.DeviceMetric;
+import com.spectramonitor.socket.InboundEvents.DeviceNetworkRequest;
+import com.spectramonitor.socket.InboundEvents.DeviceRef;
+import com.spectramonitor.socket.InboundEvents.JoinDeviceSession;
+import com.spectramonitor.socket.InboundEvents.ScreenFrame;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
-import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class SignalHandler extends TextWebSocketHandler {
 
-    private final DeviceRepository deviceRepository;
-    private final LogRepository logRepository;
-    private final ObjectMapper objectMapper;
-    private final Map<String, Set<WebSocketSession>> sessionsByRoom = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(SignalHandler.class);
+
+    static final String BINARY_FRAMES_ATTR = "binaryFrames";
+    static final String DEVICE_ID_ATTR = "deviceId";
+    static final String DEVICE_APP_ATTR = "deviceAppId";
+    static final String THROTTLED_UNTIL_ATTR = "throttledUntil";
+    static final String ENCODING_ATTR = "encoding";
+    static final String MAILBOX_ATTR = "inboundMailbox";
+
+    private final PresenceTracker presenceTracker;
+    private final IngestPipeline ingestPipeline;
+    private final RecentTelemetryCache recentTelemetryCache;
+    private final FanoutEngine fanoutEngine;
+    private final RoomRegistry roomRegistry;
+    private final EventBroadcaster eventBroadcaster;
+    private final AnomalyEngine anomalyEngine;
+    private final ApiKeyCache apiKeyCache;
+    private final IngestRateLimiter rateLimiter;
+    private final NetworkAnalyticsService networkAnalyticsService;
+    private final DeviceHealthEngine deviceHealthEngine;
+    private final SignalDecoder decoder = new SignalDecoder();
+    private final Map<String, Timer> eventTimers = new HashMap<>();
+    private final Timer otherEventTimer;
+    private final Counter errorCounter;
+    private final Counter rejectedCounter;
+    private final ExecutorService inboundExecutor;
+    private final int mailboxCapacity;
+    private final AtomicLong legacyFrameSequence = new AtomicLong();
 
     @Autowired
-    public SignalHandler(DeviceRepository deviceRepository, LogRepository logRepository) {
-        this.deviceRepository = deviceRepository;
-        this.logRepository = logRepository;
-        this.objectMapper = new ObjectMapper();
+    public SignalHandler(PresenceTracker presenceTracker, IngestPipeline ingestPipeline,
+                         RecentTelemetryCache recentTelemetryCache, FanoutEngine fanoutEngine,
+                         RoomRegistry roomRegistry, EventBroadcaster eventBroadcaster,
+                         AnomalyEngine anomalyEngine, ApiKeyCache apiKeyCache,
+                         IngestRateLimiter rateLimiter, NetworkAnalyticsService networkAnalyticsService,
+                         DeviceHealthEngine deviceHealthEngine, MeterRegistry meterRegistry,
+                         @Value("${spectra.ws.inbound.offload:${spring.threads.virtual.enabled:false}}") boolean offload,
+                         @Value("${spectra.ws.inbound.mailbox-capacity:1024}") int mailboxCapacity) {
+        this.presenceTracker = presenceTracker;
+        this.ingestPipeline = ingestPipeline;
+        this.recentTelemetryCache = recentTelemetryCache;
+        this.fanoutEngine = fanoutEngine;
+        this.roomRegistry = roomRegistry;
+        this.eventBroadcaster = eventBroadcaster;
+        this.anomalyEngine = anomalyEngine;
+        this.apiKeyCache = apiKeyCache;
+        this.rateLimiter = rateLimiter;
+        this.networkAnalyticsService = networkAnalyticsService;
+        this.deviceHealthEngine = deviceHealthEngine;
+        // Timers are registered up front for the known events so client-chosen names cannot grow the tag set.
+        for (String event : InboundEvents.TYPES.keySet()) {
+            eventTimers.put(event, eventTimer(meterRegistry, event));
+        }
+        this.otherEventTimer = eventTimer(meterRegistry, "other");
+        this.errorCounter = Counter.builder("spectra.ws.errors")
+                .description("Inbound WebSocket messages that failed to parse or handle")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("spectra.ws.inbound.rejected")
+                .description("Inbound WebSocket messages dropped because the session mailbox was full")
+                .register(meterRegistry);
+        this.inboundExecutor = offload
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-inbound-", 1).factory())
+                : null;
+        this.mailboxCapacity = mailboxCapacity;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (inboundExecutor != null) {
+            inboundExecutor.shutdown();
+        }
+    }
+
+    private static Timer eventTimer(MeterRegistry meterRegistry, String event) {
+        return Timer.builder("spectra.ws.events")
+                .description("Handling time of inbound WebSocket events")
+                .tag("event", event)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        System.out.println("WebSocket client connected: " + session.getId());
+        logger.debug("WebSocket client connected: {}", session.getId());
+        if ("cbor".equals(queryParam(session.getUri(), "encoding"))) {
+            session.getAttributes().put(ENCODING_ATTR, "cbor");
+        }
+        if (inboundExecutor != null) {
+            session.getAttributes().put(MAILBOX_ATTR, new InboundMailbox(inboundExecutor, mailboxCapacity));
+        }
+        fanoutEngine.register(session);
+        roomRegistry.register(session);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        System.out.println("WebSocket client disconnected: " + session.getId());
-        sessionsByRoom.values().forEach(sessions -> sessions.remove(session));
+        logger.debug("WebSocket client disconnected: {}", session.getId());
+        fanoutEngine.unregister(session);
+        roomRegistry.remove(session);
+        String deviceId = (String) session.getAttributes().get(DEVICE_ID_ATTR);
+        if (deviceId != null) {
+            presenceTracker.disconnect(deviceId);
+        }
     }
 
     @Override
-    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        InboundMailbox mailbox = (InboundMailbox) session.getAttributes().get(MAILBOX_ATTR);
+        if (mailbox == null) {
+            processText(session, message);
+        } else if (!mailbox.offer(() -> processText(session, message))) {
+            rejectedCounter.increment();
+        }
+    }
+
+    private void processText(WebSocketSession session, TextMessage message) {
+        long start = System.nanoTime();
+        SignalDecoder.Decoded decoded = null;
         try {
-            Map<String, Object> data = objectMapper.readValue(message.getPayload(), Map.class);
-            String event = (String) data.get("event");
-            Map<String, Object> payload = (Map<String, Object>) data.get("data");
-
-            switch (event) {
-                case "join_device_session":
-                    handleJoinDeviceSession(session, (String) payload.get("deviceId"));
-                    break;
-                case "device:connect":
-                    handleDeviceConnect(session, payload);
-                    break;
-                case "device:log":
-                    handleDeviceLog(session, payload);
-                    break;
-                case "device:screen_frame":
-                    handleScreenFrame(session, payload);
-                    break;
+            decoded = decoder.decode(message.getPayload());
+            dispatch(session, decoded);
+        } catch (Exception e) {
+            errorCounter.increment();
+            logger.warn("Error handling WebSocket message: {}", e.getMessage());
+        } finally {
+            record(decoded, start);
+        }
+    }
+
+    /**
+     * Sessions that connected with {@code ?encoding=cbor} may send the same
+     * envelopes CBOR-encoded in binary messages. Other sessions are closed,
+     * as before.
+     */
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        if (!"cbor".equals(session.getAttributes().get(ENCODING_ATTR))) {
+            try {
+                session.close(CloseStatus.NOT_ACCEPTABLE.withReason("Binary messages require encoding=cbor"));
+            } catch (IOException e) {
+                logger.debug("Error closing session {}: {}", session.getId(), e.getMessage());
             }
+            return;
+        }
+        InboundMailbox mailbox = (InboundMailbox) session.getAttributes().get(MAILBOX_ATTR);
+        if (mailbox == null) {
+            processCbor(session, message.getPayload());
+            return;
+        }
+        // The container may reuse the buffer once this method returns.
+        ByteBuffer copy = ByteBuffer.allocate(message.getPayloadLength()).put(message.getPayload().duplicate()).flip();
+        if (!mailbox.offer(() -> processCbor(session, copy))) {
+            rejectedCounter.increment();
+        }
+    }
+
+    private void processCbor(WebSocketSession session, ByteBuffer payload) {
+        long start = System.nanoTime();
+        SignalDecoder.Decoded decoded = null;
+        try {
+            decoded = decoder.decodeCbor(payload);
+            dispatch(session, decoded);
         } catch (Exception e) {
-            System.err.println("Error handling WebSocket message: " + e.getMessage());
+            errorCounter.increment();
+            logger.warn("Error handling WebSocket message: {}", e.getMessage());
+        } finally {
+            record(decoded, start);
         }
     }
 
-    private void handleJoinDeviceSession(WebSocketSession session, String deviceId) {
-        String room = "session:" + deviceId;
-        sessionsByRoom.computeIfAbsent(room, k -> ConcurrentHashMap.newKeySet()).add(session);
-        System.out.println("Client " + session.getId() + " joined " + room);
+    private void record(SignalDecoder.Decoded decoded, long start) {
+        Timer timer = decoded == null ? otherEventTimer : eventTimers.getOrDefault(decoded.event(), otherEventTimer);
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
-    private void handleDeviceConnect(WebSocketSession session, Map<String, Object> deviceData) {
-        String deviceId = (String) deviceData.get("id");
-        
-        deviceRepository.findByDeviceIdEquals(deviceId).ifPresentOrElse(
-            device -> {
-                device.setStatus("online");
-                device.setLastSeen(new Date());
-                deviceRepository.save(device);
-            },
-            () -> {
-                Device device = new Device();
-                device.setDeviceId(deviceId);
-                device.setAppId((String) deviceData.get("appId"));
-                device.setModel((String) deviceData.get("model"));
-                device.setOsVersion((String) deviceData.get("osVersion"));
-                device.setUserName((String) deviceData.get("userName"));
-                device.setStatus("online");
-                device.setLastSeen(new Date());
-                deviceRepository.save(device);
+    private void dispatch(WebSocketSession session, SignalDecoder.Decoded decoded) throws IOException {
+        Object payload = decoded.payload();
+        if (payload == null) {
+            return;
+        }
+        switch (decoded.event()) {
+            case "join_device_session":
+                handleJoinDeviceSession(session, (JoinDeviceSession) payload);
+                break;
+            case "leave_device_session":
+                roomRegistry.leave(session, RoomRegistry.deviceRoom(((DeviceRef) payload).deviceId()));
+                break;
+            case "join_app":
+                handleJoinApp(session, ((AppRef) payload).appId());
+                break;
+            case "leave_app":
+                roomRegistry.leave(session, RoomRegistry.appRoom(((AppRef) payload).appId()));
+                break;
+            case "device:connect":
+                handleDeviceConnect(session, (DeviceConnect) payload);
+                break;
+            case "device:heartbeat": {
+                String deviceId = ((DeviceRef) payload).deviceId();
+                if (mayActAs(session, deviceId)) {
+                    presenceTracker.heartbeat(deviceId);
+                }
+                break;
             }
-        );
-        
-        broadcastToAll("device:update", 
-            Map.of("id", deviceId, "status", "online"));
+            case "device:log": {
+                DeviceLog log = (DeviceLog) payload;
+                if (mayActAs(session, log.deviceId()) && admit(session, log.deviceId())) {
+                    handleDeviceLog(log);
+                }
+                break;
+            }
+            case "device:metric": {
+                DeviceMetric metric = (DeviceMetric) payload;
+                if (mayActAs(session, metric.deviceId()) && admit(session, metric.deviceId())) {
+                    handleDeviceMetric(metric);
+                }
+                break;
+            }
+            case "device:network": {
+                DeviceNetworkRequest request = (DeviceNetworkRequest) payload;
+                if (mayActAs(session, request.deviceId()) && admit(session, request.deviceId())) {
+                    handleDeviceNetworkRequest(request);
+                }
+                break;
+            }
+            case "device:screen_frame": {
+                ScreenFrame frame = (ScreenFrame) payload;
+                if (mayActAs(session, frame.deviceId())) {
+                    handleScreenFrame(frame);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void handleJoinDeviceSession(WebSocketSession session, JoinDeviceSession payload) {
+        String deviceId = payload.deviceId();
+        if (Boolean.TRUE.equals(payload.binaryFrames())) {
+            session.getAttributes().put(BINARY_FRAMES_ATTR, true);
+        }
+        String room = RoomRegistry.deviceRoom(deviceId);
+        if (!roomRegistry.join(session, room)) {
+            logger.debug("Client {} sent a device id of {} characters; not joining", session.getId(), deviceId.length());
+            return;
+        }
+        logger.debug("Client {} joined {}", session.getId(), room);
+    }
+
+    /**
+     * Dashboards subscribe to an app to receive its device status updates.
+     */
+    private void handleJoinApp(WebSocketSession session, String appId) {
+        String room = RoomRegistry.appRoom(appId);
+        if (!roomRegistry.join(session, room)) {
+            logger.debug("Client {} sent an app id of {} characters; not joining", session.getId(), appId.length());
+            return;
+        }
+        logger.debug("Client {} joined {}", session.getId(), room);
+    }
+
+    private void handleDeviceConnect(WebSocketSession session, DeviceConnect deviceData) throws IOException {
+        String deviceId = deviceData.id();
+        String appId = deviceData.appId();
+        if (apiKeyCache.isEnabled()) {
+            // The app comes from the key checked at handshake, not from the payload.
+            appId = (String) session.getAttributes().get(ApiKeyHandshakeInterceptor.APP_ID_ATTR);
+            if (appId == null || deviceId == null || apiKeyCache.checkDevice(appId, deviceId) != ApiKeyCache.Outcome.OK) {
+                session.close(CloseStatus.POLICY_VIOLATION.withReason("device not authorized"));
+                return;
+            }
+        }
+        session.getAttributes().put(DEVICE_ID_ATTR, deviceId);
+        if (appId != null) {
+            session.getAttributes().put(DEVICE_APP_ATTR, appId);
+        }
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("model", deviceData.model());
+        metadata.put("osVersion", deviceData.osVersion());
+        metadata.put("userName", deviceData.userName());
+        presenceTracker.connect(deviceId, appId, metadata);
+        deviceHealthEngine.onSessionStart(deviceId);
+    }
+
+    /**
+     * With auth enabled a session may only send events for the device it
+     * connected as; the check is a string compare, done per message.
+     */
+    private boolean mayActAs(WebSocketSession session, String deviceId) {
+        return !apiKeyCache.isEnabled()
+                || (deviceId != null && deviceId.equals(session.getAttributes().get(DEVICE_ID_ATTR)));
+    }
+
+    /**
+     * Charges one log against the device and app budgets. Shed messages are
+     * dropped; the sender gets one {@code ingest:throttled} event per retry
+     * window rather than one per dropped message.
+     */
+    private boolean admit(WebSocketSession session, String deviceId) throws IOException {
+        IngestRateLimiter.Decision decision = rateLimiter.acquire(
+                (String) session.getAttributes().get(DEVICE_APP_ATTR), deviceId, 1);
+        if (decision.allowed()) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Long throttledUntil = (Long) session.getAttributes().get(THROTTLED_UNTIL_ATTR);
+        if (throttledUntil == null || now >= throttledUntil) {
+            session.getAttributes().put(THROTTLED_UNTIL_ATTR, now + decision.retryAfterMs());
+            Map<String, Object> notice = new LinkedHashMap<>();
+            notice.put("deviceId", deviceId);
+            notice.put("scope", decision.scope().name().toLowerCase());
+            notice.put("retryAfterMs", decision.retryAfterMs());
+            fanoutEngine.send(session, fanoutEngine.serialize("ingest:throttled", notice), "ingest:throttled");
+        }
+        return false;
     }
 
-    private void handleDeviceLog(WebSocketSession session, Map<String, Object> logData) {
+    private void handleDeviceLog(DeviceLog logData) {
         LogEntry log = new LogEntry();
-        log.setDeviceId((String) logData.get("deviceId"));
-        log.setLevel((String) logData.get("level"));
-        log.setMessage((String) logData.get("message"));
-        log.setTag((String) logData.get("tag"));
-        log.setTimestamp((String) logData.get("timestamp"));
-        
-        String level = log.getLevel();
-        String message = log.getMessage();
-        log.setIsAnomaly("error".equals(level) || (message != null && message.contains("Exception")));
+        log.setDeviceId(logData.deviceId());
+        log.setLevel(logData.level());
+        log.setMessage(logData.message());
+        log.setTag(logData.tag());
+        log.setTimestamp(logData.timestamp());
         log.setCreatedAt(new Date());
+        anomalyEngine.inspect(log, true);
         
-        LogEntry savedLog = logRepository.save(log);
+        presenceTracker.heartbeat(log.getDeviceId());
+        if (!ingestPipeline.submitLog(log)) {
+            // Dropped by the write queue: don't show dashboards an entry that will never be stored.
+            return;
+        }
+        recentTelemetryCache.appendLog(log);
         
-        broadcastToRoom("session:" + log.getDeviceId(), "log:new", savedLog);
+        eventBroadcaster.toRoom(RoomRegistry.deviceRoom(log.getDeviceId()), "log:new", log);
     }
 
-    private void handleScreenFrame(WebSocketSession session, Map<String, Object> data) {
-        String deviceId = (String) data.get("deviceId");
-        String imageBase64 = (String) data.get("imageBase64");
-        
-        broadcastToRoom("session:" + deviceId, "screen:frame", imageBase64);
-    }
-
-    private void broadcastToRoom(String room, String event, Object data) {
-        Set<WebSocketSession> sessions = sessionsByRoom.get(room);
-        if (sessions != null) {
-            for (WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    try {
-                        Map<String, Object> message = Map.of("event", event, "data", data);
-                        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
-                    } catch (IOException e) {
-                        System.err.println("Error sending message: " + e.getMessage());
-                    }
+    private void handleDeviceMetric(DeviceMetric data) {
+        PerformanceMetric metric = new PerformanceMetric();
+        metric.setDeviceId(data.deviceId());
+        metric.setCpuUsage(Objects.requireNonNullElse(data.cpuUsage(), 0.0));
+        metric.setMemoryUsage(Objects.requireNonNullElse(data.memoryUsage(), 0.0));
+        metric.setBatteryLevel(Objects.requireNonNullElse(data.batteryLevel(), 100.0));
+        metric.setTemperature(Objects.requireNonNullElse(data.temperature(), 35));
+        metric.setFps(Objects.requireNonNullElse(data.fps(), 60L));
+        metric.setUploadSpeed(Objects.requireNonNullElse(data.uploadSpeed(), 0L));
+        metric.setDownloadSpeed(Objects.requireNonNullElse(data.downloadSpeed(), 0L));
+        if (data.timestamp() != null) {
+            metric.setTimestamp(data.timestamp());
+        }
+        anomalyEngine.inspect(metric, true);
+
+        presenceTracker.heartbeat(metric.getDeviceId());
+        if (!ingestPipeline.submitMetric(metric)) {
+            // Dropped by the write queue: keep it out of the cache and health scores, as for logs.
+            return;
+        }
+        recentTelemetryCache.appendMetric(metric);
+        deviceHealthEngine.onMetric(metric);
+    }
+
+    private void handleDeviceNetworkRequest(DeviceNetworkRequest data) {
+        if (data.url() == null || data.url().isEmpty()) {
+            return;
+        }
+        NetworkRequest request = new NetworkRequest();
+        request.setDeviceId(data.deviceId());
+        request.setMethod(Objects.requireNonNullElse(data.method(), "GET"));
+        request.setUrl(data.url());
+        request.setStatusCode(Objects.requireNonNullElse(data.statusCode(), 200));
+        request.setDuration(Objects.requireNonNullElse(data.duration(), 0L));
+        request.setRequestSize(Objects.requireNonNullElse(data.requestSize(), 0L));
+        request.setResponseSize(Objects.requireNonNullElse(data.responseSize(), 0L));
+        request.setError(Objects.requireNonNullElse(data.error(), ""));
+        if (data.timestamp() != null) {
+            request.setTimestamp(data.timestamp());
+        }
+
+        presenceTracker.heartbeat(request.getDeviceId());
+        if (!ingestPipeline.submitNetworkRequest(request)) {
+            // Dropped by the write queue: keep it out of the analytics, as for logs.
+            return;
+        }
+        networkAnalyticsService.record(request);
+        deviceHealthEngine.onNetworkRequest(request);
+    }
+
+    /**
+     * Legacy path for SDKs that still send frames as base64 inside JSON. The
+     * text and binary representations are each built at most once per frame.
+     */
+    private void handleScreenFrame(ScreenFrame data) throws IOException {
+        String deviceId = data.deviceId();
+        String imageBase64 = data.imageBase64();
+        Set<WebSocketSession> viewers = roomRegistry.members(RoomRegistry.deviceRoom(deviceId));
+        boolean remote = eventBroadcaster.hasRemoteViewers(deviceId);
+        if ((viewers.isEmpty() && !remote) || imageBase64 == null) {
+            return;
+        }
+
+        TextMessage text = null;
+        BinaryMessage binary = null;
+        for (WebSocketSession viewer : viewers) {
+            if (!viewer.isOpen()) {
+                continue;
+            }
+            if (wantsBinaryFrames(viewer)) {
+                if (binary == null) {
+                    binary = new BinaryMessage(ScreenFrameCodec.encode(deviceId, legacyFrameSequence.incrementAndGet(),
+                            ScreenFrameCodec.Codec.JPEG, Base64.getDecoder().decode(imageBase64)));
+                }
+                fanoutEngine.send(viewer, new BinaryMessage(binary.getPayload().duplicate()), frameKey(deviceId));
+            } else {
+                if (text == null) {
+                    text = fanoutEngine.serialize("screen:frame", imageBase64);
                 }
+                fanoutEngine.send(viewer, text, frameKey(deviceId));
             }
         }
+        if (remote) {
+            if (binary == null) {
+                binary = new BinaryMessage(ScreenFrameCodec.encode(deviceId, legacyFrameSequence.incrementAndGet(),
+                        ScreenFrameCodec.Codec.JPEG, Base64.getDecoder().decode(imageBase64)));
+            }
+            eventBroadcaster.forwardScreenFrame(deviceId, binary.getPayload());
+        }
+    }
+
+    /**
+     * Relays a binary frame received on the screen socket to viewers on this
+     * node and forwards it to other nodes with viewers.
+     */
+    public void relayScreenFrame(ScreenFrameCodec.Header header, ByteBuffer frame) throws IOException {
+        eventBroadcaster.forwardScreenFrame(header.deviceId(), frame);
+        deliverScreenFrame(header, frame);
     }
 
-    private void broadcastToAll(String event, Object data) {
-        sessionsByRoom.values().forEach(sessions -> {
-            for (WebSocketSession session : sessions) {
-                if (session.isOpen()) {
-                    try {
-                        Map<String, Object> message = Map.of("event", event, "data", data);
-                        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
-                    } catch (IOException e) {
-                        System.err.println("Error sending message: " + e.getMessage());
-                    }
+    /**
+     * Sends a binary frame to this node's viewers of the device. Binary
+     * viewers get a view of the same buffer; text viewers share one base64
+     * message.
+     */
+    public void deliverScreenFrame(ScreenFrameCodec.Header header, ByteBuffer frame) throws IOException {
+        Set<WebSocketSession> viewers = roomRegistry.members(RoomRegistry.deviceRoom(header.deviceId()));
+        if (viewers.isEmpty()) {
+            return;
+        }
+
+        TextMessage text = null;
+        for (WebSocketSession viewer : viewers) {
+            if (!viewer.isOpen()) {
+                continue;
+            }
+            if (wantsBinaryFrames(viewer)) {
+                fanoutEngine.send(viewer, new BinaryMessage(frame.duplicate()), frameKey(header.deviceId()));
+            } else {
+                if (text == null) {
+                    String imageBase64 = Base64.getEncoder().encodeToString(ScreenFrameCodec.image(frame, header));
+                    text = fanoutEngine.serialize("screen:frame", imageBase64);
                 }
+                fanoutEngine.send(viewer, text, frameKey(header.deviceId()));
+            }
+        }
+    }
+
+    private static String queryParam(URI uri, String name) {
+        String query = uri == null ? null : uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
             }
-        });
+        }
+        return null;
+    }
+
+    private static boolean wantsBinaryFrames(WebSocketSession session) {
+        return Boolean.TRUE.equals(session.getAttributes().get(BINARY_FRAMES_ATTR));
+    }
+
+    /**
+     * Queued frames for the same device supersede each other, so a slow
+     * viewer skips to the newest frame instead of falling further behind.
+     */
+    private static String frameKey(String deviceId) {
+        return "frame:" + deviceId;
     }
 }
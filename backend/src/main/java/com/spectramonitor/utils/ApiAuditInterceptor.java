@@ -2,39 +2,60 @@ package com.spectramonitor.utils;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import java.time.Instant;
-
-import static java.lang.System.out;
-
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Optional sampled access log. Latency per route and status is recorded by
+ * the {@code http.server.requests} timer regardless; this only writes
+ * individual requests, to the {@code spectra.access} logger, which is
+ * backed by an asynchronous appender. Server errors are always logged.
+ * Registered first in {@link WebConfig}, so requests the API key and rate
+ * limit interceptors refuse are logged too. Only the path is written,
+ * never the query string.
+ */
 @Component
 public class ApiAuditInterceptor implements HandlerInterceptor {
 
+    private static final Logger accessLog = LoggerFactory.getLogger("spectra.access");
+    private static final String START_ATTR = "spectra.startNanos";
+
+    private final boolean enabled;
+    private final double sampleRate;
+
+    public ApiAuditInterceptor(@Value("${spectra.access-log.enabled:false}") boolean enabled,
+                               @Value("${spectra.access-log.sample-rate:0.01}") double sampleRate) {
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-
-        request.setAttribute("startTime", Instant.now().toEpochMilli());
+        if (enabled && accessLog.isInfoEnabled()) {
+            request.setAttribute(START_ATTR, System.nanoTime());
+        }
         return true; // continue request
     }
 
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
-
-        long start = (long) request.getAttribute("startTime");
-        long duration = Instant.now().toEpochMilli() - start;
-
-        String log = String.format(
-                "API CALL -> Method: %s, Path: %s, Status: %d, IP: %s, Duration: %dms",
-                request.getMethod(),
-                request.getRequestURI(),
-                response.getStatus(),
-                request.getRemoteAddr(),
-                duration
-        );
-
-        out.println(log);
-//        out.println(request.startAsync().getResponse());
+        Object start = request.getAttribute(START_ATTR);
+        if (start == null) {
+            return;
+        }
+        // An exception that escaped the handler only becomes a 500 on the error dispatch.
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        if (status < 500 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        long micros = (System.nanoTime() - (long) start) / 1_000;
+        // The URI without the query string, which may carry an ?apiKey=.
+        accessLog.info("{} {} {} {} {}us", request.getMethod(), request.getRequestURI(), status,
+                request.getRemoteAddr(), micros);
     }
 }
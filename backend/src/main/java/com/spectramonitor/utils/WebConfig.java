@@ -1,5 +1,7 @@
 package com.spectramonitor.utils;
 
+import com.spectramonitor.config.ApiKeyInterceptor;
+import com.spectramonitor.config.RateLimitInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -11,9 +13,23 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private ApiAuditInterceptor apiAuditInterceptor;
 
+    @Autowired
+    private ApiKeyInterceptor apiKeyInterceptor;
+
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // The audit interceptor goes first so requests refused by the others (401/403/429) are still logged.
         registry.addInterceptor(apiAuditInterceptor)
-                .addPathPatterns("/**"); // Log all endpoints
+                .addPathPatterns("/**") // Log all endpoints
+                .order(0);
+        registry.addInterceptor(apiKeyInterceptor)
+                .addPathPatterns("/api/**")
+                .order(10);
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns("/api/**")
+                .order(20);
     }
 }
@@ -0,0 +1,41 @@
+package com.spectramonitor.anomaly;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AhoCorasickTest {
+
+    @Test
+    void findsOverlappingPatternsInOrderTheyEnd() {
+        AhoCorasick matcher = new AhoCorasick(List.of("he", "she", "his", "hers"));
+        assertEquals(List.of("she", "he", "hers"), matcher.findAll("ushers"));
+    }
+
+    @Test
+    void ignoresCaseAndReportsEachPatternOnce() {
+        AhoCorasick matcher = new AhoCorasick(List.of("Exception", "OutOfMemoryError"));
+        assertEquals(List.of("Exception"),
+                matcher.findAll("NullPointerException caused by IOEXCEPTION"));
+        assertEquals(List.of("OutOfMemoryError", "Exception"),
+                matcher.findAll("java.lang.outofmemoryerror then Exception"));
+        assertEquals(List.of(), matcher.findAll("all good"));
+    }
+
+    @Test
+    void followsFailureLinksAfterAPartialMatch() {
+        AhoCorasick matcher = new AhoCorasick(List.of("abcd", "bce"));
+        assertEquals(List.of("bce"), matcher.findAll("abce"));
+    }
+
+    @Test
+    void emptyPatternsMatchNothing() {
+        assertTrue(new AhoCorasick(List.of("")).isEmpty());
+        assertTrue(new AhoCorasick(List.of()).findAll("anything").isEmpty());
+        assertFalse(new AhoCorasick(List.of("", "x")).isEmpty());
+    }
+}
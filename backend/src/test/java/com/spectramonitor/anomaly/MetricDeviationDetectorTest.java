@@ -0,0 +1,68 @@
+package com.spectramonitor.anomaly;
+
+import com.spectramonitor.model.PerformanceMetric;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricDeviationDetectorTest {
+
+    private static PerformanceMetric cpu(String deviceId, double value) {
+        PerformanceMetric metric = new PerformanceMetric();
+        metric.setDeviceId(deviceId);
+        metric.setCpuUsage(value);
+        return metric;
+    }
+
+    @Test
+    void scoresAgainstTheMovingMeanAndVariance() {
+        MetricDeviationDetector detector = new MetricDeviationDetector(0.5, 4.0, 2, 1.0, 60_000);
+        detector.onMetric(cpu("d", 10));
+        detector.onMetric(cpu("d", 20));
+        // mean = 10 + 0.5 * 10 = 15, variance = 0.5 * (0 + 0.5 * 10^2) = 25
+        List<Anomaly> anomalies = detector.onMetric(cpu("d", 50));
+        assertEquals(1, anomalies.size());
+        Anomaly anomaly = anomalies.get(0);
+        assertEquals("cpuUsage", anomaly.field());
+        assertEquals(15.0, anomaly.expected(), 1e-9);
+        assertEquals(7.0, anomaly.score(), 1e-9);
+    }
+
+    @Test
+    void staysQuietDuringWarmupAndWithinTheThreshold() {
+        MetricDeviationDetector detector = new MetricDeviationDetector(0.1, 4.0, 10, 1.0, 60_000);
+        for (int i = 0; i < 9; i++) {
+            assertTrue(detector.onMetric(cpu("d", i == 5 ? 500 : 50)).isEmpty(), "sample " + i);
+        }
+        MetricDeviationDetector steady = new MetricDeviationDetector(0.1, 4.0, 10, 1.0, 60_000);
+        for (int i = 0; i < 20; i++) {
+            steady.onMetric(cpu("d", 50));
+        }
+        // A flat series has no variance; the floor keeps small wobbles from alerting.
+        assertTrue(steady.onMetric(cpu("d", 53)).isEmpty());
+        assertEquals(1, steady.onMetric(cpu("d", 80)).size());
+    }
+
+    @Test
+    void cooldownSuppressesRepeatedAlerts() {
+        MetricDeviationDetector detector = new MetricDeviationDetector(0.1, 4.0, 10, 1.0, 60_000);
+        for (int i = 0; i < 20; i++) {
+            detector.onMetric(cpu("d", 50));
+        }
+        assertEquals(1, detector.onMetric(cpu("d", 90)).size());
+        assertTrue(detector.onMetric(cpu("d", 5)).isEmpty());
+    }
+
+    @Test
+    void seriesAreKeptPerDeviceAndEvictedWhenIdle() {
+        MetricDeviationDetector detector = new MetricDeviationDetector(0.1, 4.0, 1, 1.0, 60_000);
+        detector.onMetric(cpu("a", 50));
+        detector.onMetric(cpu("b", 50));
+        assertEquals(8, detector.trackedSeries());
+        detector.evictIdle(System.currentTimeMillis() + 1);
+        assertEquals(0, detector.trackedSeries());
+    }
+}
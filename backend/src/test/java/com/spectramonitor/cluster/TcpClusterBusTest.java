@@ -0,0 +1,77 @@
+package com.spectramonitor.cluster;
+
+import com.spectramonitor.socket.RoomRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TcpClusterBusTest {
+
+    private static TcpClusterBus bus() {
+        return new TcpClusterBus("node", "secret", "127.0.0.1", 0, List.of("127.0.0.1:1"), 16, 1024, 1000, 1000, false);
+    }
+
+    @Test
+    void roomsRoundTripAsLengthPrefixedUtf8() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        TcpClusterBus.writeRoom(out, "session:ünïcode");
+        TcpClusterBus.writeRoom(out, "");
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals("session:ünïcode", TcpClusterBus.readRoom(in));
+        assertEquals("", TcpClusterBus.readRoom(in));
+    }
+
+    @Test
+    void oversizedRoomsNeverReachTheWire() throws IOException {
+        String huge = "session:" + "x".repeat(70_000);
+        assertFalse(TcpClusterBus.fitsWire(huge));
+        assertThrows(ProtocolException.class,
+                () -> TcpClusterBus.writeRoom(new DataOutputStream(new ByteArrayOutputStream()), huge));
+
+        TcpClusterBus bus = bus();
+        bus.setInterest(huge, true);
+        bus.setInterest("session:d", true);
+        assertEquals(1, bus.stats().get("localRooms"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeShort(TcpClusterBus.MAX_ROOM_BYTES + 1);
+        assertThrows(ProtocolException.class,
+                () -> TcpClusterBus.readRoom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    @Test
+    void registryRefusesRoomsForOversizedIds() {
+        RoomRegistry registry = new RoomRegistry();
+        int[] changes = new int[1];
+        registry.setListener(room -> changes[0]++);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s");
+
+        assertFalse(registry.join(session, RoomRegistry.deviceRoom("x".repeat(70_000))));
+        assertEquals(0, changes[0]);
+        assertTrue(registry.join(session, RoomRegistry.deviceRoom("device")));
+        assertEquals(1, changes[0]);
+        assertTrue(TcpClusterBus.fitsWire("\uffff".repeat(RoomRegistry.MAX_ROOM_LENGTH)));
+    }
+
+    @Test
+    void constructingTheBusStartsNothing() {
+        TcpClusterBus bus = bus();
+        assertEquals(List.of(), bus.stats().get("links"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.spectramonitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingWriterTest {
+
+    private static BatchingWriter<String> writer(BatchingWriter.OverflowPolicy policy, Consumer<List<String>> sink) {
+        return new BatchingWriter<>("test", 2, 10, 10, policy, sink, false, 2, 1);
+    }
+
+    @Test
+    void dropRefusesTheNewItem() {
+        List<String> stored = new CopyOnWriteArrayList<>();
+        BatchingWriter<String> writer = writer(BatchingWriter.OverflowPolicy.DROP, stored::addAll);
+        assertTrue(writer.submit("a"));
+        assertTrue(writer.submit("b"));
+        assertFalse(writer.submit("c"));
+        writer.start();
+        writer.stop();
+        assertEquals(List.of("a", "b"), stored);
+        assertEquals(1, writer.getDropped());
+        assertEquals(0, writer.getEvicted());
+        assertEquals(2, writer.getWritten());
+    }
+
+    @Test
+    void dropOldestEvictsAnAcceptedItem() {
+        List<String> stored = new CopyOnWriteArrayList<>();
+        BatchingWriter<String> writer = writer(BatchingWriter.OverflowPolicy.DROP_OLDEST, stored::addAll);
+        for (String item : List.of("a", "b", "c")) {
+            assertTrue(writer.submit(item));
+        }
+        writer.start();
+        writer.stop();
+        assertEquals(List.of("b", "c"), stored);
+        assertEquals(0, writer.getDropped());
+        assertEquals(1, writer.getEvicted());
+        assertEquals(3, writer.getSubmitted());
+    }
+
+    @Test
+    void aFailedBatchIsRetriedBeforeItCountsAsFailed() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<String> stored = new CopyOnWriteArrayList<>();
+        BatchingWriter<String> writer = writer(BatchingWriter.OverflowPolicy.DROP, batch -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("database unavailable");
+            }
+            stored.addAll(batch);
+        });
+        writer.submit("a");
+        writer.submit("b");
+        writer.start();
+        writer.stop();
+        assertEquals(3, attempts.get());
+        assertEquals(List.of("a", "b"), stored);
+        assertEquals(2, writer.getWritten());
+        assertEquals(0, writer.getFailed());
+    }
+
+    @Test
+    void aBatchThatKeepsFailingIsCountedOnce() {
+        AtomicInteger attempts = new AtomicInteger();
+        BatchingWriter<String> writer = writer(BatchingWriter.OverflowPolicy.DROP, batch -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("database unavailable");
+        });
+        writer.submit("a");
+        writer.submit("b");
+        writer.start();
+        writer.stop();
+        assertEquals(3, attempts.get(), "one attempt and two retries");
+        assertEquals(0, writer.getWritten());
+        assertEquals(2, writer.getFailed());
+    }
+}
@@ -0,0 +1,65 @@
+package com.spectramonitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class CrashFingerprintTest {
+
+    private static final String TRACE = """
+            java.lang.IllegalStateException: boom
+                at com.app.Checkout.submit(Checkout.java:42)
+                at com.app.Checkout$$ExternalSyntheticLambda0.run(Unknown Source:2)
+                at com.app.Cart$1.onClick(Cart.java:17)
+            """;
+
+    @Test
+    void lineNumbersAndGeneratedSuffixesDoNotSplitACrash() {
+        String otherBuild = TRACE.replace("42", "57").replace("Lambda0", "Lambda3").replace("Cart$1", "Cart$2");
+        assertEquals(CrashFingerprint.of("IllegalStateException", "boom", TRACE),
+                CrashFingerprint.of("IllegalStateException", "other message", otherBuild));
+        assertEquals(List.of("com.app.Checkout.submit(Checkout.java)", "com.app.Checkout.run(Unknown Source)",
+                "com.app.Cart.onClick(Cart.java)"), CrashFingerprint.frames(TRACE));
+    }
+
+    @Test
+    void typeAndFramesSeparateCrashes() {
+        String fingerprint = CrashFingerprint.of("IllegalStateException", "boom", TRACE);
+        assertNotEquals(fingerprint, CrashFingerprint.of("NullPointerException", "boom", TRACE));
+        assertNotEquals(fingerprint, CrashFingerprint.of("IllegalStateException", "boom",
+                TRACE.replace("submit", "cancel")));
+    }
+
+    @Test
+    void nativeFramesDropAddresses() {
+        String trace = """
+                #0 0x0000000104a1b2c3 in Renderer.draw (renderer.dart:12:3)
+                #1 0x0000000104a1b400 main.loop
+                """;
+        assertEquals(List.of("Renderer.draw", "main.loop"), CrashFingerprint.frames(trace));
+    }
+
+    @Test
+    void onlyTheTopFramesCount() {
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            trace.append("at com.app.Frame").append(i).append(".call(Frame.java:1)\n");
+        }
+        assertEquals(5, CrashFingerprint.frames(trace.toString()).size());
+        assertEquals(CrashFingerprint.of("E", null, trace.toString()),
+                CrashFingerprint.of("E", null, trace + "at com.app.Deeper.call(Deeper.java:9)\n"));
+    }
+
+    @Test
+    void withoutFramesTheMessageIsNormalized() {
+        assertEquals("Timeout after <n>ms for <id> at <addr>", CrashFingerprint.normalizeMessage(
+                "Timeout after 1500ms for 550e8400-e29b-41d4-a716-446655440000 at 0x7ffe12"));
+        assertEquals(CrashFingerprint.of("Timeout", "Timeout after 1500ms", null),
+                CrashFingerprint.of("Timeout", "Timeout after 30ms", ""));
+        assertNotEquals(CrashFingerprint.of("Timeout", "Timeout after 1500ms", null),
+                CrashFingerprint.of("Timeout", "Connection reset", null));
+    }
+}
@@ -0,0 +1,109 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.FeatureFlag;
+import com.spectramonitor.repository.FeatureFlagRepository;
+import com.spectramonitor.socket.EventBroadcaster;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FlagEvaluationServiceTest {
+
+    private final FeatureFlagRepository repository = mock(FeatureFlagRepository.class);
+
+    private FlagEvaluationService service(int maxSnapshots) {
+        return new FlagEvaluationService(repository, mock(EventBroadcaster.class), 300_000, maxSnapshots);
+    }
+
+    private static FeatureFlag flag(String key, boolean enabled) {
+        FeatureFlag flag = new FeatureFlag();
+        flag.setKey(key);
+        flag.setEnabled(enabled);
+        return flag;
+    }
+
+    @Test
+    void snapshotsAreCachedUntilTheFlagsChange() {
+        when(repository.findByAppId("app")).thenReturn(List.of(flag("checkout", false)));
+        FlagEvaluationService service = service(100);
+        String etag = service.evaluate("app", "d").etag();
+        assertEquals(etag, service.evaluate("app", "d").etag());
+        verify(repository, times(1)).findByAppId("app");
+
+        when(repository.findByAppId("app")).thenReturn(List.of(flag("checkout", true)));
+        service.flagsChanged("app");
+        FlagEvaluationService.Evaluation changed = service.evaluate("app", "d");
+        assertNotEquals(etag, changed.etag());
+        assertTrue(changed.flags().get("checkout"));
+    }
+
+    @Test
+    void forgottenAppsAreReloaded() {
+        when(repository.findByAppId("app")).thenReturn(List.of(flag("checkout", true)));
+        FlagEvaluationService service = service(100);
+        service.snapshot("app");
+        service.forget("app");
+        service.snapshot("app");
+        verify(repository, times(2)).findByAppId("app");
+    }
+
+    @Test
+    void cacheIsBoundedByMaxSnapshots() {
+        when(repository.findByAppId(anyString())).thenReturn(List.of());
+        FlagEvaluationService service = service(10);
+        for (int i = 0; i < 100; i++) {
+            service.snapshot("app-" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            service.snapshot("app-" + i);
+        }
+        // At most ten of the hundred apps can still be cached for the second pass.
+        assertTrue(mockingDetails(repository).getInvocations().size() >= 190);
+    }
+
+    @Test
+    void bucketIsStableAndInRange() {
+        for (int i = 0; i < 1000; i++) {
+            int bucket = FlagEvaluationService.bucketOf("checkout", "device-" + i);
+            assertTrue(bucket >= 0 && bucket < 10_000, "bucket " + bucket);
+            assertEquals(bucket, FlagEvaluationService.bucketOf("checkout", "device-" + i));
+        }
+    }
+
+    @Test
+    void rolloutShareMatchesThePercentage() {
+        int devices = 20_000;
+        int inTenPercent = 0;
+        for (int i = 0; i < devices; i++) {
+            if (FlagEvaluationService.bucketOf("checkout", "device-" + i) < 1_000) {
+                inTenPercent++;
+            }
+        }
+        assertTrue(Math.abs(inTenPercent - devices / 10) < 300, "in rollout " + inTenPercent);
+    }
+
+    @Test
+    void flagsRollOutToIndependentDevices() {
+        int devices = 20_000;
+        int inBoth = 0;
+        for (int i = 0; i < devices; i++) {
+            String deviceId = "device-" + i;
+            if (FlagEvaluationService.bucketOf("checkout", deviceId) < 5_000
+                    && FlagEvaluationService.bucketOf("search", deviceId) < 5_000) {
+                inBoth++;
+            }
+        }
+        // Independent 50% rollouts overlap on about a quarter of devices, not half.
+        assertTrue(Math.abs(inBoth - devices / 4) < 400, "in both " + inBoth);
+    }
+}
@@ -0,0 +1,126 @@
+package com.spectramonitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestRateLimiterTest {
+
+    private static IngestRateLimiter limiter(double appPerSecond, double devicePerSecond, List<String> overrides) {
+        return new IngestRateLimiter(true, appPerSecond, devicePerSecond, 1, 1024, 10_000, overrides);
+    }
+
+    @Test
+    void allowsTheBurstThenAsksToWaitOneInterval() {
+        IngestRateLimiter limiter = limiter(1000, 10, List.of());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire("app", "device", 1).allowed(), "event " + i);
+        }
+        IngestRateLimiter.Decision refused = limiter.acquire("app", "device", 1);
+        assertFalse(refused.allowed());
+        assertEquals(IngestRateLimiter.Scope.DEVICE, refused.scope());
+        assertTrue(refused.retryAfterMs() > 0 && refused.retryAfterMs() <= 100, "retry after " + refused.retryAfterMs());
+    }
+
+    @Test
+    void costBeyondTheBurstTakesTheWholeBurst() {
+        IngestRateLimiter limiter = limiter(1000, 10, List.of());
+        assertTrue(limiter.acquire("app", "device", 1000).allowed());
+        assertFalse(limiter.acquire("app", "device", 1).allowed());
+    }
+
+    @Test
+    void appRefusalHandsBackTheDeviceCharge() {
+        IngestRateLimiter limiter = limiter(1000, 5, List.of("slow:1"));
+        assertTrue(limiter.acquire("slow", "device", 1).allowed());
+        for (int i = 0; i < 10; i++) {
+            IngestRateLimiter.Decision refused = limiter.acquire("slow", "device", 1);
+            assertFalse(refused.allowed());
+            assertEquals(IngestRateLimiter.Scope.APP, refused.scope());
+        }
+        // Only the one accepted event counts against the device.
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.acquire("other", "device", 1).allowed(), "event " + i);
+        }
+        assertEquals(IngestRateLimiter.Scope.DEVICE, limiter.acquire("other", "device", 1).scope());
+    }
+
+    @Test
+    void overridesSetAppAndDeviceRates() {
+        IngestRateLimiter limiter = limiter(1000, 1000, List.of("vip:100:2", " slow:1 ", "incomplete"));
+        assertEquals(Set.of("vip", "slow"), limiter.stats().get("overrides"));
+
+        assertTrue(limiter.acquire("vip", "a", 1).allowed());
+        assertTrue(limiter.acquire("vip", "a", 1).allowed());
+        assertEquals(IngestRateLimiter.Scope.DEVICE, limiter.acquire("vip", "a", 1).scope());
+
+        assertTrue(limiter.acquire("slow", "b", 1).allowed());
+        assertEquals(IngestRateLimiter.Scope.APP, limiter.acquire("slow", "b", 1).scope());
+    }
+
+    @Test
+    void disabledLimiterAllowsEverything() {
+        IngestRateLimiter limiter = new IngestRateLimiter(false, 1, 1, 1, 1024, 10_000, List.of());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire("app", "device", 10).allowed());
+        }
+    }
+
+    @Test
+    void deviceSlotsAreAPowerOfTwoAndSpreadDevices() {
+        IngestRateLimiter limiter = new IngestRateLimiter(true, 1, 1, 1, 3000, 10_000, List.of());
+        assertEquals(2048, limiter.stats().get("deviceSlots"));
+        assertEquals(1024, new IngestRateLimiter(true, 1, 1, 1, 1, 10_000, List.of()).stats().get("deviceSlots"));
+
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 2048; i++) {
+            int slot = limiter.slotOf("device-" + i);
+            assertTrue(slot >= 0 && slot < 2048, "slot " + slot);
+            assertEquals(slot, limiter.slotOf("device-" + i));
+            used.add(slot);
+        }
+        // Uniform hashing fills about 63% of the slots.
+        assertTrue(used.size() > 1150, "distinct slots " + used.size());
+    }
+
+    @Test
+    void appsPastTheCapShareAnOverflowBucketUntilIdleOnesAreSwept() throws InterruptedException {
+        // 1000 events/s with a 50 ms burst: 50 events fill a bucket, which refills within 50 ms.
+        IngestRateLimiter limiter = new IngestRateLimiter(true, 1000, 1000, 0.05, 1024, 2, List.of("vip:1000"));
+        assertTrue(limiter.acquire("a", null, 1).allowed());
+        assertTrue(limiter.acquire("b", null, 1).allowed());
+        assertTrue(limiter.acquire("vip", null, 1).allowed());
+        assertEquals(3, limiter.stats().get("trackedApps"), "overrides are not capped");
+
+        assertTrue(limiter.acquire("c", null, 50).allowed());
+        IngestRateLimiter.Decision refused = limiter.acquire("d", null, 1);
+        assertFalse(refused.allowed(), "d shares the bucket c drained");
+        assertEquals(IngestRateLimiter.Scope.APP, refused.scope());
+        assertEquals(3, limiter.stats().get("trackedApps"));
+
+        Thread.sleep(120);
+        assertTrue(limiter.acquire("e", null, 1).allowed());
+        assertEquals(1, limiter.stats().get("trackedApps"), "refilled buckets were swept");
+    }
+
+    @Test
+    void shedCountsPastTheCapAreGrouped() {
+        IngestRateLimiter limiter = new IngestRateLimiter(true, 1, 1000, 1, 1024, 2, List.of());
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("app-" + i, null, 1);
+            limiter.acquire("app-" + i, null, 1);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Long>> shed = (Map<String, Map<String, Long>>) limiter.stats().get("shed");
+        assertEquals(Set.of("app-0", "app-1", IngestRateLimiter.OTHER_APPS), shed.keySet());
+        // app-2 to app-4 share the overflow bucket, so only app-2's first event got through.
+        assertEquals(5L, shed.get(IngestRateLimiter.OTHER_APPS).get("app"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.spectramonitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesHaveExactBuckets() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.bucketOf(value));
+            assertEquals(value, LatencyHistogram.lowerBound(value));
+            assertEquals(value, LatencyHistogram.upperBound(value));
+        }
+        assertEquals(0, LatencyHistogram.bucketOf(-5));
+    }
+
+    @Test
+    void bucketsCoverEveryValueWithBoundedWidth() {
+        int previous = -1;
+        for (long value = 0; value < 1_000_000; value += value < 5_000 ? 1 : 997) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket >= previous, "buckets are monotonic at " + value);
+            long low = LatencyHistogram.lowerBound(bucket);
+            long high = LatencyHistogram.upperBound(bucket);
+            assertTrue(low <= value && value <= high, value + " outside [" + low + ", " + high + "]");
+            assertTrue(high - low + 1 <= Math.max(1, low / 16), "bucket width at " + value);
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.upperBound(LatencyHistogram.bucketOf(31)) + 1,
+                LatencyHistogram.lowerBound(LatencyHistogram.bucketOf(32)));
+    }
+
+    @Test
+    void quantilesReportTheBucketMidpoint() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.quantile(0.5));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.total());
+        long p50 = histogram.quantile(0.5);
+        long p99 = histogram.quantile(0.99);
+        assertTrue(Math.abs(p50 - 50) <= 3, "p50 " + p50);
+        assertTrue(Math.abs(p99 - 99) <= 6, "p99 " + p99);
+        assertEquals(1, histogram.quantile(0));
+    }
+
+    @Test
+    void storedCountsMergeByBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.merge(Map.of("3", 2, String.valueOf(LatencyHistogram.bucketOf(1000)), 5L));
+        histogram.merge(null);
+        assertEquals(8, histogram.total());
+        assertEquals(3L, histogram.counts().get(3));
+        assertEquals(5L, histogram.counts().get(LatencyHistogram.bucketOf(1000)));
+    }
+}
@@ -0,0 +1,86 @@
+package com.spectramonitor.service;
+
+import com.spectramonitor.model.MetricRollup;
+import com.spectramonitor.model.PerformanceMetric;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MetricRollupServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final long watermark = floorMinute(System.currentTimeMillis() - 300_000);
+
+    private MetricRollupService service(int maxLateBuckets) {
+        when(mongoTemplate.findById(anyString(), eq(Document.class), anyString()))
+                .thenReturn(new Document("watermark", new Date(watermark)));
+        when(mongoTemplate.stream(any(Query.class), eq(PerformanceMetric.class))).thenAnswer(invocation -> Stream.empty());
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(MetricRollup.class))).thenReturn(bulk);
+        return new MetricRollupService(mongoTemplate, mock(KeysetPager.class), mock(IndexManager.class),
+                7, 30, 365, 30_000, 120, 360, 168, maxLateBuckets);
+    }
+
+    private static long floorMinute(long millis) {
+        return millis - Math.floorMod(millis, 60_000L);
+    }
+
+    private static PerformanceMetric sample(String deviceId, long timestamp) {
+        PerformanceMetric metric = new PerformanceMetric();
+        metric.setDeviceId(deviceId);
+        metric.setCpuUsage(10.0);
+        metric.setTimestamp(new Date(timestamp));
+        return metric;
+    }
+
+    @Test
+    void samplesStoredBehindTheWatermarkAreRolledUpAgain() {
+        MetricRollupService service = service(100);
+        service.rollup(MetricRollupService.Resolution.MINUTE);
+        PerformanceMetric late = sample("d", watermark - 90_000);
+        when(mongoTemplate.find(any(Query.class), eq(PerformanceMetric.class))).thenReturn(List.of(late));
+
+        service.onStored(List.of(late, sample("d", System.currentTimeMillis())));
+        service.rollup(MetricRollupService.Resolution.MINUTE);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(PerformanceMetric.class));
+        verify(bulk, times(1)).upsert(any(Query.class), any(Update.class));
+
+        service.rollup(MetricRollupService.Resolution.MINUTE);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(PerformanceMetric.class));
+    }
+
+    @Test
+    void lateBucketsAreBounded() {
+        MetricRollupService service = service(1);
+        service.rollup(MetricRollupService.Resolution.MINUTE);
+        when(mongoTemplate.find(any(Query.class), eq(PerformanceMetric.class))).thenReturn(List.of());
+
+        service.onStored(List.of(sample("a", watermark - 90_000), sample("b", watermark - 90_000)));
+        service.rollup(MetricRollupService.Resolution.MINUTE);
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(PerformanceMetric.class));
+    }
+
+    @Test
+    void nothingIsMarkedBeforeTheWatermarkIsKnown() {
+        MetricRollupService service = service(100);
+        service.onStored(List.of(sample("d", watermark - 90_000)));
+        service.rollup(MetricRollupService.Resolution.MINUTE);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(PerformanceMetric.class));
+    }
+}
@@ -0,0 +1,70 @@
+package com.spectramonitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RingBufferTest {
+
+    private static RingBuffer<String> buffer(int capacity) {
+        return new RingBuffer<>(capacity, String::length);
+    }
+
+    @Test
+    void overwritesTheOldestItemWhenFull() {
+        RingBuffer<String> buffer = buffer(3);
+        assertEquals(1, buffer.add("a"));
+        buffer.add("bb");
+        buffer.add("ccc");
+        assertEquals(3, buffer.add("dddd"), "adds 4, drops 1");
+        assertEquals(3, buffer.size());
+        assertEquals(9, buffer.weight());
+        assertEquals(List.of("bb", "ccc", "dddd"), buffer.newest(3));
+        assertEquals(List.of("ccc", "dddd"), buffer.newest(2));
+    }
+
+    @Test
+    void cannotAnswerMoreThanItHoldsUnlessComplete() {
+        RingBuffer<String> buffer = buffer(5);
+        buffer.add("a");
+        assertNull(buffer.newest(2));
+
+        buffer.seed(List.of("x"), true, item -> item);
+        assertEquals(List.of("x", "a"), buffer.newest(10));
+
+        buffer.add("b");
+        assertEquals(List.of("x", "a", "b"), buffer.newest(10));
+    }
+
+    @Test
+    void seedKeepsBufferedItemsTheQueryMissed() {
+        RingBuffer<String> buffer = buffer(3);
+        buffer.add("b");
+        buffer.add("c");
+        long delta = buffer.seed(List.of("a", "b"), true, item -> item);
+        assertEquals(List.of("a", "b", "c"), buffer.newest(3));
+        assertEquals(1, delta);
+        assertEquals(3, buffer.weight());
+    }
+
+    @Test
+    void seedBeyondCapacityKeepsTheNewestAndIsIncomplete() {
+        RingBuffer<String> buffer = buffer(2);
+        buffer.seed(List.of("a", "b", "c"), true, item -> item);
+        assertEquals(List.of("b", "c"), buffer.newest(2));
+        assertNull(buffer.newest(3));
+    }
+
+    @Test
+    void overwritingClearsComplete() {
+        RingBuffer<String> buffer = buffer(2);
+        buffer.seed(List.of("a"), true, item -> item);
+        assertEquals(List.of("a"), buffer.newest(5));
+        buffer.add("b");
+        buffer.add("c");
+        assertNull(buffer.newest(5));
+    }
+}
@@ -0,0 +1,34 @@
+package com.spectramonitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrlTemplateTest {
+
+    @Test
+    void dropsSchemeQueryAndFragmentAndTemplatesIds() {
+        assertEquals("api.x.com/users/{id}/orders", UrlTemplate.of("https://API.x.com/users/42/orders?page=2"));
+        assertEquals("api.x.com/items/{uuid}",
+                UrlTemplate.of("https://api.x.com/items/550e8400-e29b-41d4-a716-446655440000#top"));
+        assertEquals("/v1/search", UrlTemplate.of("/v1/search?q=shoes"));
+    }
+
+    @Test
+    void templatesIdentifierLikeSegments() {
+        assertEquals("{hash}", UrlTemplate.normalize("9f86d081884c7d659a2feaa0c55ad015"));
+        assertEquals("{email}", UrlTemplate.normalize("jo@example.com"));
+        assertEquals("{id}", UrlTemplate.normalize("order-1234567"));
+        assertEquals("{token}", UrlTemplate.normalize("eyJhbGciOiJIUzI1NiJ9abcdef12"));
+        assertEquals("v2", UrlTemplate.normalize("v2"));
+        assertEquals("profile", UrlTemplate.normalize("profile"));
+    }
+
+    @Test
+    void handlesEmptyAndVeryLongPaths() {
+        assertEquals("unknown", UrlTemplate.of(null));
+        assertEquals("unknown", UrlTemplate.of("  "));
+        assertEquals("/", UrlTemplate.of("?only=query"));
+        assertEquals("/a/b/c/d/e/f/g/h/i/j/k/l/…", UrlTemplate.of("/a/b/c/d/e/f/g/h/i/j/k/l/m/n"));
+    }
+}
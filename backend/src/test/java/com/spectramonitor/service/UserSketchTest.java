@@ -0,0 +1,58 @@
+package com.spectramonitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserSketchTest {
+
+    private static Map<String, Integer> sketch(String prefix, int users) {
+        Map<String, Integer> registers = new HashMap<>();
+        for (int i = 0; i < users; i++) {
+            UserSketch.Observation observation = UserSketch.observe(prefix + i);
+            registers.merge(observation.register(), observation.rank(), Math::max);
+        }
+        return registers;
+    }
+
+    @Test
+    void observationIsStableAndInRange() {
+        UserSketch.Observation observation = UserSketch.observe("user-1");
+        assertEquals(observation, UserSketch.observe("user-1"));
+        int index = Integer.parseInt(observation.register().substring(UserSketch.REGISTER_PREFIX.length()));
+        assertTrue(index >= 0 && index < UserSketch.REGISTERS);
+        assertTrue(observation.rank() >= 1 && observation.rank() <= 64 - UserSketch.PRECISION + 1);
+    }
+
+    @Test
+    void emptySketchCountsNothing() {
+        assertEquals(0, UserSketch.estimate(null));
+        assertEquals(0, UserSketch.estimate(Map.of()));
+    }
+
+    @Test
+    void repeatedUsersAreCountedOnce() {
+        Map<String, Integer> registers = sketch("user-", 100);
+        registers.putAll(sketch("user-", 100));
+        long estimate = UserSketch.estimate(registers);
+        assertTrue(Math.abs(estimate - 100) <= 5, "estimate " + estimate);
+    }
+
+    @Test
+    void largeCountsStayWithinTheExpectedError() {
+        long estimate = UserSketch.estimate(sketch("user-", 20_000));
+        assertTrue(Math.abs(estimate - 20_000) <= 2_000, "estimate " + estimate);
+    }
+
+    @Test
+    void mergingTakesTheRegisterMaximum() {
+        Map<String, Integer> merged = sketch("a-", 5_000);
+        sketch("b-", 5_000).forEach((register, rank) -> merged.merge(register, rank, Math::max));
+        long estimate = UserSketch.estimate(merged);
+        assertTrue(Math.abs(estimate - 10_000) <= 1_000, "estimate " + estimate);
+    }
+}
@@ -0,0 +1,74 @@
+package com.spectramonitor.utils;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.common.KeyValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ApiAuditInterceptorTest {
+
+    private final Logger accessLog = (Logger) LoggerFactory.getLogger("spectra.access");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void attach() {
+        appender.start();
+        accessLog.addAppender(appender);
+    }
+
+    @AfterEach
+    void detach() {
+        accessLog.detachAppender(appender);
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/devices/d1/logs");
+        request.setQueryString("apiKey=secret-key");
+        request.addParameter("apiKey", "secret-key");
+        return request;
+    }
+
+    @Test
+    void logsRefusedRequestsWithoutTheQueryString() {
+        ApiAuditInterceptor interceptor = new ApiAuditInterceptor(true, 1.0);
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, new Object());
+        response.setStatus(401);
+        interceptor.afterCompletion(request, response, new Object(), null);
+
+        assertEquals(1, appender.list.size());
+        String line = appender.list.get(0).getFormattedMessage();
+        assertEquals("POST /api/devices/d1/logs 401 127.0.0.1", line.substring(0, line.lastIndexOf(' ')));
+        assertFalse(line.contains("secret-key"));
+    }
+
+    @Test
+    void requestTimerTagsCarryTheRouteNotTheQuery() {
+        MockHttpServletRequest request = request();
+        ServerRequestObservationContext context = new ServerRequestObservationContext(request, new MockHttpServletResponse());
+        context.setPathPattern("/api/devices/{deviceId}/logs");
+        DefaultServerRequestObservationConvention convention = new DefaultServerRequestObservationConvention();
+
+        for (KeyValue tag : convention.getLowCardinalityKeyValues(context)) {
+            assertFalse(tag.getValue().contains("secret-key"), tag.getKey());
+        }
+        for (KeyValue tag : convention.getHighCardinalityKeyValues(context)) {
+            assertFalse(tag.getValue().contains("secret-key"), tag.getKey());
+        }
+        assertEquals("/api/devices/{deviceId}/logs",
+                convention.getLowCardinalityKeyValues(context).stream()
+                        .filter(tag -> tag.getKey().equals("uri")).findFirst().orElseThrow().getValue());
+    }
+}